@@ -0,0 +1,44 @@
+package io.github.kxng0109.backend;
+
+import io.github.kxng0109.backend.config.EvaluationProperties;
+import io.github.kxng0109.backend.evaluation.EvaluationRunner;
+import io.github.kxng0109.backend.evaluation.EvaluationSummary;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Command line entry point that runs a JSONL prompt suite through the configured models without
+ * starting the web server, for example:
+ * <pre>
+ * ./mvnw spring-boot:run \
+ *   -Dspring-boot.run.main-class=io.github.kxng0109.backend.EvaluationApplication \
+ *   -Dspring-boot.run.arguments="--eval.input=prompts.jsonl --eval.llms=openai,ollama"
+ * </pre>
+ * See {@link EvaluationProperties} for all options. The process exits with status 1 if any prompt
+ * could not be evaluated.
+ */
+@Slf4j
+public class EvaluationApplication {
+
+    public static void main(String[] args) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(BackendApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args);
+
+        int exitCode;
+        try {
+            EvaluationSummary summary = context.getBean(EvaluationRunner.class)
+                                               .run(context.getBean(EvaluationProperties.class));
+            exitCode = summary.failed() > 0 ? 1 : 0;
+        } catch (Exception e) {
+            log.error("Evaluation failed: {}", e.getMessage(), e);
+            exitCode = 1;
+        }
+
+        int status = exitCode;
+        System.exit(SpringApplication.exit(context, () -> status));
+    }
+}
@@ -1,27 +1,154 @@
 package io.github.kxng0109.backend.config;
 
+import io.github.kxng0109.backend.service.local.LocalChatModel;
+import io.micrometer.observation.ObservationRegistry;
 import org.springframework.ai.anthropic.AnthropicChatModel;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.ollama.OllamaChatModel;
 import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.aot.AotDetector;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
 
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The AiClientConfig class registers one {@link ChatClient} per configured language model, named by
+ * the model identifier used in requests.
+ * <p>
+ * A provider is only registered when it is configured: OpenAI and Anthropic need an API key, Ollama a
+ * chat model name and the in-process model a model file. Unconfigured providers are simply absent
+ * from `/api/llm/available` instead of failing startup.
+ * <p>
+ * Provider clients are not built at startup. The auto-configured provider beans are made lazy, and
+ * every ChatClient wraps its provider in a {@link LazyChatModel} that creates it on the first request
+ * to that model. This keeps startup short for scale-to-zero deployments.
+ * <p>
+ * The ChatClients are observed, so each call also produces a `spring.ai.chat.client` span, and the
+ * provider models add their own `gen_ai` spans underneath it.
+ * <p>
+ * With Spring AOT, the conditions deciding which providers are registered are evaluated when the
+ * artifacts are generated. Startup therefore fails if the providers configured at runtime are not the
+ * ones the artifacts were generated with, instead of silently serving a different set of models.
+ */
 @Configuration
 public class AiClientConfig {
 
+    private static final List<String> PROVIDER_PACKAGES = List.of(
+            "org.springframework.ai.openai.",
+            "org.springframework.ai.anthropic.",
+            "org.springframework.ai.ollama."
+    );
+
+    /**
+     * The property each provider's ChatClient is conditional on, by the name of the ChatClient bean.
+     */
+    private static final Map<String, String> PROVIDER_PROPERTIES = Map.of(
+            "openai", "spring.ai.openai.api-key",
+            "anthropic", "spring.ai.anthropic.api-key",
+            "ollama", "spring.ai.ollama.chat.model",
+            "local", "llm.local.model-path"
+    );
+
+    /**
+     * Marks all beans contributed by the provider auto-configurations as lazy, so that they are only
+     * created when one of the ChatClients below first needs them.
+     */
+    @Bean
+    public static BeanFactoryPostProcessor lazyProviderModels() {
+        return beanFactory -> {
+            for (String name : beanFactory.getBeanDefinitionNames()) {
+                BeanDefinition definition = beanFactory.getBeanDefinition(name);
+                Class<?> type = beanFactory.getType(name, false);
+                if (definition.isSingleton() && type != null
+                        && PROVIDER_PACKAGES.stream().anyMatch(type.getName()::startsWith)) {
+                    definition.setLazyInit(true);
+                }
+            }
+        };
+    }
+
+    /**
+     * Fails startup when the application runs from Spring AOT artifacts that were generated with other
+     * providers configured than are configured now.
+     */
+    @Bean
+    public static SmartInitializingSingleton aotProviderCheck(ListableBeanFactory beanFactory, Environment environment) {
+        return () -> {
+            if (!AotDetector.useGeneratedArtifacts()) {
+                return;
+            }
+
+            List<String> changed = providersChangedSinceBuild(beanFactory, environment);
+            if (!changed.isEmpty()) {
+                throw new IllegalStateException(
+                        "The Spring AOT artifacts were generated with different providers configured: "
+                                + String.join(", ", changed)
+                                + ". Rebuild with the provider settings used at runtime, or start without -Dspring.aot.enabled=true"
+                );
+            }
+        };
+    }
+
+    /**
+     * Compares the configured providers with the ChatClients that are registered, which under AOT are
+     * the providers that were configured at build time.
+     *
+     * @return a description of every provider that is configured now but was not registered, or the
+     * other way round
+     */
+    static List<String> providersChangedSinceBuild(ListableBeanFactory beanFactory, Environment environment) {
+        return PROVIDER_PROPERTIES.entrySet()
+                                  .stream()
+                                  .sorted(Map.Entry.comparingByKey())
+                                  .filter(provider -> beanFactory.containsBean(provider.getKey())
+                                          != StringUtils.hasText(environment.getProperty(provider.getValue())))
+                                  .map(provider -> beanFactory.containsBean(provider.getKey())
+                                          ? provider.getKey() + " (configured at build time only)"
+                                          : provider.getKey() + " (configured at runtime only)")
+                                  .toList();
+    }
+
     @Bean("openai")
-    public ChatClient openAiClient(OpenAiChatModel openAiChatModel) {
-        return ChatClient.builder(openAiChatModel).build();
+    @ConditionalOnExpression("'${spring.ai.openai.api-key:}' != ''")
+    public ChatClient openAiClient(ObjectProvider<OpenAiChatModel> openAiChatModel, ObservationRegistry observationRegistry) {
+        return ChatClient.builder(new LazyChatModel("openai", openAiChatModel::getObject), observationRegistry, null).build();
     }
 
     @Bean("anthropic")
-    public ChatClient anthropicChatClient(AnthropicChatModel anthropicChatModel) {
-        return ChatClient.builder(anthropicChatModel).build();
+    @ConditionalOnExpression("'${spring.ai.anthropic.api-key:}' != ''")
+    public ChatClient anthropicChatClient(ObjectProvider<AnthropicChatModel> anthropicChatModel, ObservationRegistry observationRegistry) {
+        return ChatClient.builder(new LazyChatModel("anthropic", anthropicChatModel::getObject), observationRegistry, null).build();
     }
 
     @Bean("ollama")
-    public ChatClient ollamaChatClient(OllamaChatModel ollamaChatModel) {
-        return ChatClient.builder(ollamaChatModel).build();
+    @ConditionalOnExpression("'${spring.ai.ollama.chat.model:}' != ''")
+    public ChatClient ollamaChatClient(ObjectProvider<OllamaChatModel> ollamaChatModel, ObservationRegistry observationRegistry) {
+        return ChatClient.builder(new LazyChatModel("ollama", ollamaChatModel::getObject), observationRegistry, null).build();
+    }
+
+    @Bean(destroyMethod = "close")
+    @Lazy
+    @ConditionalOnProperty(name = "llm.local.model-path")
+    public LocalChatModel localChatModel(LocalModelProperties localModelProperties) throws IOException {
+        return new LocalChatModel(localModelProperties);
+    }
+
+    @Bean("local")
+    @ConditionalOnProperty(name = "llm.local.model-path")
+    public ChatClient localChatClient(ObjectProvider<LocalChatModel> localChatModel, ObservationRegistry observationRegistry) {
+        return ChatClient.builder(new LazyChatModel("local", localChatModel::getObject), observationRegistry, null).build();
     }
 }
@@ -0,0 +1,53 @@
+package io.github.kxng0109.backend.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.backend.service.cassette.CassetteRecorder;
+import io.github.kxng0109.backend.service.cassette.CassetteReplayInterceptor;
+import io.github.kxng0109.backend.service.cassette.CassetteReplayServer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.RestClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+/**
+ * The CassetteConfig class hooks provider traffic recording and replay into the Spring AI clients.
+ * <p>
+ * The OpenAI, Anthropic and Ollama clients all build their HTTP clients from the auto-configured
+ * `RestClient.Builder`, so a {@link RestClientCustomizer} is enough to reach every provider without
+ * touching {@link AiClientConfig}. The behavior is selected with `llm.cassette.mode`:
+ * - `off` (default): no customization.
+ * - `record`: every exchange is appended to `llm.cassette.path` by a {@link CassetteRecorder}.
+ * - `replay`: a {@link CassetteReplayServer} is started on a local port and all provider requests are
+ *   redirected to it, so no network access or real API keys are needed.
+ */
+@Configuration
+public class CassetteConfig {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "llm.cassette.mode", havingValue = "record")
+    public CassetteRecorder cassetteRecorder(ObjectMapper objectMapper, CassetteProperties properties)
+            throws IOException {
+        return new CassetteRecorder(objectMapper, properties.path());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "llm.cassette.mode", havingValue = "record")
+    public RestClientCustomizer cassetteRecordingCustomizer(CassetteRecorder cassetteRecorder) {
+        return builder -> builder.requestInterceptor(cassetteRecorder);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "llm.cassette.mode", havingValue = "replay")
+    public CassetteReplayServer cassetteReplayServer(ObjectMapper objectMapper, CassetteProperties properties)
+            throws IOException {
+        return new CassetteReplayServer(objectMapper, properties.path(), properties.timeScale());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "llm.cassette.mode", havingValue = "replay")
+    public RestClientCustomizer cassetteReplayCustomizer(CassetteReplayServer cassetteReplayServer) {
+        return builder -> builder.requestInterceptor(new CassetteReplayInterceptor(cassetteReplayServer.getPort()));
+    }
+}
@@ -0,0 +1,30 @@
+package io.github.kxng0109.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+
+/**
+ * Configuration properties for recording and replaying provider HTTP traffic, bound from the
+ * `llm.cassette` prefix.
+ *
+ * Fields:
+ * - `mode`: `off` (default), `record` to append every provider exchange to the cassette, or `replay`
+ *   to answer provider calls from the cassette through a local HTTP stand-in.
+ * - `path`: The cassette file.
+ * - `timeScale`: The factor applied to the recorded latency when replaying; `1.0` reproduces the original
+ *   timing and `0` replays as fast as possible.
+ */
+@ConfigurationProperties(prefix = "llm.cassette")
+public record CassetteProperties(
+        @DefaultValue("off") Mode mode,
+        @DefaultValue("cassettes/providers.jsonl") Path path,
+        @DefaultValue("1.0") double timeScale
+) {
+    public enum Mode {
+        OFF,
+        RECORD,
+        REPLAY
+    }
+}
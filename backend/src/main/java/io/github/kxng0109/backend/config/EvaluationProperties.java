@@ -0,0 +1,39 @@
+package io.github.kxng0109.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Configuration properties for the offline evaluation runner, bound from the `eval` prefix and
+ * usually passed as command line arguments (e.g. `--eval.input=prompts.jsonl`).
+ *
+ * Fields:
+ * - `input`: The JSONL file with one prompt object per line.
+ * - `output`: The JSONL file results are appended to. Prompts already present in it are skipped,
+ *   which makes an interrupted run resumable. Defaults to the input file name with `.results.jsonl`.
+ * - `llms`: The models to compare for lines that do not carry their own `llms` array.
+ * - `concurrency`: The maximum number of prompts evaluated at the same time.
+ * - `idField`: The field holding each line's identifier; the line number is used when it is missing.
+ * - `promptField`: The field holding each line's prompt.
+ * - `systemPrompt`: The optional name of the system prompt to evaluate with.
+ */
+@ConfigurationProperties(prefix = "eval")
+public record EvaluationProperties(
+        Path input,
+        Path output,
+        List<String> llms,
+        @DefaultValue("4") int concurrency,
+        @DefaultValue("id") String idField,
+        @DefaultValue("prompt") String promptField,
+        String systemPrompt
+) {
+    public EvaluationProperties {
+        llms = llms == null ? List.of() : List.copyOf(llms);
+        if (output == null && input != null) {
+            output = input.resolveSibling(input.getFileName().toString().replaceFirst("\\.jsonl$", "") + ".results.jsonl");
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.kxng0109.backend.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import reactor.core.publisher.Flux;
+
+import java.util.function.Supplier;
+
+/**
+ * The LazyChatModel class defers creating a provider's {@link ChatModel} until the first request
+ * that actually uses it.
+ * <p>
+ * The ChatClient beans are needed at startup to build the map of available models, but building the
+ * underlying provider clients (HTTP clients, retry templates, provider-specific validation) is not.
+ * Wrapping them keeps that work out of the startup path, and a provider that is never called is never
+ * built. The time spent creating the delegate is logged, since it is part of the first request's
+ * latency.
+ */
+@Slf4j
+class LazyChatModel implements ChatModel {
+
+    private final String llm;
+    private final Supplier<? extends ChatModel> factory;
+    private volatile ChatModel delegate;
+
+    LazyChatModel(String llm, Supplier<? extends ChatModel> factory) {
+        this.llm = llm;
+        this.factory = factory;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        return delegate().call(prompt);
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return delegate().stream(prompt);
+    }
+
+    /**
+     * Returns empty options without creating the delegate, since ChatClient asks for them as soon as
+     * it is built. Every option left unset falls back to the provider's configured default when the
+     * provider builds its request. The options are tool-calling options so that tools registered on a
+     * ChatClient request are still passed through.
+     */
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return ToolCallingChatOptions.builder().build();
+    }
+
+    ChatModel delegate() {
+        ChatModel model = delegate;
+        if (model == null) {
+            synchronized (this) {
+                model = delegate;
+                if (model == null) {
+                    long startTime = System.nanoTime();
+                    model = factory.get();
+                    delegate = model;
+                    log.info("Initialized {} chat model on first use in {}ms", llm, (System.nanoTime() - startTime) / 1_000_000);
+                }
+            }
+        }
+        return model;
+    }
+}
@@ -0,0 +1,33 @@
+package io.github.kxng0109.backend.config;
+
+import io.github.kxng0109.backend.service.local.ChatFormat;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+
+/**
+ * Configuration properties for the in-process CPU provider, bound from the `llm.local` prefix. The
+ * provider is registered as the `local` model only when `modelPath` is set.
+ *
+ * Fields:
+ * - `modelPath`: The GGUF model file (Llama architecture, F32/F16/BF16/Q8_0/Q4_0 weights).
+ * - `format`: The chat template the model was trained with: `zephyr` (TinyLlama), `chatml` or `llama2`.
+ * - `contextLength`: The maximum number of tokens kept in the key/value cache, capped at the model's own
+ *   context length. Together with the model size this determines the memory used by the cache.
+ * - `maxTokens`: The default maximum number of tokens to generate.
+ * - `temperature`: The default sampling temperature; `0` always picks the most likely token.
+ * - `topP`: The default nucleus sampling threshold.
+ * - `threads`: The number of threads used for inference; `0` uses all available processors.
+ */
+@ConfigurationProperties(prefix = "llm.local")
+public record LocalModelProperties(
+        Path modelPath,
+        @DefaultValue("zephyr") ChatFormat format,
+        @DefaultValue("2048") int contextLength,
+        @DefaultValue("256") int maxTokens,
+        @DefaultValue("0.7") double temperature,
+        @DefaultValue("0.9") double topP,
+        @DefaultValue("0") int threads
+) {
+}
@@ -0,0 +1,26 @@
+package io.github.kxng0109.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.Map;
+
+/**
+ * Configuration properties for the system prompt registry, bound from the `llm.prompts` prefix.
+ *
+ * Fields:
+ * - `location`: The resource pattern the prompt templates are loaded from. Each matching file is
+ *   registered under its file name without the extension.
+ * - `defaultPrompt`: The name of the prompt used when neither the request nor the model selects one.
+ * - `models`: Per-model default prompt names, keyed by model identifier (e.g. `llm.prompts.models.ollama=concise`).
+ */
+@ConfigurationProperties(prefix = "llm.prompts")
+public record PromptProperties(
+        @DefaultValue("classpath*:prompts/*.txt") String location,
+        @DefaultValue("default") String defaultPrompt,
+        Map<String, String> models
+) {
+    public PromptProperties {
+        models = models == null ? Map.of() : Map.copyOf(models);
+    }
+}
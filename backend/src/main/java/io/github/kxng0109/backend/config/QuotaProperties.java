@@ -0,0 +1,57 @@
+package io.github.kxng0109.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Configuration properties for per-client quotas, bound from the `llm.quotas` prefix.
+ *
+ * Fields:
+ * - `enabled`: Whether quotas are enforced. Disabled by default.
+ * - `window`: The length of the fixed window the requests and tokens are counted in.
+ * - `defaults`: The limits per model that apply to every API key without its own entry, keyed by
+ *   model identifier. Requests without an `X-API-Key` header or with a key that has no entry in `keys`
+ *   share a single quota under the key `anonymous`.
+ * - `keys`: The limits per API key and model, e.g. `llm.quotas.keys[team-a-key].openai.tokens=100000`.
+ *
+ * A limit of 0 for requests or tokens means unlimited, as does a model without any entry.
+ */
+@ConfigurationProperties(prefix = "llm.quotas")
+public record QuotaProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("PT1M") Duration window,
+        Map<String, Limit> defaults,
+        Map<String, Map<String, Limit>> keys
+) {
+    public QuotaProperties {
+        defaults = defaults != null ? defaults : Map.of();
+        keys = keys != null ? keys : Map.of();
+    }
+
+    /**
+     * Returns the limit of the given API key for the given model, falling back to the defaults.
+     *
+     * @param apiKey the API key of the client
+     * @param llm    the identifier of the language model
+     * @return the applicable limit, or null if the model is not limited for this key
+     */
+    public Limit limit(String apiKey, String llm) {
+        Map<String, Limit> limits = keys.get(apiKey);
+        if (limits != null && limits.containsKey(llm)) {
+            return limits.get(llm);
+        }
+        return defaults.get(llm);
+    }
+
+    /**
+     * The requests and tokens allowed per window.
+     *
+     * @param requests the maximum number of requests, or 0 for no limit
+     * @param tokens   the maximum number of prompt and generation tokens, or 0 for no limit
+     */
+    public record Limit(long requests, long tokens) {
+    }
+}
@@ -0,0 +1,31 @@
+package io.github.kxng0109.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Configuration properties for multi-turn conversation sessions, bound from the `llm.sessions` prefix.
+ *
+ * Fields:
+ * - `maxHistoryTokens`: The maximum number of tokens of earlier turns sent along with a prompt, per
+ *   model. The oldest turns are dropped first.
+ * - `maxTurns`: The maximum number of turns kept per model, regardless of their size.
+ * - `maxActiveSessions`: The maximum number of sessions held in memory. The least recently used
+ *   sessions are moved to disk when it is exceeded.
+ * - `idleTimeout`: How long a session may be unused before it is moved from memory to disk.
+ * - `ttl`: How long a session may be unused before it is deleted.
+ * - `directory`: The directory sessions are written to when they leave memory.
+ */
+@ConfigurationProperties(prefix = "llm.sessions")
+public record SessionProperties(
+        @DefaultValue("4000") int maxHistoryTokens,
+        @DefaultValue("50") int maxTurns,
+        @DefaultValue("1000") int maxActiveSessions,
+        @DefaultValue("PT10M") Duration idleTimeout,
+        @DefaultValue("P1D") Duration ttl,
+        @DefaultValue("sessions") Path directory
+) {
+}
@@ -0,0 +1,38 @@
+package io.github.kxng0109.backend.config;
+
+import io.github.kxng0109.backend.service.state.InMemorySharedStateStore;
+import io.github.kxng0109.backend.service.state.RedisSharedStateStore;
+import io.github.kxng0109.backend.service.state.SharedStateStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * The SharedStateConfig class selects the {@link SharedStateStore} implementation used for state
+ * that has to be consistent across backend instances.
+ * <p>
+ * The implementation is chosen with the `llm.state.store` property:
+ * - `memory` (default): state is kept inside the current process.
+ * - `redis`: state is kept in a Redis-compatible server configured through the standard
+ *   `spring.data.redis.*` properties.
+ */
+@Configuration
+public class SharedStateConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "llm.state.store", havingValue = "memory", matchIfMissing = true)
+    public SharedStateStore inMemorySharedStateStore() {
+        return new InMemorySharedStateStore();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "llm.state.store", havingValue = "redis")
+    public SharedStateStore redisSharedStateStore(
+            StringRedisTemplate redisTemplate,
+            @Value("${llm.state.key-prefix:llm-comparison:}") String keyPrefix
+    ) {
+        return new RedisSharedStateStore(redisTemplate, keyPrefix);
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.kxng0109.backend.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aot.AotDetector;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The StartupReport class measures how quickly a fresh instance becomes useful, which is what
+ * matters for scale-to-zero deployments.
+ * <p>
+ * When the application is ready it logs the time since JVM start and the time spent refreshing the
+ * context, together with whether Spring AOT artifacts and a JVM class data archive are in use. It then
+ * times the first synchronous request to `/api/llm/`, which includes creating the lazily initialized
+ * provider clients, and logs it once. The first request latency is also published as the
+ * `llm.first.request.time` gauge, next to the `application.started.time` and `application.ready.time`
+ * metrics Spring Boot already exposes.
+ */
+@Component
+@Slf4j
+public class StartupReport extends OncePerRequestFilter implements ApplicationListener<ApplicationReadyEvent> {
+
+    private final AtomicBoolean firstRequestSeen = new AtomicBoolean();
+    private final AtomicLong firstRequestMillis = new AtomicLong();
+    private volatile long readyAt;
+
+    public StartupReport(ObjectProvider<MeterRegistry> meterRegistry) {
+        meterRegistry.ifAvailable(registry -> TimeGauge.builder(
+                "llm.first.request.time",
+                firstRequestMillis,
+                TimeUnit.MILLISECONDS,
+                AtomicLong::get
+        ).description("Latency of the first API request served by this instance").register(registry));
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        readyAt = System.nanoTime();
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        log.info("Startup: ready {}ms after JVM start, context refreshed in {}ms (Spring AOT: {}, class data archive: {})",
+                 System.currentTimeMillis() - runtime.getStartTime(),
+                 event.getTimeTaken() == null ? -1 : event.getTimeTaken().toMillis(),
+                 AotDetector.useGeneratedArtifacts() ? "on" : "off",
+                 usesClassArchive(runtime.getInputArguments()) ? "on" : "off");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return firstRequestSeen.get() || !request.getRequestURI().startsWith("/api/llm/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long startTime = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (!request.isAsyncStarted() && firstRequestSeen.compareAndSet(false, true)) {
+                long millis = (System.nanoTime() - startTime) / 1_000_000;
+                firstRequestMillis.set(millis);
+                log.info("Startup: first request {} {} took {}ms, {}ms after ready",
+                         request.getMethod(), request.getRequestURI(), millis,
+                         readyAt == 0 ? -1 : (startTime - readyAt) / 1_000_000);
+            }
+        }
+    }
+
+    private static boolean usesClassArchive(List<String> jvmArguments) {
+        return jvmArguments.stream().anyMatch(argument -> argument.startsWith("-XX:SharedArchiveFile")
+                || argument.startsWith("-XX:AOTCache"));
+    }
+}
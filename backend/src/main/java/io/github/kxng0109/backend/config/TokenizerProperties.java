@@ -0,0 +1,69 @@
+package io.github.kxng0109.backend.config;
+
+import io.github.kxng0109.backend.service.token.BpeTokenizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.Map;
+
+/**
+ * Configuration properties for local token counting, bound from the `llm.tokens` prefix.
+ * <p>
+ * Each entry of `models` is keyed by model identifier, for example:
+ * <pre>
+ * llm.tokens.models.openai.vocabulary=/opt/tokenizers/o200k_base.tiktoken
+ * llm.tokens.models.openai.context-window=128000
+ * llm.tokens.models.openai.reserved-output-tokens=4096
+ * llm.tokens.models.openai.input-cost-per-million=2.50
+ * llm.tokens.models.openai.overflow=truncate
+ * </pre>
+ */
+@ConfigurationProperties(prefix = "llm.tokens")
+public record TokenizerProperties(
+        Map<String, Model> models
+) {
+    public TokenizerProperties {
+        models = models == null ? Map.of() : Map.copyOf(models);
+    }
+
+    /**
+     * Token settings for a single model.
+     *
+     * Fields:
+     * - `vocabulary`: Path of a tiktoken-format vocabulary file. Without it, tokens are estimated from
+     *   the text length.
+     * - `pattern`: The pre-tokenization regular expression of the vocabulary, defaults to the cl100k pattern.
+     * - `contextWindow`: The model's context window in tokens. Without it, prompts are never rejected
+     *   or truncated.
+     * - `reservedOutputTokens`: Tokens of the context window kept free for the model's answer.
+     * - `inputCostPerMillion`: The price of one million prompt tokens, used for the cost estimate.
+     * - `overflow`: What to do with prompts that do not fit the context window.
+     */
+    public record Model(
+            String vocabulary,
+            String pattern,
+            Integer contextWindow,
+            Integer reservedOutputTokens,
+            Double inputCostPerMillion,
+            Overflow overflow
+    ) {
+        public Model {
+            pattern = pattern == null ? BpeTokenizer.CL100K_PATTERN : pattern;
+            reservedOutputTokens = reservedOutputTokens == null ? 0 : reservedOutputTokens;
+            overflow = overflow == null ? Overflow.REJECT : overflow;
+        }
+    }
+
+    /**
+     * Strategies for prompts that exceed a model's context window.
+     */
+    public enum Overflow {
+        /**
+         * Fail the model's request without calling the provider.
+         */
+        REJECT,
+        /**
+         * Cut the end of the prompt until it fits.
+         */
+        TRUNCATE
+    }
+}
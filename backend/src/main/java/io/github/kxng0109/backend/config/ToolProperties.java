@@ -0,0 +1,33 @@
+package io.github.kxng0109.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Configuration properties for the local tools the compared models may call, bound from the
+ * `llm.tools` prefix.
+ *
+ * Fields:
+ * - `models`: The identifiers of the models that are offered the tools. Models that do not support
+ *   function calling must not be listed. No model is offered tools by default.
+ * - `maxConcurrency`: The maximum number of tool calls executing at the same time across all requests.
+ * - `timeout`: How long the tool calls of a single model turn may take. Calls that have not completed
+ *   by then are answered with an error, so the model can carry on without them.
+ * - `documents`: The location pattern of the documents indexed for the document lookup tool.
+ * - `maxResults`: The maximum number of passages a document lookup returns.
+ */
+@ConfigurationProperties(prefix = "llm.tools")
+public record ToolProperties(
+        Set<String> models,
+        @DefaultValue("8") int maxConcurrency,
+        @DefaultValue("PT10S") Duration timeout,
+        @DefaultValue("classpath*:documents/*.md") String documents,
+        @DefaultValue("3") int maxResults
+) {
+    public ToolProperties {
+        models = models == null ? Set.of() : Set.copyOf(models);
+    }
+}
@@ -0,0 +1,33 @@
+package io.github.kxng0109.backend.config;
+
+import io.github.kxng0109.backend.controller.CompareWebSocketHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * The WebSocketConfig class registers the WebSocket compare channel served by
+ * {@link CompareWebSocketHandler} at `/api/llm/ws`.
+ *
+ * Handshakes are accepted from the same origins as regular requests, configured through the
+ * `cors.allowed-origins` property.
+ */
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final CompareWebSocketHandler compareWebSocketHandler;
+
+    @Value("${cors.allowed-origins}")
+    private String allowedOrigins;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(compareWebSocketHandler, "/api/llm/ws")
+                .setAllowedOrigins(allowedOrigins.split(","));
+    }
+}
@@ -0,0 +1,28 @@
+package io.github.kxng0109.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the WebSocket compare channel, bound from the `llm.websocket` prefix.
+ *
+ * Fields:
+ * - `maxInFlight`: The maximum number of comparisons a single connection may run at the same time.
+ *   Further compare messages are answered with an error until one of them completes.
+ * - `sendTimeLimit`: How long sending a single message to the client may take before the connection
+ *   is closed.
+ * - `bufferSizeLimit`: How much outgoing data may be buffered for a client that does not read fast
+ *   enough before the connection is closed.
+ * - `maxMessageSize`: The maximum size of an incoming message.
+ */
+@ConfigurationProperties(prefix = "llm.websocket")
+public record WebSocketProperties(
+        @DefaultValue("16") int maxInFlight,
+        @DefaultValue("PT10S") Duration sendTimeLimit,
+        @DefaultValue("1MB") DataSize bufferSizeLimit,
+        @DefaultValue("256KB") DataSize maxMessageSize
+) {
+}
@@ -1,17 +1,43 @@
 package io.github.kxng0109.backend.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.backend.error.PromptTooLargeException;
+import io.github.kxng0109.backend.error.ProviderRateLimitExceededException;
+import io.github.kxng0109.backend.error.QuotaExceededException;
+import io.github.kxng0109.backend.error.dto.ErrorResponse;
 import io.github.kxng0109.backend.model.dto.ChatRequest;
+import io.github.kxng0109.backend.model.dto.CompareResponse;
+import io.github.kxng0109.backend.model.dto.ComparisonAnalysis;
 import io.github.kxng0109.backend.model.dto.ModelResponse;
 import io.github.kxng0109.backend.service.AiService;
+import io.github.kxng0109.backend.service.admission.AdmissionPermit;
+import io.github.kxng0109.backend.service.admission.CancellationToken;
+import io.github.kxng0109.backend.service.admission.CompareAdmissionControl;
+import io.github.kxng0109.backend.service.admission.Priority;
+import io.github.kxng0109.backend.service.quota.QuotaLease;
+import io.github.kxng0109.backend.service.quota.QuotaManager;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
-import java.util.Map;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 /**
  * Controller for handling API requests related to language models (LLMs).
@@ -21,6 +47,7 @@ import java.util.Set;
  * Endpoints:
  * - GET /api/llm/available: Fetch available language model identifiers.
  * - POST /api/llm/compare: Compare responses across multiple language models.
+ * - POST /api/llm/compare/stream: Compare responses, streaming each one as NDJSON as soon as it completes.
  * - GET /api/llm/health: Perform an application health check.
  */
 @RestController
@@ -29,7 +56,14 @@ import java.util.Set;
 @Slf4j
 public class AiController {
 
+    private static final String CLIENT_DISCONNECTED = "The client disconnected";
+    private static final String REQUEST_TIMED_OUT = "The request timed out";
+
     private final AiService aiService;
+    private final CompareAdmissionControl admissionControl;
+    private final QuotaManager quotaManager;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<ObservationRegistry> observationRegistry;
 
     /**
      * Retrieves a list of available language model identifiers supported by the system.
@@ -52,18 +86,138 @@ public class AiController {
      * This method processes the provided prompt by sending it to the listed language models.
      * The results are returned in a structured format including the responses and relevant metadata
      * for each language model. The metadata provides insights into each model's performance and output.
+     * <p>
+     * Every comparison passes through {@link CompareAdmissionControl} first. Under overload the request
+     * is queued fairly per client and by priority, and is rejected with HTTP 429 and a Retry-After
+     * header if it cannot be started in time. Before that, the request is counted against the quota of
+     * the caller's API key, and rejected with HTTP 429 if the quota for one of the models is exhausted.
+     * Requests rejected by admission control are not counted against the quota.
+     * While the server is shutting down, comparisons are rejected with HTTP 503.
+     * <p>
+     * Unlike the streaming endpoint, this endpoint does not cancel the comparison when the client
+     * disconnects. The request is processed synchronously, and the servlet container only notices a
+     * vanished client when it writes to it, which happens after all models have answered. Clients that
+     * may give up early should use `/compare/stream` or the WebSocket endpoint, which stop the models
+     * as soon as the client is gone.
      *
      * @param chatRequest the request object containing the following:
      *                    - The `prompt` to send to the language models.
      *                    - A list of `llms` (language model identifiers) for which the prompt will be evaluated.
-     * @return a ResponseEntity containing a map where:
-     * - The key is "responses".
-     * - The value is a list of {@link ModelResponse} instances for each language model,
+     * @param clientId    the optional `X-Client-Id` header identifying the caller for fair queuing;
+     *                    the remote address is used when it is absent.
+     * @param priority    the optional `X-Priority` header, either "interactive" (default) or "batch".
+     * @param apiKey      the optional `X-API-Key` header selecting the caller's quota.
+     * @param analyze     whether to include the pairwise similarity analysis of the responses.
+     * @param request     the underlying HTTP request.
+     * @return a ResponseEntity containing a {@link CompareResponse} where:
+     * - `responses` is a list of {@link ModelResponse} instances for each language model,
      * including responses and associated metadata.
+     * - `analysis` is the {@link ComparisonAnalysis} of the responses, present only if requested.
      */
     @PostMapping("/compare")
-    public ResponseEntity<Map<String, List<ModelResponse>>> getAnswer(@Valid @RequestBody ChatRequest chatRequest) {
-        return ResponseEntity.ok(Map.of("responses", aiService.compareModels(chatRequest)));
+    public ResponseEntity<CompareResponse> getAnswer(
+            @Valid @RequestBody ChatRequest chatRequest,
+            @RequestHeader(value = "X-Client-Id", required = false) String clientId,
+            @RequestHeader(value = "X-Priority", defaultValue = "interactive") String priority,
+            @RequestHeader(value = "X-API-Key", required = false) String apiKey,
+            @RequestParam(defaultValue = "false") boolean analyze,
+            HttpServletRequest request
+    ) {
+        String client = clientId != null ? clientId : request.getRemoteAddr();
+        Priority requestPriority = Priority.from(priority);
+        QuotaLease quota = quotaManager.reserve(apiKey, chatRequest.llms());
+        try (AdmissionPermit permit = admit(client, requestPriority, quota);
+             QuotaLease.Scope quotaScope = quota.open();
+             CancellationToken.Scope cancellationScope = permit.cancellation().open()) {
+            if (analyze) {
+                return ResponseEntity.ok(aiService.compareModelsWithAnalysis(chatRequest));
+            }
+            return ResponseEntity.ok(CompareResponse.builder()
+                                                    .responses(aiService.compareModels(chatRequest))
+                                                    .build());
+        }
+    }
+
+    /**
+     * Compares responses from multiple language models and streams them back as newline-delimited JSON.
+     * <p>
+     * Each {@link ModelResponse} is written and flushed to the client on its own line the moment its
+     * model completes, so the client can render results progressively and the server only ever buffers
+     * a single response at a time. Cached responses are written as stored, without re-serialization.
+     * Lines are written in completion order. Model validation, request quotas and admission control are
+     * checked before the response is committed, so those failures are reported with the usual error status
+     * codes. Failures that only surface while the models run, such as an exhausted token quota, a provider
+     * rate limit or a prompt that does not fit a model's context window, arrive after the `200` status was
+     * sent; the stream then ends with a line of the form `{"error": {...}, "retryAfter": 30}` carrying the
+     * same error body and status the non-streaming endpoint would have returned.
+     * <p>
+     * When `analyze` is set, a final line of the form `{"analysis": {...}}` carrying the
+     * {@link ComparisonAnalysis} of all responses is written after the last response.
+     * <p>
+     * The body is written on an async request thread, so the caller's quota and the observation of the
+     * request are reopened there to keep the model calls accounted and in the request's trace.
+     * <p>
+     * The models that are still running are cancelled as soon as the client is found to be gone, either
+     * because writing a response to it fails or because the container reports an error on the async
+     * request, and when the async request times out. In those cases the admission permit is released
+     * by the container's callback as well, so it is not held by a body that never runs or never ends.
+     *
+     * @param chatRequest the request object containing the prompt and the language models to compare.
+     * @param clientId    the optional `X-Client-Id` header identifying the caller for fair queuing;
+     *                    the remote address is used when it is absent.
+     * @param priority    the optional `X-Priority` header, either "interactive" (default) or "batch".
+     * @param apiKey      the optional `X-API-Key` header selecting the caller's quota.
+     * @param analyze     whether to append the similarity analysis of the responses.
+     * @param request     the underlying HTTP request.
+     * @return a ResponseEntity with an `application/x-ndjson` body containing one {@link ModelResponse}
+     * per line.
+     */
+    @PostMapping(value = "/compare/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAnswer(
+            @Valid @RequestBody ChatRequest chatRequest,
+            @RequestHeader(value = "X-Client-Id", required = false) String clientId,
+            @RequestHeader(value = "X-Priority", defaultValue = "interactive") String priority,
+            @RequestHeader(value = "X-API-Key", required = false) String apiKey,
+            @RequestParam(defaultValue = "false") boolean analyze,
+            HttpServletRequest request
+    ) {
+        aiService.validateModels(chatRequest.llms());
+
+        String client = clientId != null ? clientId : request.getRemoteAddr();
+        Priority requestPriority = Priority.from(priority);
+        QuotaLease quota = quotaManager.reserve(apiKey, chatRequest.llms());
+        AdmissionPermit permit = admit(client, requestPriority, quota);
+        CancellationToken cancellation = permit.cancellation();
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(cancellation, cancelOnAbort(permit));
+        Observation observation = observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP)
+                                                     .getCurrentObservation();
+
+        StreamingResponseBody body = outputStream -> {
+            try (permit;
+                 QuotaLease.Scope quotaScope = quota.open();
+                 CancellationToken.Scope cancellationScope = cancellation.open();
+                 Observation.Scope scope = openScope(observation)) {
+                if (!analyze) {
+                    aiService.compareModelsSerialized(chatRequest, json -> writeLine(outputStream, json, cancellation));
+                    return;
+                }
+
+                ComparisonAnalysis analysis = aiService.compareModelsWithAnalysis(
+                        chatRequest,
+                        modelResponse -> writeLine(outputStream, serialize(modelResponse), cancellation)
+                );
+                writeLine(outputStream, serialize(CompareResponse.builder().analysis(analysis).build()), cancellation);
+            } catch (RuntimeException e) {
+                if (cancellation.isCancelled()) {
+                    throw e;
+                }
+                // The status line is already sent, so the failure can only be reported as the last line.
+                writeLine(outputStream, serialize(errorLine(e)), cancellation);
+            }
+        };
+        return ResponseEntity.ok()
+                             .contentType(MediaType.APPLICATION_NDJSON)
+                             .body(body);
     }
 
     /**
@@ -80,4 +234,98 @@ public class AiController {
     public ResponseEntity<Void> health() {
         return ResponseEntity.ok().build();
     }
+
+    /**
+     * Admits a comparison whose requests were already counted against the client's quota, giving them
+     * back if the comparison is rejected.
+     */
+    private AdmissionPermit admit(String client, Priority priority, QuotaLease quota) {
+        try {
+            return admissionControl.admit(client, priority);
+        } catch (RuntimeException e) {
+            quota.refund();
+            throw e;
+        }
+    }
+
+    private static Observation.Scope openScope(Observation observation) {
+        return observation != null ? observation.openScope() : Observation.Scope.NOOP;
+    }
+
+    /**
+     * Cancels a streamed comparison and releases its permit when the container reports that the async
+     * request failed, which is how a client disconnect surfaces, or timed out. The permit is also
+     * released once the async request completes, in case the body never got to run.
+     */
+    private static CallableProcessingInterceptor cancelOnAbort(AdmissionPermit permit) {
+        return new CallableProcessingInterceptor() {
+            @Override
+            public <T> Object handleTimeout(NativeWebRequest request, Callable<T> task) {
+                permit.cancellation().cancel(REQUEST_TIMED_OUT);
+                permit.close();
+                return RESULT_NONE;
+            }
+
+            @Override
+            public <T> Object handleError(NativeWebRequest request, Callable<T> task, Throwable t) {
+                permit.cancellation().cancel(CLIENT_DISCONNECTED);
+                permit.close();
+                return RESULT_NONE;
+            }
+
+            @Override
+            public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+                permit.close();
+            }
+        };
+    }
+
+    private static CompareResponse errorLine(RuntimeException e) {
+        return switch (e) {
+            case QuotaExceededException ex -> errorLine(HttpStatus.TOO_MANY_REQUESTS, "Quota Exceeded",
+                                                        ex.getMessage(), ex.getRetryAfterSeconds());
+            case ProviderRateLimitExceededException ex -> errorLine(HttpStatus.TOO_MANY_REQUESTS,
+                                                                    "Provider Rate Limit Exceeded", ex.getMessage(),
+                                                                    ex.getRetryAfterSeconds());
+            case PromptTooLargeException ex ->
+                    errorLine(HttpStatus.PAYLOAD_TOO_LARGE, "Prompt Too Large", ex.getMessage(), null);
+            default -> {
+                log.error("Unexpected error in streamed comparison: {}", e.getMessage(), e);
+                yield errorLine(HttpStatus.INTERNAL_SERVER_ERROR, "Internal Server Error",
+                                "An unexpected error occurred: " + e.getMessage(), null);
+            }
+        };
+    }
+
+    private static CompareResponse errorLine(HttpStatus status, String error, String message, Long retryAfter) {
+        ErrorResponse errorResponse = ErrorResponse.builder()
+                                                   .timestamp(Instant.now().toString())
+                                                   .status(status.value())
+                                                   .error(error)
+                                                   .message(message)
+                                                   .build();
+        return CompareResponse.builder().error(errorResponse).retryAfter(retryAfter).build();
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeLine(OutputStream outputStream, byte[] json, CancellationToken cancellation) {
+        try {
+            synchronized (outputStream) {
+                outputStream.write(json);
+                outputStream.write('\n');
+                outputStream.flush();
+            }
+        } catch (IOException e) {
+            // Nobody is left to read the remaining responses, so stop producing them.
+            cancellation.cancel(CLIENT_DISCONNECTED);
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -0,0 +1,429 @@
+package io.github.kxng0109.backend.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.backend.config.WebSocketProperties;
+import io.github.kxng0109.backend.error.ModelNotFoundException;
+import io.github.kxng0109.backend.error.OverloadedException;
+import io.github.kxng0109.backend.error.PromptTooLargeException;
+import io.github.kxng0109.backend.error.ProviderRateLimitExceededException;
+import io.github.kxng0109.backend.error.QuotaExceededException;
+import io.github.kxng0109.backend.error.ServiceUnavailableException;
+import io.github.kxng0109.backend.error.dto.ErrorResponse;
+import io.github.kxng0109.backend.model.dto.ChatRequest;
+import io.github.kxng0109.backend.model.dto.CompareSocketEvent;
+import io.github.kxng0109.backend.model.dto.CompareSocketMessage;
+import io.github.kxng0109.backend.model.dto.ComparisonAnalysis;
+import io.github.kxng0109.backend.service.AiService;
+import io.github.kxng0109.backend.service.admission.AdmissionPermit;
+import io.github.kxng0109.backend.service.admission.CancellationToken;
+import io.github.kxng0109.backend.service.admission.CompareAdmissionControl;
+import io.github.kxng0109.backend.service.admission.Priority;
+import io.github.kxng0109.backend.service.quota.QuotaLease;
+import io.github.kxng0109.backend.service.quota.QuotaManager;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The CompareWebSocketHandler class serves comparisons over a single long-lived WebSocket connection
+ * at `/api/llm/ws`, so that interactive clients firing many prompts avoid opening a new HTTP request
+ * for each of them.
+ * <p>
+ * A connection multiplexes any number of comparisons, each identified by a client-chosen id. Clients
+ * send {@link CompareSocketMessage}s to start (`compare`) or cancel (`cancel`) a comparison and to
+ * check that the backend is alive (`ping`). The server answers with {@link CompareSocketEvent}s: one
+ * `response` per model as soon as it completes, the `analysis` if requested, and finally `done`,
+ * `cancelled` or `error`. Messages of concurrent comparisons are interleaved.
+ * <p>
+ * Each comparison goes through the same quotas and admission control as the HTTP endpoints and runs on
+ * its own virtual thread. The API key, client id and priority are taken from the `X-API-Key`,
+ * `X-Client-Id` and `X-Priority` headers of the handshake or, since browsers cannot set headers on a
+ * WebSocket handshake, from the `apiKey`, `clientId` and `priority` query parameters of its URL. A
+ * `compare` message may override the priority of the connection for that comparison.
+ * Cancelling a comparison stops all further messages for it immediately, interrupts the provider
+ * calls in progress and skips models that have not been called yet. Closing the connection cancels
+ * all of its comparisons.
+ * <p>
+ * Output is bounded per connection: at most `llm.websocket.max-in-flight` comparisons run at the same
+ * time, and messages for a client that reads slower than they are produced are buffered only up to
+ * `llm.websocket.buffer-size-limit`. A client exceeding the buffer, or taking longer than
+ * `llm.websocket.send-time-limit` to accept a message, is disconnected.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CompareWebSocketHandler extends TextWebSocketHandler {
+
+    private static final String CANCELLED = "The comparison was cancelled";
+    private static final String CLIENT_DISCONNECTED = "The client disconnected";
+
+    private final AiService aiService;
+    private final CompareAdmissionControl admissionControl;
+    private final QuotaManager quotaManager;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final WebSocketProperties properties;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        session.setTextMessageSizeLimit((int) properties.maxMessageSize().toBytes());
+
+        String clientId = handshakeValue(session, "X-Client-Id", "clientId");
+        if (clientId == null) {
+            clientId = session.getRemoteAddress() != null
+                    ? session.getRemoteAddress().getAddress().getHostAddress()
+                    : session.getId();
+        }
+
+        WebSocketSession decoratedSession = new ConcurrentWebSocketSessionDecorator(
+                session,
+                (int) properties.sendTimeLimit().toMillis(),
+                (int) properties.bufferSizeLimit().toBytes(),
+                ConcurrentWebSocketSessionDecorator.OverflowStrategy.TERMINATE
+        );
+        connections.put(session.getId(), new Connection(
+                decoratedSession,
+                clientId,
+                handshakeValue(session, "X-API-Key", "apiKey"),
+                handshakeValue(session, "X-Priority", "priority")
+        ));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage textMessage) {
+        Connection connection = connections.get(session.getId());
+        if (connection == null) {
+            return;
+        }
+
+        CompareSocketMessage message;
+        try {
+            message = objectMapper.readValue(textMessage.getPayload(), CompareSocketMessage.class);
+        } catch (JsonProcessingException e) {
+            trySend(connection, errorEvent(null, HttpStatus.BAD_REQUEST, "Malformed JSON",
+                                           "Could not parse message", null, null));
+            return;
+        }
+
+        switch (message.type() != null ? message.type() : "") {
+            case "compare" -> start(connection, message);
+            case "cancel" -> cancel(connection, message.id());
+            case "ping" -> trySend(connection, CompareSocketEvent.builder().type("pong").id(message.id()).build());
+            default -> trySend(connection, errorEvent(message.id(), HttpStatus.BAD_REQUEST, "Bad Request",
+                                                      "Unknown message type: " + message.type(), null, null));
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Connection connection = connections.remove(session.getId());
+        if (connection != null && !connection.comparisons.isEmpty()) {
+            log.debug("Connection {} closed ({}), cancelling {} comparisons",
+                      session.getId(), status, connection.comparisons.size());
+            connection.comparisons.values().forEach(comparison -> comparison.cancel(CLIENT_DISCONNECTED));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void start(Connection connection, CompareSocketMessage message) {
+        String id = message.id();
+        if (id == null || id.isBlank() || message.request() == null) {
+            trySend(connection, errorEvent(id, HttpStatus.BAD_REQUEST, "Bad Request",
+                                           "A compare message needs an id and a request", null, null));
+            return;
+        }
+
+        Set<ConstraintViolation<ChatRequest>> violations = validator.validate(message.request());
+        if (!violations.isEmpty()) {
+            Map<String, String> errors = new HashMap<>();
+            violations.forEach(violation -> errors.put(violation.getPropertyPath().toString(), violation.getMessage()));
+            trySend(connection, errorEvent(id, HttpStatus.BAD_REQUEST, "Validation Failed",
+                                           "Invalid request parameters", errors, null));
+            return;
+        }
+
+        if (connection.comparisons.size() >= properties.maxInFlight()) {
+            trySend(connection, errorEvent(id, HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests",
+                                           "At most " + properties.maxInFlight()
+                                                   + " comparisons can run at the same time on one connection",
+                                           null, 1L));
+            return;
+        }
+
+        Comparison comparison = new Comparison();
+        if (connection.comparisons.putIfAbsent(id, comparison) != null) {
+            trySend(connection, errorEvent(id, HttpStatus.BAD_REQUEST, "Bad Request",
+                                           "A comparison with id " + id + " is already running", null, null));
+            return;
+        }
+        comparison.task = executor.submit(() -> run(connection, id, message, comparison));
+    }
+
+    private void run(Connection connection, String id, CompareSocketMessage message, Comparison comparison) {
+        ChatRequest chatRequest = message.request();
+        try {
+            aiService.validateModels(chatRequest.llms());
+            Priority priority = Priority.from(message.priority() != null ? message.priority() : connection.priority);
+            QuotaLease quota = quotaManager.reserve(connection.apiKey, chatRequest.llms());
+            try (AdmissionPermit permit = admit(connection, priority, quota);
+                 QuotaLease.Scope quotaScope = quota.open();
+                 CancellationToken.Scope cancellationScope = permit.cancellation().open()) {
+                comparison.admitted(permit.cancellation());
+                if (message.analyze()) {
+                    ComparisonAnalysis analysis = aiService.compareModelsWithAnalysis(
+                            chatRequest,
+                            modelResponse -> connection.send(comparison, toMessage(
+                                    CompareSocketEvent.builder().type("response").id(id).response(modelResponse).build()
+                            ))
+                    );
+                    connection.send(comparison, toMessage(
+                            CompareSocketEvent.builder().type("analysis").id(id).analysis(analysis).build()
+                    ));
+                } else {
+                    aiService.compareModelsSerialized(chatRequest, json -> connection.send(comparison, responseMessage(id, json)));
+                }
+            }
+            connection.send(comparison, toMessage(CompareSocketEvent.builder().type("done").id(id).build()));
+        } catch (Exception e) {
+            synchronized (comparison.sendLock) {
+                if (!comparison.isCancelled()) {
+                    trySend(connection, errorEvent(id, e));
+                }
+            }
+        } finally {
+            connection.comparisons.remove(id, comparison);
+        }
+    }
+
+    /**
+     * Admits a comparison of the connection, giving the requests counted against the client's quota
+     * back if the comparison is rejected.
+     */
+    private AdmissionPermit admit(Connection connection, Priority priority, QuotaLease quota) {
+        try {
+            return admissionControl.admit(connection.clientId, priority);
+        } catch (RuntimeException e) {
+            quota.refund();
+            throw e;
+        }
+    }
+
+    private void cancel(Connection connection, String id) {
+        Comparison comparison = id != null ? connection.comparisons.get(id) : null;
+        if (comparison == null) {
+            trySend(connection, errorEvent(id, HttpStatus.NOT_FOUND, "Not Found",
+                                           "No comparison with id " + id + " is running", null, null));
+            return;
+        }
+
+        if (comparison.cancel(CANCELLED)) {
+            // Waits for a message of the comparison that is being sent, so that nothing follows `cancelled`.
+            synchronized (comparison.sendLock) {
+                trySend(connection, CompareSocketEvent.builder().type("cancelled").id(id).build());
+            }
+        }
+    }
+
+    /**
+     * Returns the value of a handshake header, falling back to the query parameter of the handshake URL
+     * that browsers use instead.
+     */
+    private static String handshakeValue(WebSocketSession session, String header, String parameter) {
+        String value = session.getHandshakeHeaders().getFirst(header);
+        if (value != null || session.getUri() == null) {
+            return value;
+        }
+        String encoded = UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams().getFirst(parameter);
+        return encoded != null ? UriUtils.decode(encoded, StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Wraps an already serialized {@link io.github.kxng0109.backend.model.dto.ModelResponse} into a
+     * `response` event without deserializing it again.
+     */
+    private TextMessage responseMessage(String id, byte[] json) {
+        try {
+            ByteArrayOutputStream message = new ByteArrayOutputStream(json.length + 64);
+            message.write("{\"type\":\"response\",\"id\":".getBytes(StandardCharsets.UTF_8));
+            message.write(objectMapper.writeValueAsBytes(id));
+            message.write(",\"response\":".getBytes(StandardCharsets.UTF_8));
+            message.write(json);
+            message.write('}');
+            return new TextMessage(message.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private TextMessage toMessage(CompareSocketEvent event) {
+        try {
+            return new TextMessage(objectMapper.writeValueAsBytes(event));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void trySend(Connection connection, CompareSocketEvent event) {
+        try {
+            connection.session.sendMessage(toMessage(event));
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not send {} message to {}: {}", event.type(), connection.session.getId(), e.getMessage());
+        }
+    }
+
+    private CompareSocketEvent errorEvent(String id, Exception e) {
+        return switch (e) {
+            case ModelNotFoundException ex ->
+                    errorEvent(id, HttpStatus.NOT_FOUND, "Model Not Found", ex.getMessage(), null, null);
+            case PromptTooLargeException ex ->
+                    errorEvent(id, HttpStatus.PAYLOAD_TOO_LARGE, "Prompt Too Large", ex.getMessage(), null, null);
+            case QuotaExceededException ex -> errorEvent(id, HttpStatus.TOO_MANY_REQUESTS, "Quota Exceeded",
+                                                          ex.getMessage(), null, ex.getRetryAfterSeconds());
+            case OverloadedException ex -> errorEvent(id, HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests",
+                                                       ex.getMessage(), null, ex.getRetryAfterSeconds());
+            case ProviderRateLimitExceededException ex -> errorEvent(id, HttpStatus.TOO_MANY_REQUESTS,
+                                                                     "Provider Rate Limit Exceeded", ex.getMessage(),
+                                                                     null, ex.getRetryAfterSeconds());
+            case ServiceUnavailableException ex -> errorEvent(id, HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable",
+                                                               ex.getMessage(), null, ex.getRetryAfterSeconds());
+            case IllegalArgumentException ex ->
+                    errorEvent(id, HttpStatus.BAD_REQUEST, "Bad Request", ex.getMessage(), null, null);
+            default -> {
+                log.error("Unexpected error in comparison {}: {}", id, e.getMessage(), e);
+                yield errorEvent(id, HttpStatus.INTERNAL_SERVER_ERROR, "Internal Server Error",
+                                 "An unexpected error occurred: " + e.getMessage(), null, null);
+            }
+        };
+    }
+
+    private CompareSocketEvent errorEvent(String id, HttpStatus status, String error, String message,
+                                          Map<String, String> details, Long retryAfter) {
+        ErrorResponse errorResponse = ErrorResponse.builder()
+                                                   .timestamp(Instant.now().toString())
+                                                   .status(status.value())
+                                                   .error(error)
+                                                   .message(message)
+                                                   .details(details)
+                                                   .build();
+        return CompareSocketEvent.builder()
+                                 .type("error")
+                                 .id(id)
+                                 .error(errorResponse)
+                                 .retryAfter(retryAfter)
+                                 .build();
+    }
+
+    private static final class Connection {
+        private final WebSocketSession session;
+        private final String clientId;
+        private final String apiKey;
+        private final String priority;
+        private final Map<String, Comparison> comparisons = new ConcurrentHashMap<>();
+
+        private Connection(WebSocketSession session, String clientId, String apiKey, String priority) {
+            this.session = session;
+            this.clientId = clientId;
+            this.apiKey = apiKey;
+            this.priority = priority != null ? priority : Priority.INTERACTIVE.name();
+        }
+
+        /**
+         * Sends a message of a comparison, unless it was cancelled. Throwing on cancellation aborts the
+         * comparison, so that models that were not called yet are skipped.
+         * <p>
+         * The message is sent under the comparison's send lock rather than its monitor, so that a slow
+         * client holds up only the `cancelled` message and not the cancellation itself.
+         */
+        private void send(Comparison comparison, TextMessage message) {
+            synchronized (comparison.sendLock) {
+                if (comparison.isCancelled()) {
+                    throw new CancellationException(CANCELLED);
+                }
+                try {
+                    session.sendMessage(message);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    private static final class Comparison {
+        /**
+         * Orders the messages of the comparison, so that none is sent after `cancelled`.
+         */
+        private final Object sendLock = new Object();
+        private volatile Future<?> task;
+        private CancellationToken cancellation;
+        private String cancelReason;
+
+        /**
+         * Attaches the cancellation token of the admitted comparison, cancelling it right away if the
+         * comparison was cancelled while it waited for admission.
+         */
+        private synchronized void admitted(CancellationToken token) {
+            cancellation = token;
+            if (cancelReason != null) {
+                token.cancel(cancelReason);
+            }
+        }
+
+        /**
+         * Marks the comparison as cancelled, interrupts it if it is still waiting for admission, and
+         * cancels its model calls once it has been admitted.
+         *
+         * @return true if the comparison was not cancelled before
+         */
+        private synchronized boolean cancel(String reason) {
+            if (cancelReason != null) {
+                return false;
+            }
+            cancelReason = reason;
+            if (cancellation != null) {
+                cancellation.cancel(reason);
+            }
+            Future<?> currentTask = task;
+            if (currentTask != null) {
+                currentTask.cancel(true);
+            }
+            return true;
+        }
+
+        private synchronized boolean isCancelled() {
+            return cancelReason != null;
+        }
+    }
+}
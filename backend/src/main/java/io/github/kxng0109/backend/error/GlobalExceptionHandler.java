@@ -2,6 +2,7 @@ package io.github.kxng0109.backend.error;
 
 import io.github.kxng0109.backend.error.dto.ErrorResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -84,6 +85,20 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(errorResponse);
     }
 
+    @ExceptionHandler(PromptTooLargeException.class)
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    public ResponseEntity<ErrorResponse> handlePromptTooLargeException(PromptTooLargeException ex) {
+        ErrorResponse errorResponse = ErrorResponse.builder()
+                                                   .timestamp(Instant.now().toString())
+                                                   .status(HttpStatus.PAYLOAD_TOO_LARGE.value())
+                                                   .error("Prompt Too Large")
+                                                   .message(ex.getMessage())
+                                                   .build();
+
+        log.error("Prompt too large: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(errorResponse);
+    }
+
     @ExceptionHandler(NullPointerException.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public ResponseEntity<ErrorResponse> handleNullPointerException(NullPointerException ex) {
@@ -112,6 +127,70 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
     }
 
+    @ExceptionHandler(OverloadedException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public ResponseEntity<ErrorResponse> handleOverloadedException(OverloadedException ex) {
+        ErrorResponse errorResponse = ErrorResponse.builder()
+                                                   .timestamp(Instant.now().toString())
+                                                   .status(HttpStatus.TOO_MANY_REQUESTS.value())
+                                                   .error("Too Many Requests")
+                                                   .message(ex.getMessage())
+                                                   .build();
+
+        log.warn("Request shed: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                             .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                             .body(errorResponse);
+    }
+
+    @ExceptionHandler(QuotaExceededException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public ResponseEntity<ErrorResponse> handleQuotaExceededException(QuotaExceededException ex) {
+        ErrorResponse errorResponse = ErrorResponse.builder()
+                                                   .timestamp(Instant.now().toString())
+                                                   .status(HttpStatus.TOO_MANY_REQUESTS.value())
+                                                   .error("Quota Exceeded")
+                                                   .message(ex.getMessage())
+                                                   .build();
+
+        log.warn("Quota exceeded: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                             .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                             .body(errorResponse);
+    }
+
+    @ExceptionHandler(ProviderRateLimitExceededException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public ResponseEntity<ErrorResponse> handleProviderRateLimitExceededException(ProviderRateLimitExceededException ex) {
+        ErrorResponse errorResponse = ErrorResponse.builder()
+                                                   .timestamp(Instant.now().toString())
+                                                   .status(HttpStatus.TOO_MANY_REQUESTS.value())
+                                                   .error("Provider Rate Limit Exceeded")
+                                                   .message(ex.getMessage())
+                                                   .build();
+
+        log.warn("Provider rate limit exceeded: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                             .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                             .body(errorResponse);
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ResponseEntity<ErrorResponse> handleServiceUnavailableException(ServiceUnavailableException ex) {
+        ErrorResponse errorResponse = ErrorResponse.builder()
+                                                   .timestamp(Instant.now().toString())
+                                                   .status(HttpStatus.SERVICE_UNAVAILABLE.value())
+                                                   .error("Service Unavailable")
+                                                   .message(ex.getMessage())
+                                                   .build();
+
+        log.warn("Request rejected: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                             .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                             .body(errorResponse);
+    }
+
     @ExceptionHandler(Exception.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public ResponseEntity<ErrorResponse> handleGenericException(Exception ex) {
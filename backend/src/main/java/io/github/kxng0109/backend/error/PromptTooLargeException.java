@@ -0,0 +1,7 @@
+package io.github.kxng0109.backend.error;
+
+public class PromptTooLargeException extends RuntimeException {
+    public PromptTooLargeException(String message) {
+        super(message);
+    }
+}
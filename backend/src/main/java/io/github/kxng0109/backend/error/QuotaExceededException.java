@@ -0,0 +1,13 @@
+package io.github.kxng0109.backend.error;
+
+import lombok.Getter;
+
+@Getter
+public class QuotaExceededException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public QuotaExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,258 @@
+package io.github.kxng0109.backend.evaluation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.backend.config.EvaluationProperties;
+import io.github.kxng0109.backend.model.dto.ChatRequest;
+import io.github.kxng0109.backend.model.dto.ModelResponse;
+import io.github.kxng0109.backend.service.AiService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The EvaluationRunner class runs a suite of prompts from a JSONL file through {@link AiService}
+ * without going through the HTTP API.
+ * <p>
+ * The input file is streamed line by line and at most `eval.concurrency` prompts are in flight at any
+ * time, so arbitrarily large suites run in constant memory. Every finished prompt is appended to the
+ * output file as one JSON line and flushed immediately. Because a line is only written once all models
+ * have answered, a rerun with the same output file resumes where the previous run stopped. Prompts for
+ * which a model returned an error instead of an answer count as not completed and are evaluated again
+ * on resume, appending a new line for the same id.
+ * <p>
+ * Models are always called, bypassing the response cache, so the measured latencies are those of the
+ * providers and not of earlier runs.
+ * <p>
+ * At the end of the run, a per-model summary of throughput, latency and token usage is logged and
+ * written next to the output file as `*.summary.json`.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EvaluationRunner {
+
+    private final AiService aiService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Evaluates every prompt of the configured input file that is not in the output file yet.
+     *
+     * @param properties the evaluation settings
+     * @return the summary of this run
+     * @throws IOException          if the input cannot be read or the output cannot be written
+     * @throws InterruptedException if the run is interrupted while waiting for capacity
+     */
+    public EvaluationSummary run(EvaluationProperties properties) throws IOException, InterruptedException {
+        if (properties.input() == null || !Files.isReadable(properties.input())) {
+            throw new IllegalArgumentException("Evaluation input is not readable: " + properties.input());
+        }
+        if (properties.concurrency() < 1) {
+            throw new IllegalArgumentException("Evaluation concurrency must be at least 1");
+        }
+
+        Set<String> completed = readCompletedIds(properties.output());
+        terminateLastLine(properties.output());
+        if (!completed.isEmpty()) {
+            log.info("Resuming evaluation, {} prompt(s) already in {}", completed.size(), properties.output());
+        }
+
+        Map<String, ModelStatistics> statistics = new ConcurrentSkipListMap<>();
+        AtomicInteger prompts = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        Semaphore permits = new Semaphore(properties.concurrency());
+        long startTime = System.nanoTime();
+
+        try (BufferedReader reader = Files.newBufferedReader(properties.input(), StandardCharsets.UTF_8);
+             BufferedWriter writer = Files.newBufferedWriter(
+                     properties.output(),
+                     StandardCharsets.UTF_8,
+                     StandardOpenOption.CREATE,
+                     StandardOpenOption.APPEND
+             );
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                EvaluationItem item = parse(line, lineNumber, properties);
+                if (item == null) {
+                    failed.incrementAndGet();
+                    continue;
+                }
+                if (completed.contains(item.id())) {
+                    skipped.incrementAndGet();
+                    continue;
+                }
+
+                permits.acquire();
+                executor.submit(() -> {
+                    try {
+                        evaluate(item, properties, writer, statistics);
+                        prompts.incrementAndGet();
+                    } catch (Exception e) {
+                        log.error("Evaluation of {} failed: {}", item.id(), e.getMessage(), e);
+                        failed.incrementAndGet();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+
+        double elapsedSeconds = (System.nanoTime() - startTime) / 1e9;
+        EvaluationSummary summary = EvaluationSummary.builder()
+                                                     .prompts(prompts.get())
+                                                     .skipped(skipped.get())
+                                                     .failed(failed.get())
+                                                     .elapsedSeconds(elapsedSeconds)
+                                                     .models(statistics.entrySet().stream()
+                                                                       .map(entry -> entry.getValue().summarize(entry.getKey(), elapsedSeconds))
+                                                                       .toList())
+                                                     .build();
+
+        Path summaryFile = summaryFile(properties.output());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(summaryFile.toFile(), summary);
+        logSummary(summary, summaryFile);
+        return summary;
+    }
+
+    private void evaluate(EvaluationItem item, EvaluationProperties properties, BufferedWriter writer,
+                          Map<String, ModelStatistics> statistics) throws IOException {
+        ChatRequest chatRequest = new ChatRequest(item.prompt(), item.llms(), properties.systemPrompt(), null);
+        List<ModelResponse> responses = aiService.compareModelsUncached(chatRequest);
+        for (ModelResponse modelResponse : responses) {
+            statistics.computeIfAbsent(modelResponse.llm(), llm -> new ModelStatistics()).record(modelResponse);
+        }
+
+        String line = objectMapper.writeValueAsString(new EvaluationResult(item.id(), item.prompt(), responses));
+        synchronized (writer) {
+            writer.write(line);
+            writer.newLine();
+            writer.flush();
+        }
+    }
+
+    private EvaluationItem parse(String line, int lineNumber, EvaluationProperties properties) {
+        try {
+            JsonNode node = objectMapper.readTree(line);
+            JsonNode idNode = node.path(properties.idField());
+            String id = idNode.isMissingNode() || idNode.isNull() ? "line-" + lineNumber : idNode.asText();
+            String prompt = node.path(properties.promptField()).asText("");
+
+            List<String> llms = new ArrayList<>();
+            node.path("llms").forEach(llm -> llms.add(llm.asText()));
+            if (llms.isEmpty()) {
+                llms.addAll(properties.llms());
+            }
+
+            if (prompt.isBlank() || llms.isEmpty()) {
+                log.warn("Skipping line {}: no '{}' field or no models to compare", lineNumber, properties.promptField());
+                return null;
+            }
+            return new EvaluationItem(id, prompt, List.copyOf(llms));
+        } catch (IOException e) {
+            log.warn("Skipping line {}: {}", lineNumber, e.getMessage());
+            return null;
+        }
+    }
+
+    private Set<String> readCompletedIds(Path output) throws IOException {
+        Set<String> ids = new HashSet<>();
+        if (!Files.exists(output)) {
+            return ids;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(output, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    JsonNode result = objectMapper.readTree(line);
+                    JsonNode id = result.path("id");
+                    if (!id.isMissingNode() && isComplete(result)) {
+                        ids.add(id.asText());
+                    }
+                } catch (IOException e) {
+                    // A line cut off by an interrupted run; its prompt is evaluated again.
+                    log.debug("Ignoring unreadable result line: {}", e.getMessage());
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Returns whether every model of a result line answered. Error responses, which carry their message
+     * in place of an answer, have no metadata.
+     */
+    private static boolean isComplete(JsonNode result) {
+        for (JsonNode response : result.path("responses")) {
+            if (!response.hasNonNull("metadata")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void terminateLastLine(Path output) throws IOException {
+        if (!Files.exists(output) || Files.size(output) == 0) {
+            return;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(output.toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            if (file.read() != '\n') {
+                file.write('\n');
+            }
+        }
+    }
+
+    private Path summaryFile(Path output) {
+        String name = output.getFileName().toString().replaceFirst("\\.jsonl$", "");
+        return output.resolveSibling(name + ".summary.json");
+    }
+
+    private void logSummary(EvaluationSummary summary, Path summaryFile) {
+        log.info("Evaluated {} prompt(s) in {}s ({} skipped, {} failed), summary written to {}",
+                 summary.prompts(), String.format("%.1f", summary.elapsedSeconds()),
+                 summary.skipped(), summary.failed(), summaryFile);
+        for (EvaluationSummary.ModelSummary model : summary.models()) {
+            log.info("{}: {} responses, {} errors, latency mean {}ms p50 {}ms p95 {}ms, "
+                             + "{} prompt / {} generation tokens, {} responses/s, {} tokens/s",
+                     model.llm(), model.responses(), model.errors(),
+                     String.format("%.0f", model.meanLatencyMs()), model.p50LatencyMs(), model.p95LatencyMs(),
+                     model.promptTokens(), model.generationTokens(),
+                     String.format("%.2f", model.responsesPerSecond()),
+                     String.format("%.1f", model.generationTokensPerSecond()));
+        }
+    }
+
+    record EvaluationItem(String id, String prompt, List<String> llms) {
+    }
+
+    record EvaluationResult(String id, String prompt, List<ModelResponse> responses) {
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.kxng0109.backend.evaluation;
+
+import lombok.Builder;
+
+import java.util.List;
+
+/**
+ * Represents the outcome of an evaluation run.
+ *
+ * Fields:
+ * - `prompts`: The number of prompts evaluated in this run.
+ * - `skipped`: The number of prompts skipped because they were already in the output file.
+ * - `failed`: The number of input lines that could not be parsed or evaluated.
+ * - `elapsedSeconds`: The wall clock duration of the run.
+ * - `models`: The per-model throughput, latency and token statistics of this run.
+ */
+@Builder
+public record EvaluationSummary(
+        int prompts,
+        int skipped,
+        int failed,
+        double elapsedSeconds,
+        List<ModelSummary> models
+) {
+
+    /**
+     * Throughput, latency and token statistics of one model over an evaluation run. Latencies are
+     * the model response times in milliseconds; failed calls only count towards `errors`.
+     */
+    @Builder
+    public record ModelSummary(
+            String llm,
+            int responses,
+            int errors,
+            double meanLatencyMs,
+            long p50LatencyMs,
+            long p95LatencyMs,
+            long maxLatencyMs,
+            long promptTokens,
+            long generationTokens,
+            double responsesPerSecond,
+            double generationTokensPerSecond
+    ) {
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.kxng0109.backend.evaluation;
+
+import io.github.kxng0109.backend.model.dto.ModelMetadata;
+import io.github.kxng0109.backend.model.dto.ModelResponse;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates the latency and token usage of one model over an evaluation run. Instances are
+ * updated concurrently and guard their state with their own monitor.
+ */
+final class ModelStatistics {
+
+    private long[] latencies = new long[64];
+    private int count;
+    private int errors;
+    private long promptTokens;
+    private long generationTokens;
+
+    synchronized void record(ModelResponse modelResponse) {
+        ModelMetadata metadata = modelResponse.metadata();
+        if (metadata == null) {
+            errors++;
+            return;
+        }
+
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = metadata.responseTime() == null ? 0 : metadata.responseTime();
+        promptTokens += metadata.promptTokens();
+        generationTokens += metadata.generationTokens();
+    }
+
+    synchronized EvaluationSummary.ModelSummary summarize(String llm, double elapsedSeconds) {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        double meanLatency = count == 0 ? 0 : (double) Arrays.stream(sorted).sum() / count;
+
+        return EvaluationSummary.ModelSummary.builder()
+                                             .llm(llm)
+                                             .responses(count)
+                                             .errors(errors)
+                                             .meanLatencyMs(meanLatency)
+                                             .p50LatencyMs(percentile(sorted, 0.50))
+                                             .p95LatencyMs(percentile(sorted, 0.95))
+                                             .maxLatencyMs(count == 0 ? 0 : sorted[count - 1])
+                                             .promptTokens(promptTokens)
+                                             .generationTokens(generationTokens)
+                                             .responsesPerSecond(elapsedSeconds > 0 ? count / elapsedSeconds : 0)
+                                             .generationTokensPerSecond(elapsedSeconds > 0 ? generationTokens / elapsedSeconds : 0)
+                                             .build();
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
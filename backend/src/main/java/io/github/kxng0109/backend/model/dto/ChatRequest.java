@@ -2,8 +2,10 @@ package io.github.kxng0109.backend.model.dto;
 
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a request for generating a response using one or more Language Learning Models (LLMs).
@@ -18,6 +20,12 @@ import java.util.List;
  *   This is the primary query or instruction that the language models will process.
  * - `llms`: A non-null list of strings specifying the identifiers of the language models that will
  *   be used to generate responses. Each identifier corresponds to a particular model instance.
+ * - `systemPrompt`: An optional name of a registered system prompt. When absent, each model uses its
+ *   configured default system prompt.
+ * - `promptVariables`: Optional values for the `{placeholders}` of the selected system prompt.
+ * - `sessionId`: An optional client-chosen conversation identifier (letters, digits, `-` and `_`).
+ *   Requests with the same session id continue the conversation: each model receives its own earlier
+ *   turns of the session ahead of the prompt.
  *
  * Key Features:
  * - Enforces constraints such as non-empty prompts and ensures the presence of at least one model identifier.
@@ -26,6 +34,16 @@ import java.util.List;
  */
 public record ChatRequest(
         @NotEmpty String prompt,
-        @NotNull List<String> llms
+        @NotNull List<String> llms,
+        String systemPrompt,
+        Map<String, String> promptVariables,
+        @Pattern(regexp = "[A-Za-z0-9_-]{1,128}") String sessionId
 ) {
+    public ChatRequest(String prompt, List<String> llms) {
+        this(prompt, llms, null, null, null);
+    }
+
+    public ChatRequest(String prompt, List<String> llms, String systemPrompt, Map<String, String> promptVariables) {
+        this(prompt, llms, systemPrompt, promptVariables, null);
+    }
 }
@@ -0,0 +1,28 @@
+package io.github.kxng0109.backend.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.github.kxng0109.backend.error.dto.ErrorResponse;
+import lombok.Builder;
+
+import java.util.List;
+
+/**
+ * Represents the result of comparing multiple language models.
+ *
+ * Fields:
+ * - `responses`: The {@link ModelResponse} of each requested model, in the order the models were requested.
+ * - `analysis`: The {@link ComparisonAnalysis} of the responses, present only when it was requested.
+ * - `error`: The {@link ErrorResponse} of a streamed comparison that failed after its first line was
+ *   written, present only on the last line of such a stream.
+ * - `retryAfter`: The number of seconds after which a comparison that failed on a quota or rate limit
+ *   may be retried, present only alongside `error`.
+ */
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CompareResponse(
+        List<ModelResponse> responses,
+        ComparisonAnalysis analysis,
+        ErrorResponse error,
+        Long retryAfter
+) {
+}
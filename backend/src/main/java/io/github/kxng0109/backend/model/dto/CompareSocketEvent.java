@@ -0,0 +1,31 @@
+package io.github.kxng0109.backend.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.github.kxng0109.backend.error.dto.ErrorResponse;
+import lombok.Builder;
+
+/**
+ * Represents a message sent by the server over the WebSocket compare channel.
+ *
+ * Fields:
+ * - `type`: One of
+ *   - `response`: one model of the comparison completed; carries its `response`.
+ *   - `analysis`: the similarity `analysis` of all responses, if it was requested.
+ *   - `done`: all models of the comparison completed.
+ *   - `cancelled`: the comparison was cancelled; no further messages follow for its id.
+ *   - `error`: the comparison failed or a message could not be processed; carries the `error` and,
+ *     when the comparison was rejected because of overload or quotas, `retryAfter` in seconds.
+ *   - `pong`: the answer to a `ping`.
+ * - `id`: The identifier of the comparison the message belongs to, as chosen by the client.
+ */
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CompareSocketEvent(
+        String type,
+        String id,
+        ModelResponse response,
+        ComparisonAnalysis analysis,
+        ErrorResponse error,
+        Long retryAfter
+) {
+}
@@ -0,0 +1,23 @@
+package io.github.kxng0109.backend.model.dto;
+
+/**
+ * Represents a message sent by the client over the WebSocket compare channel.
+ *
+ * Fields:
+ * - `type`: `compare` to start a comparison, `cancel` to cancel one, or `ping` to check that the
+ *   backend is alive.
+ * - `id`: The client-chosen identifier of the comparison. All messages the server sends about the
+ *   comparison carry the same id. Required for `compare` and `cancel`.
+ * - `request`: The comparison to run, for `compare` messages.
+ * - `analyze`: Whether to send the similarity analysis of the responses once all models completed.
+ * - `priority`: The priority of the comparison, either `interactive` or `batch`, for `compare`
+ *   messages. Defaults to the priority of the connection.
+ */
+public record CompareSocketMessage(
+        String type,
+        String id,
+        ChatRequest request,
+        boolean analyze,
+        String priority
+) {
+}
@@ -0,0 +1,33 @@
+package io.github.kxng0109.backend.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+
+import java.util.List;
+
+/**
+ * Represents how similar the responses of the compared language models are to each other.
+ *
+ * All matrices and arrays are indexed in the order of `llms`. Responses that failed with an error
+ * are left out of the analysis.
+ *
+ * Fields:
+ * - `llms`: The identifiers of the models included in the analysis.
+ * - `lexicalSimilarity`: Pairwise Jaccard similarity of the word trigrams of each pair of responses,
+ *   between 0 (nothing in common) and 1 (identical wording).
+ * - `semanticSimilarity`: Pairwise cosine similarity of the response embeddings, present only when an
+ *   embedding model is configured.
+ * - `agreement`: For each model, its mean similarity to all other models.
+ * - `consensus`: The mean similarity over all pairs of models, using the semantic similarity when
+ *   available and the lexical similarity otherwise.
+ */
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ComparisonAnalysis(
+        List<String> llms,
+        double[][] lexicalSimilarity,
+        double[][] semanticSimilarity,
+        double[] agreement,
+        double consensus
+) {
+}
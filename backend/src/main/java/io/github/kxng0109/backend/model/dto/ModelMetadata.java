@@ -2,6 +2,8 @@ package io.github.kxng0109.backend.model.dto;
 
 import lombok.Builder;
 
+import java.util.List;
+
 /**
  * Represents metadata about the operations and performance of a language model (LLM).
  *
@@ -22,6 +24,13 @@ import lombok.Builder;
  * - `timestamp`: The timestamp specifying when this interaction with the model occurred.
  * - `rateLimit`: An instance of {@link ModelRateLimit} providing details about rate-limiting
  *   constraints and usage during the operation.
+ * - `estimatedPromptTokens`: The number of prompt tokens counted locally before the request was sent.
+ * - `estimatedCost`: The estimated price of the prompt tokens, if pricing is configured for the model.
+ * - `promptTruncated`: Whether the prompt was shortened to fit the model's context window.
+ * - `tokensPerSecond`: The generation speed. Measured by the engine for the in-process model, and
+ *   derived from the generated tokens and the response time for remote providers.
+ * - `toolCalls`: The local tools the model called while answering, in the order they completed, with
+ *   the latency of each call. Absent if the model did not call any tools.
  *
  * This record is immutable and supports the builder pattern for straightforward and flexible
  * instantiation. It serves as a structured representation of operational insights into the
@@ -36,6 +45,11 @@ public record ModelMetadata(
         String model,
         String finishReason,
         String timestamp,
-        ModelRateLimit rateLimit
+        ModelRateLimit rateLimit,
+        int estimatedPromptTokens,
+        Double estimatedCost,
+        boolean promptTruncated,
+        Double tokensPerSecond,
+        List<ToolCallMetadata> toolCalls
 ) {
 }
@@ -0,0 +1,21 @@
+package io.github.kxng0109.backend.model.dto;
+
+import lombok.Builder;
+
+/**
+ * Represents a single call of a local tool made by a language model while answering a prompt.
+ *
+ * Fields:
+ * - `name`: The name of the tool that was called.
+ * - `latency`: The time, in milliseconds, the call took. For cached calls this is the time spent
+ *   waiting for the result of the identical call.
+ * - `cached`: Whether the result was taken from an identical call made earlier in the same request,
+ *   possibly by another model, instead of running the tool again.
+ */
+@Builder
+public record ToolCallMetadata(
+        String name,
+        long latency,
+        boolean cached
+) {
+}
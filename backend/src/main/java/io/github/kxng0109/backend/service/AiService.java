@@ -1,37 +1,99 @@
 package io.github.kxng0109.backend.service;
 
 import io.github.kxng0109.backend.error.ModelNotFoundException;
+import io.github.kxng0109.backend.error.PromptTooLargeException;
+import io.github.kxng0109.backend.error.ProviderRateLimitExceededException;
+import io.github.kxng0109.backend.error.QuotaExceededException;
 import io.github.kxng0109.backend.model.dto.ChatRequest;
+import io.github.kxng0109.backend.model.dto.CompareResponse;
+import io.github.kxng0109.backend.model.dto.ComparisonAnalysis;
 import io.github.kxng0109.backend.model.dto.ModelMetadata;
 import io.github.kxng0109.backend.model.dto.ModelRateLimit;
 import io.github.kxng0109.backend.model.dto.ModelResponse;
+import io.github.kxng0109.backend.model.dto.ToolCallMetadata;
+import io.github.kxng0109.backend.service.admission.CancellationToken;
+import io.github.kxng0109.backend.service.analysis.SimilarityAccumulator;
+import io.github.kxng0109.backend.service.analysis.SimilarityAnalyzer;
+import io.github.kxng0109.backend.service.local.LocalChatModel;
+import io.github.kxng0109.backend.service.prompt.PromptTemplateRegistry;
+import io.github.kxng0109.backend.service.quota.QuotaLease;
+import io.github.kxng0109.backend.service.quota.TokenReservation;
+import io.github.kxng0109.backend.service.session.ConversationMemory;
+import io.github.kxng0109.backend.service.session.ConversationTurn;
+import io.github.kxng0109.backend.service.token.PreparedPrompt;
+import io.github.kxng0109.backend.service.token.TokenEstimator;
+import io.github.kxng0109.backend.service.tool.ModelTools;
+import io.github.kxng0109.backend.service.tool.ToolCallSession;
+import io.github.kxng0109.backend.service.tool.ToolResultCache;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.metadata.ChatResponseMetadata;
 import org.springframework.ai.chat.metadata.RateLimit;
 import org.springframework.ai.chat.metadata.Usage;
 import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.tool.ToolCallback;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 /**
  * The AiService class serves as the core service for managing and interacting with various language models.
  * It supports functionalities such as retrieving available language model identifiers, comparing responses
  * from multiple models, and processing interactions with a specified language model. This service is
  * designed for efficient language model communication and metadata generation.
+ * <p>
+ * Every model of a comparison is recorded as an `llm.model.call` observation, tagged with the model
+ * and whether the response came from the cache, with nested `llm.model.send` and `llm.model.metadata`
+ * observations for the provider call and the metadata extraction. The models are called on the
+ * threads of a parallel stream, which do not carry the caller's observation, so the observation
+ * current when the comparison starts is passed to each of them explicitly as their parent. In a trace,
+ * the model calls therefore appear side by side under the request that started them.
+ * <p>
+ * The {@link CancellationToken} of the comparison is passed on the same way. Once it is cancelled,
+ * model calls in progress are interrupted and the remaining models are not called; their responses
+ * carry the reason for the cancellation instead.
+ * <p>
+ * Failures of a single model are reported in that model's response. A comparison that the client's
+ * quota or a provider's rate limit does not allow is rejected as a whole instead, with a
+ * {@link QuotaExceededException} or {@link ProviderRateLimitExceededException}, so that the client
+ * learns when to retry. A prompt that does not fit into the context window of one of the models, and
+ * may not be truncated for it, rejects the comparison with a {@link PromptTooLargeException}.
+ * <p>
+ * Models configured for tool calling are offered the local tools of {@link ModelTools}. The calls they
+ * make are recorded in the response metadata, and identical calls made by the models of one comparison
+ * share a single {@link ToolResultCache}, so that each tool call is executed only once per comparison.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AiService {
-    private final Map<String, ChatClient> chatClients;
+    private static final String MODEL_CALL_OBSERVATION = "llm.model.call";
+    private static final String LLM_KEY = "llm";
+    private static final String CACHED_KEY = "cached";
 
-    String systemMessage = "You are chatting with a serious personal, make sure your responses are accurate, up-to-date, and are straight to the point unless the user asks you not to. False or wrong responses or poorly researched responses are not allowed here!";
+    private final Map<String, ChatClient> chatClients;
+    private final ResponseCache responseCache;
+    private final ProviderRateLimiter providerRateLimiter;
+    private final PromptTemplateRegistry promptTemplateRegistry;
+    private final TokenEstimator tokenEstimator;
+    private final SimilarityAnalyzer similarityAnalyzer;
+    private final ConversationMemory conversationMemory;
+    private final ObservationRegistry observationRegistry;
+    private final ModelTools modelTools;
 
     /**
      * Retrieves the set of identifiers for all available language models.
@@ -50,6 +112,10 @@ public class AiService {
     /**
      * Compares multiple language models (LLMs) by sending a request prompt to each model
      * and collecting their responses along with metadata such as processing time.
+     * <p>
+     * Responses are served from the shared {@link ResponseCache} when an identical prompt was already
+     * answered by the same model, and every provider call is first checked against the shared
+     * {@link ProviderRateLimiter} so that scaling out the backend does not multiply provider load.
      *
      * @param chatRequest An instance of ChatRequest containing the prompt to be sent to
      *                    the language models and the list of model identifiers (llms) to be compared.
@@ -59,34 +125,379 @@ public class AiService {
      */
     public List<ModelResponse> compareModels(ChatRequest chatRequest) {
         List<String> llms = chatRequest.llms();
-        String prompt = chatRequest.prompt();
 
         validateModels(llms);
+        promptTemplateRegistry.validate(chatRequest.systemPrompt());
+
+        ComparisonContext context = captureContext(true);
+        return llms.parallelStream().map(llm -> callModel(llm, chatRequest, context)).toList();
+    }
+
+    /**
+     * Compares multiple language models like {@link #compareModels(ChatRequest)}, but always calls the
+     * models and neither reads nor fills the {@link ResponseCache}, so that the metadata of every
+     * response, in particular its response time, describes a fresh provider call. This is intended for
+     * evaluation runs that measure the models rather than serve clients.
+     *
+     * @param chatRequest An instance of ChatRequest containing the prompt to be sent to
+     *                    the language models and the list of model identifiers (llms) to be compared.
+     * @return the responses, in the order the models were requested.
+     */
+    public List<ModelResponse> compareModelsUncached(ChatRequest chatRequest) {
+        List<String> llms = chatRequest.llms();
+
+        validateModels(llms);
+        promptTemplateRegistry.validate(chatRequest.systemPrompt());
+
+        ComparisonContext context = captureContext(false);
+        return llms.parallelStream().map(llm -> callModel(llm, chatRequest, context)).toList();
+    }
+
+    /**
+     * Compares multiple language models like {@link #compareModels(ChatRequest)}, but hands every
+     * {@link ModelResponse} to the given consumer as soon as its model completes instead of collecting
+     * them into a list.
+     * <p>
+     * The consumer may be invoked concurrently from several threads and in completion order, not in the
+     * order the models were requested. This method returns once every model has completed.
+     *
+     * @param chatRequest An instance of ChatRequest containing the prompt to be sent to
+     *                    the language models and the list of model identifiers (llms) to be compared.
+     * @param onResponse  the consumer receiving each model's response as soon as it is available.
+     */
+    public void compareModels(ChatRequest chatRequest, Consumer<ModelResponse> onResponse) {
+        List<String> llms = chatRequest.llms();
+
+        validateModels(llms);
+        promptTemplateRegistry.validate(chatRequest.systemPrompt());
 
-        return llms.parallelStream().map(llm -> {
-            try {
-                ChatClient chatClient = chatClients.get(llm);
-                long startTime = System.currentTimeMillis();
+        ComparisonContext context = captureContext(true);
+        llms.parallelStream().map(llm -> callModel(llm, chatRequest, context)).forEach(onResponse);
+    }
 
-                ChatResponse chatResponse = sendMessage(chatClient, prompt);
+    /**
+     * Compares multiple language models like {@link #compareModels(ChatRequest)} and additionally
+     * analyzes how similar their responses are to each other.
+     * <p>
+     * Each response is added to the analysis as soon as its model completes, so the analysis is
+     * finished almost immediately after the slowest model returns.
+     *
+     * @param chatRequest An instance of ChatRequest containing the prompt to be sent to
+     *                    the language models and the list of model identifiers (llms) to be compared.
+     * @return a CompareResponse holding the responses, in the order the models were requested, and
+     * their {@link ComparisonAnalysis}.
+     */
+    public CompareResponse compareModelsWithAnalysis(ChatRequest chatRequest) {
+        List<String> llms = chatRequest.llms();
+
+        validateModels(llms);
+        promptTemplateRegistry.validate(chatRequest.systemPrompt());
+
+        ComparisonContext context = captureContext(true);
+        SimilarityAccumulator accumulator = similarityAnalyzer.newAccumulator();
+        ModelResponse[] responses = new ModelResponse[llms.size()];
+        IntStream.range(0, llms.size()).parallel().forEach(i -> {
+            responses[i] = callModel(llms.get(i), chatRequest, context);
+            accumulator.add(responses[i]);
+        });
 
-                ModelMetadata modelMetadata = getModelMetadata(
-                        chatResponse,
-                        System.currentTimeMillis() - startTime
+        return CompareResponse.builder()
+                              .responses(List.of(responses))
+                              .analysis(accumulator.result())
+                              .build();
+    }
+
+    /**
+     * Compares multiple language models like {@link #compareModels(ChatRequest, Consumer)}, handing each
+     * response to the consumer as soon as its model completes, and returns the analysis of how similar
+     * the responses are once all models have completed.
+     *
+     * @param chatRequest An instance of ChatRequest containing the prompt to be sent to
+     *                    the language models and the list of model identifiers (llms) to be compared.
+     * @param onResponse  the consumer receiving each model's response as soon as it is available.
+     * @return the {@link ComparisonAnalysis} of all responses.
+     */
+    public ComparisonAnalysis compareModelsWithAnalysis(ChatRequest chatRequest, Consumer<ModelResponse> onResponse) {
+        List<String> llms = chatRequest.llms();
+
+        validateModels(llms);
+        promptTemplateRegistry.validate(chatRequest.systemPrompt());
+
+        ComparisonContext context = captureContext(true);
+        SimilarityAccumulator accumulator = similarityAnalyzer.newAccumulator();
+        llms.parallelStream().map(llm -> callModel(llm, chatRequest, context)).forEach(modelResponse -> {
+            accumulator.add(modelResponse);
+            onResponse.accept(modelResponse);
+        });
+        return accumulator.result();
+    }
+
+    /**
+     * Compares multiple language models like {@link #compareModels(ChatRequest, Consumer)}, but hands
+     * each response to the consumer in its serialized JSON form.
+     * <p>
+     * Cached responses are passed on exactly as they are stored, without being deserialized, and fresh
+     * responses are serialized only once for both the cache and the consumer. This is intended for
+     * callers that write the responses straight to an output stream.
+     *
+     * @param chatRequest An instance of ChatRequest containing the prompt to be sent to
+     *                    the language models and the list of model identifiers (llms) to be compared.
+     * @param onResponse  the consumer receiving the UTF-8 encoded JSON of each model's response as
+     *                    soon as it is available.
+     */
+    public void compareModelsSerialized(ChatRequest chatRequest, Consumer<byte[]> onResponse) {
+        List<String> llms = chatRequest.llms();
+
+        validateModels(llms);
+        promptTemplateRegistry.validate(chatRequest.systemPrompt());
+
+        ComparisonContext context = captureContext(true);
+        llms.parallelStream().map(llm -> callModelSerialized(llm, chatRequest, context)).forEach(onResponse);
+    }
+
+    /**
+     * Produces the response of a single language model for the given prompt, either from the shared
+     * cache or by calling the model. Prompts that belong to a session are always sent to the model,
+     * together with the model's earlier turns of the session.
+     *
+     * @param llm         the identifier of the language model to call
+     * @param chatRequest the request carrying the prompt and system prompt selection
+     * @param context     the state of the comparison captured on the thread that started it
+     * @return the model's response and metadata, or a response carrying the error message if the
+     * model could not be called
+     */
+    private ModelResponse callModel(String llm, ChatRequest chatRequest, ComparisonContext context) {
+        Observation observation = startModelObservation(llm, context.parent());
+        try (CancellationToken.Scope entered = context.cancellation().enter();
+             Observation.Scope scope = observation.openScope()) {
+            String systemMessage = renderSystemMessage(llm, chatRequest);
+            if (chatRequest.sessionId() != null) {
+                return invokeInSession(llm, systemMessage, chatRequest, context);
+            }
+
+            PreparedPrompt preparedPrompt = tokenEstimator.prepare(llm, systemMessage, chatRequest.prompt());
+            if (!context.useCache()) {
+                return invokeModel(llm, systemMessage, List.of(), preparedPrompt, context);
+            }
+
+            Optional<ModelResponse> cachedResponse = responseCache.get(llm, systemMessage, preparedPrompt.prompt());
+            if (cachedResponse.isPresent()) {
+                observation.lowCardinalityKeyValue(CACHED_KEY, "true");
+                return cachedResponse.get();
+            }
+
+            ModelResponse modelResponse = invokeModel(llm, systemMessage, List.of(), preparedPrompt, context);
+            responseCache.put(llm, systemMessage, preparedPrompt.prompt(), modelResponse);
+            return modelResponse;
+        } catch (QuotaExceededException | ProviderRateLimitExceededException | PromptTooLargeException e) {
+            // These concern the request as a whole and are reported to the client with their own status.
+            observation.error(e);
+            throw e;
+        } catch (Exception e) {
+            observation.error(e);
+            return errorResponse(llm, e, context.cancellation());
+        } finally {
+            observation.stop();
+        }
+    }
+
+    /**
+     * Produces the serialized response of a single language model for the given prompt, either
+     * straight from the shared cache or by calling the model.
+     *
+     * @param llm         the identifier of the language model to call
+     * @param chatRequest the request carrying the prompt and system prompt selection
+     * @param context     the state of the comparison captured on the thread that started it
+     * @return the UTF-8 encoded JSON of the model's response, or of a response carrying the error
+     * message if the model could not be called
+     */
+    private byte[] callModelSerialized(String llm, ChatRequest chatRequest, ComparisonContext context) {
+        Observation observation = startModelObservation(llm, context.parent());
+        try (CancellationToken.Scope entered = context.cancellation().enter();
+             Observation.Scope scope = observation.openScope()) {
+            String systemMessage = renderSystemMessage(llm, chatRequest);
+            if (chatRequest.sessionId() != null) {
+                return responseCache.serialize(invokeInSession(llm, systemMessage, chatRequest, context));
+            }
+
+            PreparedPrompt preparedPrompt = tokenEstimator.prepare(llm, systemMessage, chatRequest.prompt());
+            Optional<byte[]> cachedResponse = responseCache.getSerialized(llm, systemMessage, preparedPrompt.prompt());
+            if (cachedResponse.isPresent()) {
+                observation.lowCardinalityKeyValue(CACHED_KEY, "true");
+                return cachedResponse.get();
+            }
+
+            byte[] json = responseCache.serialize(invokeModel(llm, systemMessage, List.of(), preparedPrompt, context));
+            responseCache.put(llm, systemMessage, preparedPrompt.prompt(), json);
+            return json;
+        } catch (QuotaExceededException | ProviderRateLimitExceededException | PromptTooLargeException e) {
+            observation.error(e);
+            throw e;
+        } catch (Exception e) {
+            observation.error(e);
+            return responseCache.serialize(errorResponse(llm, e, context.cancellation()));
+        } finally {
+            observation.stop();
+        }
+    }
+
+    /**
+     * Calls a single language model as the next turn of a conversation session and records the
+     * exchange in the model's branch of the session. Cached responses are not used, since they were
+     * generated without the conversation's history.
+     *
+     * @param llm           the identifier of the language model to call
+     * @param systemMessage the rendered system prompt to send to the model
+     * @param chatRequest   the request carrying the prompt and the session id
+     * @param context       the state of the comparison captured on the thread that started it
+     * @return the model's response and metadata
+     */
+    private ModelResponse invokeInSession(String llm, String systemMessage, ChatRequest chatRequest,
+                                          ComparisonContext context) {
+        List<ConversationTurn> turns = conversationMemory.history(chatRequest.sessionId(), llm);
+        List<Message> history = new ArrayList<>(turns.size() * 2);
+        int historyTokens = 0;
+        for (ConversationTurn turn : turns) {
+            history.add(new UserMessage(turn.prompt()));
+            history.add(new AssistantMessage(turn.response()));
+            historyTokens += turn.tokens();
+        }
+
+        PreparedPrompt preparedPrompt = tokenEstimator.prepare(llm, systemMessage, historyTokens, chatRequest.prompt());
+        ModelResponse modelResponse = invokeModel(llm, systemMessage, history, preparedPrompt, context);
+        conversationMemory.append(chatRequest.sessionId(), llm, preparedPrompt.prompt(), modelResponse.response());
+        return modelResponse;
+    }
+
+    /**
+     * Calls a single language model, bypassing the cache, and builds its response with metadata.
+     * <p>
+     * The estimated prompt tokens are reserved in the client's quota before the model is called, and
+     * the reservation is settled with the usage the model reports, or released if the call fails.
+     * If the model is offered tools, the tool calls it makes while answering are recorded in a
+     * {@link ToolCallSession} and reported in the metadata.
+     *
+     * @param llm            the identifier of the language model to call
+     * @param systemMessage  the rendered system prompt to send to the model
+     * @param history        the earlier conversation turns to send ahead of the prompt, if any
+     * @param preparedPrompt the user prompt to send to the model, already fitted to its context window
+     * @param context        the state of the comparison captured on the thread that started it
+     * @return the model's response and metadata
+     */
+    private ModelResponse invokeModel(String llm, String systemMessage, List<Message> history,
+                                      PreparedPrompt preparedPrompt, ComparisonContext context) {
+        providerRateLimiter.acquire(llm);
+        TokenReservation reservation = context.quota().reserveTokens(llm, preparedPrompt.promptTokens());
+
+        ChatClient chatClient = chatClients.get(llm);
+        List<ToolCallback> tools = modelTools.forModel(llm);
+        ToolCallSession toolCalls = new ToolCallSession(context.toolResults());
+        long startTime = System.currentTimeMillis();
+
+        try {
+            ChatResponse chatResponse;
+            try (ToolCallSession.Scope scope = toolCalls.open()) {
+                chatResponse = observe(
+                        "llm.model.send", "send " + llm, llm,
+                        () -> sendMessage(chatClient, systemMessage, history, preparedPrompt.prompt(), tools)
                 );
-                return ModelResponse.builder()
-                                    .llm(llm)
-                                    .response(chatResponse.getResult().getOutput().getText())
-                                    .metadata(modelMetadata)
-                                    .build();
-            } catch (Exception e) {
-                log.error("Error occurred: {}", e.getMessage(), e);
-                return ModelResponse.builder()
-                                    .llm(llm)
-                                    .response("Error: " + e.getMessage())
-                                    .build();
             }
-        }).toList();
+            long responseTime = System.currentTimeMillis() - startTime;
+
+            ModelMetadata modelMetadata = observe(
+                    "llm.model.metadata", "metadata " + llm, llm,
+                    () -> getModelMetadata(chatResponse, responseTime, preparedPrompt, toolCalls.calls())
+            );
+            providerRateLimiter.recordBudget(llm, modelMetadata.rateLimit());
+            reservation.settle(modelMetadata.totalTokens());
+            tagModelObservation(chatResponse, modelMetadata);
+
+            return ModelResponse.builder()
+                                .llm(llm)
+                                .response(chatResponse.getResult().getOutput().getText())
+                                .metadata(modelMetadata)
+                                .build();
+        } finally {
+            // Has no effect once settled; gives the tokens back if anything above failed.
+            reservation.release();
+        }
+    }
+
+    /**
+     * Captures the state of a comparison that the threads calling its models need but do not inherit
+     * from the thread that started it.
+     *
+     * @param useCache whether responses may be served from and stored in the {@link ResponseCache}
+     */
+    private ComparisonContext captureContext(boolean useCache) {
+        return new ComparisonContext(
+                observationRegistry.getCurrentObservation(),
+                QuotaLease.current(),
+                CancellationToken.current(),
+                new ToolResultCache(),
+                useCache
+        );
+    }
+
+    private Observation startModelObservation(String llm, Observation parent) {
+        return Observation.createNotStarted(MODEL_CALL_OBSERVATION, observationRegistry)
+                          .contextualName("call " + llm)
+                          .parentObservation(parent)
+                          .lowCardinalityKeyValue(LLM_KEY, llm)
+                          .lowCardinalityKeyValue(CACHED_KEY, "false")
+                          .start();
+    }
+
+    private <T> T observe(String name, String contextualName, String llm, Supplier<T> supplier) {
+        return Observation.createNotStarted(name, observationRegistry)
+                          .contextualName(contextualName)
+                          .lowCardinalityKeyValue(LLM_KEY, llm)
+                          .observe(supplier);
+    }
+
+    /**
+     * Adds the model, token usage and, when the model reports it, the time to the first token to the
+     * current `llm.model.call` observation, so that they show up as attributes of its span.
+     * <p>
+     * Only {@link LocalChatModel} reports the time to the first token. Remote providers are called
+     * without streaming, so for them it cannot be told apart from the duration of the `send` span.
+     */
+    private void tagModelObservation(ChatResponse chatResponse, ModelMetadata modelMetadata) {
+        Observation observation = observationRegistry.getCurrentObservation();
+        if (observation == null || observation.isNoop()) {
+            return;
+        }
+        if (modelMetadata.model() != null) {
+            observation.highCardinalityKeyValue("gen_ai.response.model", modelMetadata.model());
+        }
+        observation.highCardinalityKeyValue("gen_ai.usage.input_tokens", String.valueOf(modelMetadata.promptTokens()));
+        observation.highCardinalityKeyValue("gen_ai.usage.output_tokens", String.valueOf(modelMetadata.generationTokens()));
+        if (modelMetadata.finishReason() != null) {
+            observation.highCardinalityKeyValue("llm.finish_reason", modelMetadata.finishReason());
+        }
+        Long timeToFirstToken = chatResponse.getMetadata().get(LocalChatModel.TIME_TO_FIRST_TOKEN);
+        if (timeToFirstToken != null) {
+            observation.highCardinalityKeyValue("llm.time_to_first_token_ms", timeToFirstToken.toString());
+        }
+    }
+
+    private String renderSystemMessage(String llm, ChatRequest chatRequest) {
+        return promptTemplateRegistry.render(llm, chatRequest.systemPrompt(), chatRequest.promptVariables());
+    }
+
+    private ModelResponse errorResponse(String llm, Exception e, CancellationToken cancellation) {
+        String message = e.getMessage();
+        if (cancellation.isCancelled()) {
+            // The exception of an interrupted call says little, the reason for the cancellation does.
+            message = cancellation.reason();
+            log.info("Call to {} cancelled: {}", llm, message);
+        } else {
+            log.error("Error occurred: {}", message, e);
+        }
+        return ModelResponse.builder()
+                            .llm(llm)
+                            .response("Error: " + message)
+                            .build();
     }
 
     /**
@@ -94,6 +505,7 @@ public class AiService {
      * <p>
      * This method logs the prompt being sent and facilitates interaction with the language model by preparing
      * and transmitting the request. The response is subsequently returned as a ChatResponse object.
+     * The default system prompt from the {@link PromptTemplateRegistry} is used.
      *
      * @param chatClient the ChatClient used to communicate with the language model
      * @param prompt     the user prompt or message to be sent to the language model
@@ -101,11 +513,65 @@ public class AiService {
      * and associated metadata from the language model
      */
     public ChatResponse sendMessage(ChatClient chatClient, String prompt) {
-        return chatClient.prompt()
-                         .system(systemMessage)
-                         .user(prompt)
-                         .call()
-                         .chatResponse();
+        return sendMessage(chatClient, promptTemplateRegistry.renderDefault(), prompt);
+    }
+
+    /**
+     * Sends a prompt message with the given system prompt to the specified language model via the provided
+     * ChatClient and returns the response.
+     *
+     * @param chatClient    the ChatClient used to communicate with the language model
+     * @param systemMessage the rendered system prompt to send ahead of the user prompt
+     * @param prompt        the user prompt or message to be sent to the language model
+     * @return a ChatResponse object containing the result of the conversation, including the generated response
+     * and associated metadata from the language model
+     */
+    public ChatResponse sendMessage(ChatClient chatClient, String systemMessage, String prompt) {
+        return sendMessage(chatClient, systemMessage, List.of(), prompt);
+    }
+
+    /**
+     * Sends a prompt message as the next turn of a conversation to the specified language model via the
+     * provided ChatClient and returns the response.
+     *
+     * @param chatClient    the ChatClient used to communicate with the language model
+     * @param systemMessage the rendered system prompt to send ahead of the conversation
+     * @param history       the earlier user and assistant messages of the conversation, oldest first
+     * @param prompt        the user prompt or message to be sent to the language model
+     * @return a ChatResponse object containing the result of the conversation, including the generated response
+     * and associated metadata from the language model
+     */
+    public ChatResponse sendMessage(ChatClient chatClient, String systemMessage, List<Message> history, String prompt) {
+        return sendMessage(chatClient, systemMessage, history, prompt, List.of());
+    }
+
+    /**
+     * Sends a prompt message as the next turn of a conversation to the specified language model via the
+     * provided ChatClient, offering it the given tools, and returns the response.
+     * <p>
+     * If the model calls any of the tools, they are executed and their results are sent back to the model
+     * until it produces its final answer, which is the response returned here.
+     *
+     * @param chatClient    the ChatClient used to communicate with the language model
+     * @param systemMessage the rendered system prompt to send ahead of the conversation
+     * @param history       the earlier user and assistant messages of the conversation, oldest first
+     * @param prompt        the user prompt or message to be sent to the language model
+     * @param tools         the tools the model may call, or an empty list to offer none
+     * @return a ChatResponse object containing the result of the conversation, including the generated response
+     * and associated metadata from the language model
+     */
+    public ChatResponse sendMessage(ChatClient chatClient, String systemMessage, List<Message> history, String prompt,
+                                    List<ToolCallback> tools) {
+        ChatClient.ChatClientRequestSpec request = chatClient.prompt().system(systemMessage);
+        if (!history.isEmpty()) {
+            request = request.messages(history);
+        }
+        if (!tools.isEmpty()) {
+            request = request.toolCallbacks(tools);
+        }
+        return request.user(prompt)
+                      .call()
+                      .chatResponse();
     }
 
     /**
@@ -120,26 +586,63 @@ public class AiService {
      *                     and associated metadata including token usage and rate limit details.
      * @param responseTime the time taken (in milliseconds) for the language model to process and return
      *                     the response.
+     * @param preparedPrompt the prompt as it was sent, carrying the locally estimated token count and cost.
+     * @param toolCalls    the tool calls the model made while answering, if any.
      * @return a `ModelMetadata` object encapsulating metadata for the given response, such as token statistics,
      * rate limits, model identifier, finish reason, and the timestamp of processing.
      */
-    private ModelMetadata getModelMetadata(ChatResponse chatResponse, Long responseTime) {
+    private ModelMetadata getModelMetadata(ChatResponse chatResponse, Long responseTime, PreparedPrompt preparedPrompt,
+                                           List<ToolCallMetadata> toolCalls) {
         ChatResponseMetadata responseMetadata = chatResponse.getMetadata();
         ModelRateLimit rateLimit = getModelRateLimit(responseMetadata.getRateLimit());
         Usage modelUsage = responseMetadata.getUsage();
 
         return ModelMetadata.builder()
                             .finishReason(chatResponse.getResult().getMetadata().getFinishReason())
-                            .generationTokens(modelUsage.getCompletionTokens())
+                            .generationTokens(tokenCount(modelUsage.getCompletionTokens()))
                             .responseTime(responseTime)
-                            .promptTokens(modelUsage.getPromptTokens())
-                            .totalTokens(modelUsage.getTotalTokens())
+                            .promptTokens(tokenCount(modelUsage.getPromptTokens()))
+                            .totalTokens(tokenCount(modelUsage.getTotalTokens()))
                             .timestamp(Instant.now().toString())
                             .model(responseMetadata.getModel())
                             .rateLimit(rateLimit)
+                            .estimatedPromptTokens(preparedPrompt.promptTokens())
+                            .estimatedCost(preparedPrompt.estimatedCost())
+                            .promptTruncated(preparedPrompt.truncated())
+                            .tokensPerSecond(getTokensPerSecond(responseMetadata, modelUsage, responseTime))
+                            .toolCalls(toolCalls.isEmpty() ? null : toolCalls)
                             .build();
     }
 
+    /**
+     * Providers that do not report token usage leave the counts null; they are counted as 0 so that
+     * the response itself is still returned and accounted.
+     */
+    private static int tokenCount(Integer count) {
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Determines the generation speed of a response. Models that measure it themselves, like the
+     * in-process {@link LocalChatModel}, report it in the response metadata; for all others it is
+     * derived from the number of generated tokens and the overall response time.
+     *
+     * @param responseMetadata the metadata of the chat response
+     * @param modelUsage       the token usage reported by the model
+     * @param responseTime     the response time in milliseconds
+     * @return the generated tokens per second, or null if it cannot be determined
+     */
+    private Double getTokensPerSecond(ChatResponseMetadata responseMetadata, Usage modelUsage, Long responseTime) {
+        if (responseMetadata.containsKey(LocalChatModel.TOKENS_PER_SECOND)) {
+            return responseMetadata.get(LocalChatModel.TOKENS_PER_SECOND);
+        }
+        Integer generationTokens = modelUsage.getCompletionTokens();
+        if (generationTokens == null || generationTokens == 0 || responseTime == null || responseTime <= 0) {
+            return null;
+        }
+        return generationTokens * 1000.0 / responseTime;
+    }
+
     /**
      * Converts a RateLimit object into a ModelRateLimit object by mapping its attributes.
      *
@@ -165,7 +668,7 @@ public class AiService {
      * @param llms a list of model names to be validated against the available chat clients
      * @throws ModelNotFoundException if one or more models in the provided list are not available
      */
-    private void validateModels(List<String> llms) {
+    public void validateModels(List<String> llms) {
         List<String> invalidModels = llms.stream()
                                          .filter(llm -> !chatClients.containsKey(llm))
                                          .toList();
@@ -176,4 +679,21 @@ public class AiService {
             );
         }
     }
+
+    /**
+     * The state of a comparison shared by the calls of all its models.
+     *
+     * @param parent       the observation of the comparison, or null if there is none
+     * @param quota        the quota of the client the comparison runs for
+     * @param cancellation the token through which the comparison can be cancelled
+     * @param toolResults  the results of the tool calls made by the models of the comparison
+     */
+    private record ComparisonContext(
+            Observation parent,
+            QuotaLease quota,
+            CancellationToken cancellation,
+            ToolResultCache toolResults,
+            boolean useCache
+    ) {
+    }
 }
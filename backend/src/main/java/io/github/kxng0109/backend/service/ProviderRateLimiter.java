@@ -0,0 +1,114 @@
+package io.github.kxng0109.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.backend.error.ProviderRateLimitExceededException;
+import io.github.kxng0109.backend.model.dto.ModelRateLimit;
+import io.github.kxng0109.backend.service.state.SharedStateStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * The ProviderRateLimiter class keeps the load placed on each provider within budget across all
+ * backend instances, using the {@link SharedStateStore} for its counters.
+ * <p>
+ * Two checks are applied before a request is dispatched to a model:
+ * - A fixed-window request counter per model, limited by `llm.rate-limit.requests-per-window`
+ *   over `llm.rate-limit.window`. A limit of 0 (the default) disables this check.
+ * - The most recent rate limit budget reported by the provider. If any instance has seen the
+ *   provider report that no requests or tokens remain, the other instances stop sending
+ *   requests until the budget entry expires.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProviderRateLimiter {
+
+    private final SharedStateStore sharedStateStore;
+    private final ObjectMapper objectMapper;
+
+    @Value("${llm.rate-limit.requests-per-window:0}")
+    private long requestsPerWindow;
+
+    @Value("${llm.rate-limit.window:PT1M}")
+    private Duration window;
+
+    /**
+     * Reserves capacity for a single request to the given model.
+     *
+     * @param llm the identifier of the language model about to be called
+     * @throws ProviderRateLimitExceededException if the shared request counter or the last reported
+     *                                            provider budget does not allow another request
+     */
+    public void acquire(String llm) {
+        sharedStateStore.get(budgetKey(llm)).ifPresent(json -> {
+            ModelRateLimit budget = readBudget(json);
+            if (budget != null && isExhausted(budget)) {
+                throw new ProviderRateLimitExceededException(
+                        "The rate limit budget reported by " + llm + " is exhausted",
+                        budget.resetAfter() > 0 ? budget.resetAfter() : window.toSeconds()
+                );
+            }
+        });
+
+        if (requestsPerWindow <= 0) {
+            return;
+        }
+
+        long windowIndex = System.currentTimeMillis() / window.toMillis();
+        long count = sharedStateStore.increment("rate:" + llm + ":" + windowIndex, window);
+        if (count > requestsPerWindow) {
+            long retryAfter = window.toSeconds() - (System.currentTimeMillis() % window.toMillis()) / 1000;
+            throw new ProviderRateLimitExceededException(
+                    "Request limit of " + requestsPerWindow + " per " + window + " reached for " + llm,
+                    Math.max(retryAfter, 1)
+            );
+        }
+    }
+
+    /**
+     * Publishes the rate limit budget most recently reported by a provider, so that every backend
+     * instance can take it into account before dispatching further requests.
+     *
+     * @param llm       the identifier of the language model that reported the budget
+     * @param rateLimit the rate limit information returned with the model's last response
+     */
+    public void recordBudget(String llm, ModelRateLimit rateLimit) {
+        if (rateLimit == null) {
+            return;
+        }
+
+        Duration ttl = rateLimit.resetAfter() > 0 ? Duration.ofSeconds(rateLimit.resetAfter()) : window;
+        try {
+            sharedStateStore.put(budgetKey(llm), objectMapper.writeValueAsString(rateLimit), ttl);
+        } catch (JsonProcessingException e) {
+            log.warn("Could not record rate limit budget for {}: {}", llm, e.getMessage());
+        }
+    }
+
+    private ModelRateLimit readBudget(String json) {
+        try {
+            return objectMapper.readValue(json, ModelRateLimit.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Ignoring unreadable rate limit budget: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean isExhausted(ModelRateLimit budget) {
+        return isExhausted(budget.requestsLimit(), budget.requestsRemaining())
+                || isExhausted(budget.tokensLimit(), budget.tokensRemaining());
+    }
+
+    private boolean isExhausted(Long limit, Long remaining) {
+        return limit != null && limit > 0 && remaining != null && remaining <= 0;
+    }
+
+    private String budgetKey(String llm) {
+        return "budget:" + llm;
+    }
+}
@@ -0,0 +1,151 @@
+package io.github.kxng0109.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.backend.model.dto.ModelResponse;
+import io.github.kxng0109.backend.service.state.SharedStateStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * The ResponseCache class caches successful {@link ModelResponse}s in the {@link SharedStateStore},
+ * so that identical prompts sent to the same model by any backend instance are answered without
+ * calling the provider again.
+ * <p>
+ * Entries are keyed by the model identifier and a SHA-256 digest of the system message and the
+ * prompt, and expire after the configured `llm.cache.ttl`. Caching can be switched off with
+ * `llm.cache.enabled=false`. Entries are kept as the UTF-8 encoded JSON that is sent to clients, so
+ * that the streaming endpoint can write cache hits as they are, without decoding, deserializing or
+ * re-serializing them.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ResponseCache {
+
+    private final SharedStateStore sharedStateStore;
+    private final ObjectMapper objectMapper;
+
+    @Value("${llm.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${llm.cache.ttl:PT10M}")
+    private Duration ttl;
+
+    /**
+     * Looks up a previously cached response for the given model, system message and prompt.
+     *
+     * @param llm           the identifier of the language model
+     * @param systemMessage the system message the response was generated with
+     * @param prompt        the user prompt the response was generated for
+     * @return an Optional containing the cached response, or an empty Optional if caching is
+     * disabled, nothing is cached, or the cached entry could not be read
+     */
+    public Optional<ModelResponse> get(String llm, String systemMessage, String prompt) {
+        return getSerialized(llm, systemMessage, prompt).flatMap(json -> {
+            try {
+                return Optional.of(objectMapper.readValue(json, ModelResponse.class));
+            } catch (IOException e) {
+                log.warn("Ignoring unreadable cache entry for {}: {}", llm, e.getMessage());
+                return Optional.empty();
+            }
+        });
+    }
+
+    /**
+     * Looks up the serialized JSON form of a previously cached response.
+     * <p>
+     * Entries are stored as the UTF-8 encoded JSON that is sent to clients, so a cache hit is returned
+     * exactly as stored and can be written to the response stream as it is, instead of being
+     * deserialized into a {@link ModelResponse} and serialized again. The returned array must not be
+     * modified.
+     *
+     * @param llm           the identifier of the language model
+     * @param systemMessage the system message the response was generated with
+     * @param prompt        the user prompt the response was generated for
+     * @return an Optional containing the UTF-8 encoded JSON of the cached response, or an empty
+     * Optional if caching is disabled or nothing is cached
+     */
+    public Optional<byte[]> getSerialized(String llm, String systemMessage, String prompt) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        return sharedStateStore.getBytes(key(llm, systemMessage, prompt));
+    }
+
+    /**
+     * Stores a response for the given model, system message and prompt. Nothing is serialized while
+     * caching is disabled, and a response that cannot be serialized is not cached.
+     *
+     * @param llm           the identifier of the language model
+     * @param systemMessage the system message the response was generated with
+     * @param prompt        the user prompt the response was generated for
+     * @param response      the response to cache
+     */
+    public void put(String llm, String systemMessage, String prompt, ModelResponse response) {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            sharedStateStore.putBytes(key(llm, systemMessage, prompt), objectMapper.writeValueAsBytes(response), ttl);
+        } catch (JsonProcessingException e) {
+            log.warn("Could not cache response for {}: {}", llm, e.getMessage());
+        }
+    }
+
+    /**
+     * Stores a response that was already serialized with {@link #serialize(ModelResponse)}, for
+     * callers that also write it out and should not have to serialize it a second time.
+     *
+     * @param llm           the identifier of the language model
+     * @param systemMessage the system message the response was generated with
+     * @param prompt        the user prompt the response was generated for
+     * @param json          the UTF-8 encoded JSON of the response to cache, which must not be modified
+     *                      afterwards
+     */
+    public void put(String llm, String systemMessage, String prompt, byte[] json) {
+        if (enabled) {
+            sharedStateStore.putBytes(key(llm, systemMessage, prompt), json, ttl);
+        }
+    }
+
+    /**
+     * Serializes a response into the same JSON form that is stored in the cache.
+     *
+     * @param response the response to serialize
+     * @return the UTF-8 encoded JSON of the response
+     * @throws UncheckedIOException if the response cannot be serialized
+     */
+    public byte[] serialize(ModelResponse response) {
+        try {
+            return objectMapper.writeValueAsBytes(response);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String key(String llm, String systemMessage, String prompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(systemMessage.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(prompt.getBytes(StandardCharsets.UTF_8));
+            return "response:" + llm + ":" + HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
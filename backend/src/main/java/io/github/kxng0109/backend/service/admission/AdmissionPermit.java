@@ -0,0 +1,37 @@
+package io.github.kxng0109.backend.service.admission;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A slot of compare capacity handed out by {@link CompareAdmissionControl}.
+ * <p>
+ * The permit must be closed once the comparison has finished so that the next queued request
+ * can be admitted. Closing a permit more than once has no further effect. While the permit is open,
+ * the comparison can be cancelled through its {@link #cancellation()} token.
+ */
+public final class AdmissionPermit implements AutoCloseable {
+
+    private final CompareAdmissionControl admissionControl;
+    private final CancellationToken cancellation = new CancellationToken();
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    AdmissionPermit(CompareAdmissionControl admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    /**
+     * Returns the token through which the admitted comparison can be cancelled.
+     *
+     * @return the cancellation token of the comparison
+     */
+    public CancellationToken cancellation() {
+        return cancellation;
+    }
+
+    @Override
+    public void close() {
+        if (released.compareAndSet(false, true)) {
+            admissionControl.release(this);
+        }
+    }
+}
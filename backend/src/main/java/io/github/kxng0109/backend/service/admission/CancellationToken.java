@@ -0,0 +1,130 @@
+package io.github.kxng0109.backend.service.admission;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Lets an admitted comparison be cancelled from another thread, for example when its client has gone
+ * away or the server is shutting down. Every {@link AdmissionPermit} carries one.
+ * <p>
+ * Threads calling a model for the comparison {@link #enter()} the token for the duration of the call.
+ * Cancelling interrupts those threads, which aborts blocking provider calls, and makes every later
+ * {@link #enter()} fail, so that models which were not called yet are skipped.
+ * <p>
+ * Like a quota lease, the token is bound to the thread handling the comparison with {@link #open()},
+ * and code that fans out to other threads reads {@link #current()} before it does so and passes the
+ * token on explicitly.
+ */
+public final class CancellationToken {
+
+    /**
+     * The token of comparisons that cannot be cancelled, such as those run outside a request.
+     */
+    public static final CancellationToken NONE = new CancellationToken();
+
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+    private final Set<Thread> threads = new HashSet<>();
+    private String reason;
+
+    CancellationToken() {
+    }
+
+    /**
+     * Returns the token bound to the current thread.
+     *
+     * @return the current token, or {@link #NONE} if none is bound
+     */
+    public static CancellationToken current() {
+        CancellationToken token = CURRENT.get();
+        return token != null ? token : NONE;
+    }
+
+    /**
+     * Binds this token to the current thread until the returned scope is closed.
+     *
+     * @return the scope restoring the previously bound token when closed
+     */
+    public Scope open() {
+        CancellationToken previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    /**
+     * Registers the current thread as working for the comparison until the returned scope is closed,
+     * so that it is interrupted if the comparison is cancelled in the meantime.
+     * <p>
+     * Closing the scope clears an interrupt caused by the cancellation, since the thread may be a
+     * pooled one that goes on with unrelated work.
+     *
+     * @return the scope ending the registration when closed
+     * @throws CancellationException if the comparison has already been cancelled
+     */
+    public Scope enter() {
+        if (this == NONE) {
+            return () -> {
+            };
+        }
+
+        Thread thread = Thread.currentThread();
+        synchronized (this) {
+            if (reason != null) {
+                throw new CancellationException(reason);
+            }
+            threads.add(thread);
+        }
+        return () -> leave(thread);
+    }
+
+    /**
+     * Cancels the comparison and interrupts the threads currently working for it.
+     *
+     * @param reason why the comparison was cancelled, reported in place of the responses that were
+     *               not produced
+     * @return true if the comparison was not cancelled before
+     */
+    public synchronized boolean cancel(String reason) {
+        if (this == NONE || this.reason != null) {
+            return false;
+        }
+        this.reason = reason;
+        threads.forEach(Thread::interrupt);
+        return true;
+    }
+
+    public synchronized boolean isCancelled() {
+        return reason != null;
+    }
+
+    /**
+     * Returns why the comparison was cancelled.
+     *
+     * @return the reason passed to {@link #cancel(String)}, or null if the comparison was not cancelled
+     */
+    public synchronized String reason() {
+        return reason;
+    }
+
+    private synchronized void leave(Thread thread) {
+        threads.remove(thread);
+        if (reason != null) {
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * A binding of a token to a thread.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,334 @@
+package io.github.kxng0109.backend.service.admission;
+
+import io.github.kxng0109.backend.error.OverloadedException;
+import io.github.kxng0109.backend.error.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The CompareAdmissionControl class limits how many comparisons run against the providers at the
+ * same time and decides which waiting comparison is admitted next when capacity frees up.
+ * <p>
+ * Requests that cannot start immediately are queued by {@link Priority} and by client. Higher
+ * priority classes are always served first, and within a priority class the clients are served
+ * round-robin, so one client with many queued requests only gets every n-th free slot instead of
+ * all of them. Requests are shed with an {@link OverloadedException} when the queue is full or when
+ * they have waited longer than the configured maximum.
+ * <p>
+ * The following metrics are published:
+ * - `llm.compare.queue.depth`: the number of queued requests, tagged by priority.
+ * - `llm.compare.in.flight`: the number of admitted comparisons currently running.
+ * - `llm.compare.queue.wait`: the time requests spent waiting for admission, tagged by priority.
+ * - `llm.compare.shed`: the number of requests rejected because of overload, tagged by priority.
+ * <p>
+ * Waiting for admission is also recorded as the `llm.compare.admission` observation, so that time
+ * spent queueing shows up as its own span in the trace of the request.
+ * <p>
+ * When the application shuts down, admission control is stopped before the web server. It rejects
+ * queued and new comparisons with a {@link ServiceUnavailableException}, waits up to the configured
+ * drain timeout for the running comparisons to finish, cancels those still running at the deadline
+ * through their {@link CancellationToken}, and logs how many had to be cut off.
+ */
+@Service
+@Slf4j
+public class CompareAdmissionControl implements SmartLifecycle {
+
+    static final String SHUTDOWN_REASON = "The server is shutting down";
+
+    private final ObservationRegistry observationRegistry;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final Duration maxWait;
+    private final Duration drainTimeout;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition drained = lock.newCondition();
+    private final Map<Priority, LinkedHashMap<String, ArrayDeque<Ticket>>> queues = new EnumMap<>(Priority.class);
+    private final Map<Priority, AtomicInteger> queueDepths = new EnumMap<>(Priority.class);
+    private final Map<Priority, Timer> waitTimers = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> shedCounters = new EnumMap<>(Priority.class);
+    private final AtomicInteger running = new AtomicInteger();
+    private final Set<AdmissionPermit> admitted = ConcurrentHashMap.newKeySet();
+    private int queued;
+    private boolean draining;
+    private volatile boolean cutOff;
+    private volatile boolean lifecycleRunning;
+
+    public CompareAdmissionControl(
+            MeterRegistry meterRegistry,
+            ObservationRegistry observationRegistry,
+            @Value("${llm.admission.max-concurrent:16}") int maxConcurrent,
+            @Value("${llm.admission.max-queued:100}") int maxQueued,
+            @Value("${llm.admission.max-wait:PT10S}") Duration maxWait,
+            @Value("${llm.admission.drain-timeout:PT20S}") Duration drainTimeout
+    ) {
+        this.observationRegistry = observationRegistry;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxWait = maxWait;
+        this.drainTimeout = drainTimeout;
+
+        for (Priority priority : Priority.values()) {
+            String tag = priority.name().toLowerCase(Locale.ROOT);
+            AtomicInteger depth = new AtomicInteger();
+            queues.put(priority, new LinkedHashMap<>());
+            queueDepths.put(priority, depth);
+            Gauge.builder("llm.compare.queue.depth", depth, AtomicInteger::get)
+                 .tag("priority", tag)
+                 .register(meterRegistry);
+            waitTimers.put(priority, Timer.builder("llm.compare.queue.wait")
+                                          .tag("priority", tag)
+                                          .register(meterRegistry));
+            shedCounters.put(priority, Counter.builder("llm.compare.shed")
+                                              .tag("priority", tag)
+                                              .register(meterRegistry));
+        }
+        Gauge.builder("llm.compare.in.flight", running, AtomicInteger::get).register(meterRegistry);
+    }
+
+    /**
+     * Admits a comparison, waiting for capacity if necessary.
+     *
+     * @param clientId the identifier of the client submitting the comparison, used for fair queuing
+     * @param priority the priority class of the comparison
+     * @return a permit that must be closed when the comparison has finished
+     * @throws OverloadedException         if the queue is full or the request could not be admitted
+     *                                     within the configured maximum wait
+     * @throws ServiceUnavailableException if the application is shutting down
+     */
+    public AdmissionPermit admit(String clientId, Priority priority) {
+        return Observation.createNotStarted("llm.compare.admission", observationRegistry)
+                          .contextualName("admission")
+                          .lowCardinalityKeyValue("priority", priority.name().toLowerCase(Locale.ROOT))
+                          .observe(() -> acquire(clientId, priority));
+    }
+
+    private AdmissionPermit acquire(String clientId, Priority priority) {
+        long startTime = System.nanoTime();
+        Ticket ticket = new Ticket();
+
+        lock.lock();
+        try {
+            if (draining) {
+                throw shuttingDown();
+            }
+            if (running.get() < maxConcurrent && queued == 0) {
+                running.incrementAndGet();
+                waitTimers.get(priority).record(0, TimeUnit.NANOSECONDS);
+                return register(new AdmissionPermit(this));
+            }
+            if (queued >= maxQueued) {
+                throw shed(priority, "Too many comparisons are queued, please retry later");
+            }
+            queues.get(priority).computeIfAbsent(clientId, key -> new ArrayDeque<>()).addLast(ticket);
+            queueDepths.get(priority).incrementAndGet();
+            queued++;
+        } finally {
+            lock.unlock();
+        }
+
+        awaitAdmission(ticket);
+        boolean admitted;
+        boolean rejected;
+        lock.lock();
+        try {
+            admitted = ticket.admitted;
+            rejected = draining;
+            if (!admitted) {
+                remove(priority, clientId, ticket);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        waitTimers.get(priority).record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        if (!admitted && rejected) {
+            throw shuttingDown();
+        }
+        if (!admitted) {
+            throw shed(priority, "Comparison could not be started within " + maxWait.toMillis() + "ms, please retry later");
+        }
+        return register(new AdmissionPermit(this));
+    }
+
+    /**
+     * Returns the slot of capacity of a permit and admits the next queued comparison, if any.
+     */
+    void release(AdmissionPermit permit) {
+        admitted.remove(permit);
+        lock.lock();
+        try {
+            running.decrementAndGet();
+            while (running.get() < maxConcurrent) {
+                Ticket next = pollNext();
+                if (next == null) {
+                    break;
+                }
+                running.incrementAndGet();
+                next.admitted = true;
+                next.latch.countDown();
+            }
+            if (running.get() == 0) {
+                drained.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops admitting comparisons and waits up to the drain timeout for the running ones to finish.
+     * Queued comparisons are rejected right away, and comparisons still running at the deadline are
+     * cancelled.
+     *
+     * @return the number of comparisons that were cancelled because they did not finish in time
+     */
+    int drain() {
+        long startTime = System.nanoTime();
+        int rejected = 0;
+        int inFlight;
+        lock.lock();
+        try {
+            draining = true;
+            for (Ticket ticket = pollNext(); ticket != null; ticket = pollNext()) {
+                ticket.latch.countDown();
+                rejected++;
+            }
+
+            inFlight = running.get();
+            long remaining = drainTimeout.toNanos();
+            while (running.get() > 0 && remaining > 0) {
+                remaining = drained.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            inFlight = running.get();
+        } finally {
+            lock.unlock();
+        }
+
+        cutOff = true;
+        List<AdmissionPermit> unfinished = List.copyOf(admitted);
+        unfinished.forEach(permit -> permit.cancellation().cancel(SHUTDOWN_REASON));
+
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        if (unfinished.isEmpty()) {
+            log.info("Drained {} in-flight comparisons in {}ms, rejected {} queued", inFlight, elapsed, rejected);
+        } else {
+            log.warn("Cancelled {} of {} in-flight comparisons still running after the drain timeout of {}ms, rejected {} queued",
+                     unfinished.size(), inFlight, drainTimeout.toMillis(), rejected);
+        }
+        return unfinished.size();
+    }
+
+    @Override
+    public void start() {
+        lifecycleRunning = true;
+    }
+
+    @Override
+    public void stop() {
+        try {
+            drain();
+        } finally {
+            lifecycleRunning = false;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return lifecycleRunning;
+    }
+
+    private AdmissionPermit register(AdmissionPermit permit) {
+        admitted.add(permit);
+        if (cutOff) {
+            permit.cancellation().cancel(SHUTDOWN_REASON);
+        }
+        return permit;
+    }
+
+    private void awaitAdmission(Ticket ticket) {
+        try {
+            ticket.latch.await(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Ticket pollNext() {
+        for (Priority priority : Priority.values()) {
+            LinkedHashMap<String, ArrayDeque<Ticket>> clients = queues.get(priority);
+            Iterator<Map.Entry<String, ArrayDeque<Ticket>>> iterator = clients.entrySet().iterator();
+            if (!iterator.hasNext()) {
+                continue;
+            }
+
+            Map.Entry<String, ArrayDeque<Ticket>> first = iterator.next();
+            String clientId = first.getKey();
+            ArrayDeque<Ticket> tickets = first.getValue();
+            Ticket ticket = tickets.pollFirst();
+            iterator.remove();
+            if (!tickets.isEmpty()) {
+                // Re-inserting moves the client to the back of the round-robin order.
+                clients.put(clientId, tickets);
+            }
+
+            queueDepths.get(priority).decrementAndGet();
+            queued--;
+            return ticket;
+        }
+        return null;
+    }
+
+    private void remove(Priority priority, String clientId, Ticket ticket) {
+        LinkedHashMap<String, ArrayDeque<Ticket>> clients = queues.get(priority);
+        ArrayDeque<Ticket> tickets = clients.get(clientId);
+        if (tickets != null && tickets.remove(ticket)) {
+            if (tickets.isEmpty()) {
+                clients.remove(clientId);
+            }
+            queueDepths.get(priority).decrementAndGet();
+            queued--;
+        }
+    }
+
+    private OverloadedException shed(Priority priority, String message) {
+        shedCounters.get(priority).increment();
+        log.warn("Shedding {} comparison: {}", priority.name().toLowerCase(Locale.ROOT), message);
+        return new OverloadedException(message, Math.max(1, maxWait.toSeconds()));
+    }
+
+    private ServiceUnavailableException shuttingDown() {
+        return new ServiceUnavailableException(SHUTDOWN_REASON + ", please retry", 1);
+    }
+
+    private static final class Ticket {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private boolean admitted;
+    }
+}
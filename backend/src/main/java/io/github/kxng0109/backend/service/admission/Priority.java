@@ -0,0 +1,30 @@
+package io.github.kxng0109.backend.service.admission;
+
+import java.util.Locale;
+
+/**
+ * Priority classes used by {@link CompareAdmissionControl} when capacity is scarce.
+ * <p>
+ * Queued interactive requests are always admitted before queued batch requests, so that a large
+ * batch submission cannot delay users waiting on a single comparison. The declaration order of the
+ * constants is the admission order.
+ */
+public enum Priority {
+    INTERACTIVE,
+    BATCH;
+
+    /**
+     * Resolves a priority from its case-insensitive name.
+     *
+     * @param value the name of the priority, for example "interactive" or "batch"
+     * @return the matching Priority
+     * @throws IllegalArgumentException if the value does not name a known priority
+     */
+    public static Priority from(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown priority: " + value);
+        }
+    }
+}
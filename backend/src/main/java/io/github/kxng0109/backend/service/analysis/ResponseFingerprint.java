@@ -0,0 +1,108 @@
+package io.github.kxng0109.backend.service.analysis;
+
+import java.util.Arrays;
+
+/**
+ * The set of hashed word trigrams (shingles) of a response, stored as a sorted array without
+ * duplicates so that two fingerprints can be compared with a single linear merge.
+ * <p>
+ * Words are runs of letters and digits, compared case-insensitively. Texts with fewer than three
+ * words use their individual words instead.
+ */
+final class ResponseFingerprint {
+
+    private static final int SHINGLE_SIZE = 3;
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private final long[] shingles;
+
+    private ResponseFingerprint(long[] shingles) {
+        this.shingles = shingles;
+    }
+
+    static ResponseFingerprint of(String text) {
+        long[] words = new long[Math.max(16, text.length() / 4)];
+        int wordCount = 0;
+        long hash = FNV_OFFSET;
+        boolean inWord = false;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                hash = (hash ^ Character.toLowerCase(c)) * FNV_PRIME;
+                inWord = true;
+            } else if (inWord) {
+                if (wordCount == words.length) {
+                    words = Arrays.copyOf(words, wordCount * 2);
+                }
+                words[wordCount++] = hash;
+                hash = FNV_OFFSET;
+                inWord = false;
+            }
+        }
+        if (inWord) {
+            if (wordCount == words.length) {
+                words = Arrays.copyOf(words, wordCount + 1);
+            }
+            words[wordCount++] = hash;
+        }
+
+        if (wordCount < SHINGLE_SIZE) {
+            return new ResponseFingerprint(distinctSorted(words, wordCount));
+        }
+
+        int shingleCount = wordCount - SHINGLE_SIZE + 1;
+        long[] shingles = new long[shingleCount];
+        for (int i = 0; i < shingleCount; i++) {
+            long shingle = FNV_OFFSET;
+            for (int j = 0; j < SHINGLE_SIZE; j++) {
+                shingle = (shingle ^ words[i + j]) * FNV_PRIME;
+            }
+            shingles[i] = shingle;
+        }
+        return new ResponseFingerprint(distinctSorted(shingles, shingleCount));
+    }
+
+    /**
+     * Computes the Jaccard similarity between this fingerprint and another one.
+     *
+     * @param other the fingerprint to compare with
+     * @return the size of the intersection divided by the size of the union, or 1 if both are empty
+     */
+    double jaccard(ResponseFingerprint other) {
+        long[] a = shingles;
+        long[] b = other.shingles;
+        if (a.length == 0 && b.length == 0) {
+            return 1;
+        }
+
+        int i = 0;
+        int j = 0;
+        int intersection = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                intersection++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) intersection / (a.length + b.length - intersection);
+    }
+
+    private static long[] distinctSorted(long[] values, int length) {
+        long[] sorted = Arrays.copyOf(values, length);
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[distinct - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        return distinct == sorted.length ? sorted : Arrays.copyOf(sorted, distinct);
+    }
+}
@@ -0,0 +1,152 @@
+package io.github.kxng0109.backend.service.analysis;
+
+import io.github.kxng0109.backend.model.dto.ComparisonAnalysis;
+import io.github.kxng0109.backend.model.dto.ModelResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The SimilarityAccumulator class builds the {@link ComparisonAnalysis} of a single comparison
+ * incrementally, one response at a time.
+ * <p>
+ * Each response is fingerprinted (and embedded, if an embedding model is configured) on the thread
+ * that delivers it, which for a comparison is the thread that just finished calling that model. Only
+ * the comparison against the responses that arrived earlier happens under the accumulator's lock,
+ * so by the time the last model completes, all but one row of the similarity matrix is already known.
+ * <p>
+ * Instances are safe to use from multiple threads and are obtained from {@link SimilarityAnalyzer}.
+ */
+@Slf4j
+public final class SimilarityAccumulator {
+
+    private final EmbeddingModel embeddingModel;
+    private final List<Entry> entries = new ArrayList<>();
+
+    SimilarityAccumulator(EmbeddingModel embeddingModel) {
+        this.embeddingModel = embeddingModel;
+    }
+
+    /**
+     * Adds a model's response to the analysis. Responses that carry an error instead of an answer
+     * are ignored.
+     *
+     * @param modelResponse the response to add
+     */
+    public void add(ModelResponse modelResponse) {
+        if (isError(modelResponse)) {
+            return;
+        }
+
+        String text = modelResponse.response();
+        ResponseFingerprint fingerprint = ResponseFingerprint.of(text);
+        float[] embedding = embed(modelResponse.llm(), text);
+
+        synchronized (this) {
+            int count = entries.size();
+            double[] lexical = new double[count];
+            double[] semantic = new double[count];
+            for (int i = 0; i < count; i++) {
+                Entry previous = entries.get(i);
+                lexical[i] = fingerprint.jaccard(previous.fingerprint());
+                semantic[i] = embedding != null && previous.embedding() != null
+                        ? cosine(embedding, previous.embedding())
+                        : Double.NaN;
+            }
+            entries.add(new Entry(modelResponse.llm(), fingerprint, embedding, lexical, semantic));
+        }
+    }
+
+    /**
+     * Builds the analysis of all responses added so far.
+     *
+     * @return the similarity matrices, per-model agreement and consensus score
+     */
+    public synchronized ComparisonAnalysis result() {
+        int count = entries.size();
+        boolean hasSemantic = count > 0 && entries.stream().allMatch(entry -> entry.embedding() != null);
+
+        double[][] lexical = new double[count][count];
+        double[][] semantic = hasSemantic ? new double[count][count] : null;
+        for (int i = 0; i < count; i++) {
+            Entry entry = entries.get(i);
+            lexical[i][i] = 1;
+            if (hasSemantic) {
+                semantic[i][i] = 1;
+            }
+            for (int j = 0; j < i; j++) {
+                lexical[i][j] = lexical[j][i] = entry.lexical()[j];
+                if (hasSemantic) {
+                    semantic[i][j] = semantic[j][i] = entry.semantic()[j];
+                }
+            }
+        }
+
+        double[][] scores = hasSemantic ? semantic : lexical;
+        double[] agreement = new double[count];
+        double total = 0;
+        for (int i = 0; i < count; i++) {
+            double sum = 0;
+            for (int j = 0; j < count; j++) {
+                if (i != j) {
+                    sum += scores[i][j];
+                }
+            }
+            agreement[i] = count > 1 ? sum / (count - 1) : 1;
+            total += sum;
+        }
+
+        return ComparisonAnalysis.builder()
+                                 .llms(entries.stream().map(Entry::llm).toList())
+                                 .lexicalSimilarity(lexical)
+                                 .semanticSimilarity(semantic)
+                                 .agreement(agreement)
+                                 .consensus(count > 1 ? total / ((double) count * (count - 1)) : 1)
+                                 .build();
+    }
+
+    private float[] embed(String llm, String text) {
+        if (embeddingModel == null) {
+            return null;
+        }
+
+        try {
+            return embeddingModel.embed(text);
+        } catch (Exception e) {
+            log.warn("Could not embed response of {}: {}", llm, e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isError(ModelResponse modelResponse) {
+        return modelResponse.response() == null
+                || modelResponse.metadata() == null && modelResponse.response().startsWith("Error: ");
+    }
+
+    static double cosine(float[] a, float[] b) {
+        int length = Math.min(a.length, b.length);
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        if (normA == 0 || normB == 0) {
+            return 0;
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+
+    private record Entry(
+            String llm,
+            ResponseFingerprint fingerprint,
+            float[] embedding,
+            double[] lexical,
+            double[] semantic
+    ) {
+    }
+}
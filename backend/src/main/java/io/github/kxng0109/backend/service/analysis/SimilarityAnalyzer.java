@@ -0,0 +1,43 @@
+package io.github.kxng0109.backend.service.analysis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * The SimilarityAnalyzer class hands out {@link SimilarityAccumulator}s used to measure how much the
+ * responses of a comparison agree with each other.
+ * <p>
+ * Lexical similarity is always computed. Semantic similarity additionally requires an embedding model,
+ * selected by its bean name with the `llm.analysis.embedding-model` property (for example
+ * `ollamaEmbeddingModel` or `openAiEmbeddingModel`). It is disabled when the property is empty.
+ */
+@Service
+@Slf4j
+public class SimilarityAnalyzer {
+
+    private final EmbeddingModel embeddingModel;
+
+    public SimilarityAnalyzer(
+            BeanFactory beanFactory,
+            @Value("${llm.analysis.embedding-model:}") String embeddingModelName
+    ) {
+        this.embeddingModel = embeddingModelName.isBlank()
+                ? null
+                : beanFactory.getBean(embeddingModelName, EmbeddingModel.class);
+        if (embeddingModel != null) {
+            log.info("Semantic similarity enabled using {}", embeddingModelName);
+        }
+    }
+
+    /**
+     * Creates an accumulator for the responses of a single comparison.
+     *
+     * @return a new, empty accumulator
+     */
+    public SimilarityAccumulator newAccumulator() {
+        return new SimilarityAccumulator(embeddingModel);
+    }
+}
@@ -0,0 +1,99 @@
+package io.github.kxng0109.backend.service.cassette;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One recorded provider HTTP exchange, stored as a single JSON line of a cassette file.
+ *
+ * Only what is needed to reproduce the response is kept: the request is identified by its target and
+ * a hash of its body, so credentials and prompt text never end up on disk in clear.
+ *
+ * Fields:
+ * - `host`: The provider host the request was sent to (e.g. `api.openai.com`).
+ * - `method`: The HTTP method of the request.
+ * - `path`: The request path including the query string.
+ * - `requestHash`: The SHA-256 of the request body, used to match replayed requests exactly.
+ * - `status`: The HTTP status code of the response.
+ * - `headers`: The end-to-end response headers, including provider rate-limit headers.
+ * - `body`: The response body, if it is uncompressed UTF-8 text.
+ * - `bodyBase64`: The Base64 of the response body otherwise, e.g. for a compressed or binary body, so
+ *   that it is replayed byte for byte.
+ * - `latencyMs`: The time the provider took to answer, in milliseconds.
+ */
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CassetteEntry(
+        String host,
+        String method,
+        String path,
+        String requestHash,
+        int status,
+        Map<String, List<String>> headers,
+        String body,
+        String bodyBase64,
+        long latencyMs
+) {
+
+    /**
+     * Returns the raw response body, decoding it from whichever field it was recorded in.
+     *
+     * @return the response body, empty if none was recorded
+     */
+    public byte[] bodyBytes() {
+        if (bodyBase64 != null) {
+            return Base64.getDecoder().decode(bodyBase64);
+        }
+        return body != null ? body.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    }
+
+    public static class CassetteEntryBuilder {
+
+        /**
+         * Sets the response body, as readable text if it is uncompressed UTF-8 and as Base64 otherwise.
+         *
+         * @param body            the raw response body
+         * @param contentEncoding the `Content-Encoding` of the response, or null if it has none
+         * @return this builder
+         */
+        public CassetteEntryBuilder rawBody(byte[] body, String contentEncoding) {
+            if (contentEncoding == null || contentEncoding.equalsIgnoreCase("identity")) {
+                try {
+                    return body(StandardCharsets.UTF_8.newDecoder()
+                                                      .onMalformedInput(CodingErrorAction.REPORT)
+                                                      .onUnmappableCharacter(CodingErrorAction.REPORT)
+                                                      .decode(ByteBuffer.wrap(body))
+                                                      .toString());
+                } catch (CharacterCodingException e) {
+                    // Not text, so it is kept as Base64 below.
+                }
+            }
+            return bodyBase64(Base64.getEncoder().encodeToString(body));
+        }
+    }
+
+    /**
+     * Computes the digest used as `requestHash` for a request body.
+     *
+     * @param body the raw request body
+     * @return the hex-encoded SHA-256 of the body
+     */
+    public static String hash(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
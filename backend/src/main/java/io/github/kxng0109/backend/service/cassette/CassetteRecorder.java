@@ -0,0 +1,152 @@
+package io.github.kxng0109.backend.service.cassette;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The CassetteRecorder class is a {@link ClientHttpRequestInterceptor} that appends every provider
+ * HTTP exchange passing through the Spring AI clients to a cassette file.
+ * <p>
+ * The response body is buffered so that it can be written to the cassette and still be handed to the
+ * client unchanged. Request headers are not recorded, which keeps API keys out of the cassette, and
+ * the request body is only stored as a hash. Response bodies that are not plain UTF-8 text, such as
+ * compressed ones, are stored as Base64 together with their `Content-Encoding`. Each exchange is flushed as soon as it completes, so a
+ * recording session can be stopped at any time.
+ */
+@Slf4j
+public class CassetteRecorder implements ClientHttpRequestInterceptor, AutoCloseable {
+
+    private static final Set<String> SKIPPED_HEADERS = Set.of(
+            "connection", "content-length", "transfer-encoding",
+            "keep-alive", "set-cookie", "date"
+    );
+
+    private final ObjectMapper objectMapper;
+    private final BufferedWriter writer;
+
+    public CassetteRecorder(ObjectMapper objectMapper, Path path) throws IOException {
+        this.objectMapper = objectMapper;
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.writer = Files.newBufferedWriter(
+                path,
+                StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND
+        );
+        log.info("Recording provider traffic to {}", path);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body,
+                                        ClientHttpRequestExecution execution) throws IOException {
+        long startTime = System.nanoTime();
+        BufferedResponse response;
+        try (ClientHttpResponse original = execution.execute(request, body)) {
+            response = new BufferedResponse(
+                    original.getStatusCode(),
+                    original.getStatusText(),
+                    HttpHeaders.readOnlyHttpHeaders(original.getHeaders()),
+                    original.getBody().readAllBytes()
+            );
+        }
+        long latencyMs = (System.nanoTime() - startTime) / 1_000_000;
+
+        URI uri = request.getURI();
+        CassetteEntry entry = CassetteEntry.builder()
+                                           .host(uri.getHost())
+                                           .method(request.getMethod().name())
+                                           .path(uri.getRawQuery() == null
+                                                         ? uri.getRawPath()
+                                                         : uri.getRawPath() + "?" + uri.getRawQuery())
+                                           .requestHash(CassetteEntry.hash(body))
+                                           .status(response.statusCode().value())
+                                           .headers(recordedHeaders(response.headers()))
+                                           .rawBody(response.body(), response.headers().getFirst(HttpHeaders.CONTENT_ENCODING))
+                                           .latencyMs(latencyMs)
+                                           .build();
+        write(entry);
+
+        return response;
+    }
+
+    private void write(CassetteEntry entry) {
+        try {
+            String line = objectMapper.writeValueAsString(entry);
+            synchronized (writer) {
+                writer.write(line);
+                writer.newLine();
+                writer.flush();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to record exchange with {}: {}", entry.host(), e.getMessage());
+        }
+    }
+
+    private Map<String, List<String>> recordedHeaders(HttpHeaders headers) {
+        Map<String, List<String>> recorded = new LinkedHashMap<>();
+        headers.forEach((name, values) -> {
+            if (!SKIPPED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                recorded.put(name, List.copyOf(values));
+            }
+        });
+        return recorded;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writer) {
+            writer.close();
+        }
+    }
+
+    private record BufferedResponse(HttpStatusCode statusCode, String statusText, HttpHeaders headers, byte[] body)
+            implements ClientHttpResponse {
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return statusCode;
+        }
+
+        @Override
+        public String getStatusText() {
+            return statusText;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.kxng0109.backend.service.cassette;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.support.HttpRequestWrapper;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * The CassetteReplayInterceptor class redirects provider requests to a {@link CassetteReplayServer}.
+ * <p>
+ * Only the scheme, host and port of the request are replaced; the path, query, headers and body are
+ * sent unchanged, so the request still goes through the complete HTTP client stack. The original host
+ * is passed along for matching against the cassette.
+ */
+public class CassetteReplayInterceptor implements ClientHttpRequestInterceptor {
+
+    private final int port;
+
+    public CassetteReplayInterceptor(int port) {
+        this.port = port;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body,
+                                        ClientHttpRequestExecution execution) throws IOException {
+        URI original = request.getURI();
+        URI redirected = UriComponentsBuilder.fromUri(original)
+                                             .scheme("http")
+                                             .host("127.0.0.1")
+                                             .port(port)
+                                             .build(true)
+                                             .toUri();
+        request.getHeaders().set(CassetteReplayServer.HOST_HEADER, original.getHost());
+
+        return execution.execute(new HttpRequestWrapper(request) {
+            @Override
+            public URI getURI() {
+                return redirected;
+            }
+        }, body);
+    }
+}
@@ -0,0 +1,158 @@
+package io.github.kxng0109.backend.service.cassette;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The CassetteReplayServer class is a local HTTP stand-in for the LLM providers that answers requests
+ * from a recorded cassette.
+ * <p>
+ * Provider requests are redirected to this server by {@link CassetteReplayInterceptor}, which passes
+ * the original host in the {@value #HOST_HEADER} header. A request is answered with an entry recorded
+ * for the same host, method, path and request body; if the body was never recorded, entries for the
+ * same endpoint are served in rotation, so that arbitrary prompts can be load-tested against a small
+ * cassette. Requests without any recorded endpoint get a 404.
+ * <p>
+ * Each response is delayed by its recorded latency multiplied by the time scale. Exchanges are
+ * handled on virtual threads, so concurrent requests wait in parallel like they would against the
+ * real provider.
+ */
+@Slf4j
+public class CassetteReplayServer implements AutoCloseable {
+
+    static final String HOST_HEADER = "X-Cassette-Host";
+
+    private final Map<String, Track> exactMatches = new HashMap<>();
+    private final Map<String, Track> endpointMatches = new HashMap<>();
+    private final double timeScale;
+    private final HttpServer server;
+
+    public CassetteReplayServer(ObjectMapper objectMapper, Path path, double timeScale) throws IOException {
+        this.timeScale = timeScale;
+
+        int entries = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                CassetteEntry entry = objectMapper.readValue(line, CassetteEntry.class);
+                String endpoint = endpointKey(entry.host(), entry.method(), entry.path());
+                exactMatches.computeIfAbsent(endpoint + " " + entry.requestHash(), key -> new Track()).add(entry);
+                endpointMatches.computeIfAbsent(endpoint, key -> new Track()).add(entry);
+                entries++;
+            }
+        }
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", this::handle);
+        server.start();
+        log.info("Replaying {} recorded exchanges from {} on port {} (time scale {})",
+                 entries, path, getPort(), timeScale);
+    }
+
+    /**
+     * @return the local port the stand-in listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] requestBody = exchange.getRequestBody().readAllBytes();
+            URI uri = exchange.getRequestURI();
+            String path = uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery();
+            String endpoint = endpointKey(
+                    exchange.getRequestHeaders().getFirst(HOST_HEADER),
+                    exchange.getRequestMethod(),
+                    path
+            );
+
+            Track track = exactMatches.get(endpoint + " " + CassetteEntry.hash(requestBody));
+            if (track == null) {
+                track = endpointMatches.get(endpoint);
+            }
+            if (track == null) {
+                log.warn("No recorded exchange for {}", endpoint);
+                send(exchange, 404, ("{\"error\":\"No recorded exchange for " + endpoint + "\"}")
+                        .getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            CassetteEntry entry = track.next();
+            delay(entry.latencyMs());
+            if (entry.headers() != null) {
+                entry.headers().forEach((name, values) -> exchange.getResponseHeaders().put(name, values));
+            }
+            send(exchange, entry.status(), entry.bodyBytes());
+        }
+    }
+
+    private void delay(long latencyMs) {
+        long delay = Math.round(latencyMs * timeScale);
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        }
+    }
+
+    private static String endpointKey(String host, String method, String path) {
+        return host + " " + method + " " + path;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    /**
+     * The recorded entries for one key, handed out in rotation.
+     */
+    private static final class Track {
+
+        private final List<CassetteEntry> entries = new ArrayList<>();
+        private final AtomicInteger position = new AtomicInteger();
+
+        void add(CassetteEntry entry) {
+            entries.add(entry);
+        }
+
+        CassetteEntry next() {
+            return entries.get(Math.floorMod(position.getAndIncrement(), entries.size()));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package io.github.kxng0109.backend.service.local;
+
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ChatFormat enum lists the chat templates the local provider can lay a conversation out in. The
+ * template has to match the one the model was fine-tuned with.
+ */
+public enum ChatFormat {
+
+    /**
+     * The Zephyr format used by TinyLlama chat models.
+     */
+    ZEPHYR {
+        @Override
+        List<Segment> render(List<Message> messages) {
+            Layout layout = new Layout();
+            for (Message message : messages) {
+                layout.markup("<|" + role(message) + "|>\n").text(message.getText()).markup("</s>\n");
+            }
+            return layout.markup("<|assistant|>\n").segments();
+        }
+    },
+
+    /**
+     * The ChatML format.
+     */
+    CHATML {
+        @Override
+        List<Segment> render(List<Message> messages) {
+            Layout layout = new Layout();
+            for (Message message : messages) {
+                layout.markup("<|im_start|>" + role(message) + "\n").text(message.getText()).markup("<|im_end|>\n");
+            }
+            return layout.markup("<|im_start|>assistant\n").segments();
+        }
+    },
+
+    /**
+     * The `[INST]` format of Llama 2 and Mistral instruct models. The system message is folded into
+     * the first user turn.
+     */
+    LLAMA2 {
+        @Override
+        List<Segment> render(List<Message> messages) {
+            Layout layout = new Layout();
+            String system = null;
+            boolean firstTurn = true;
+            for (Message message : messages) {
+                switch (message.getMessageType()) {
+                    case SYSTEM -> system = message.getText();
+                    case ASSISTANT -> layout.markup(" ").text(message.getText()).markup(" </s>");
+                    default -> {
+                        layout.markup((firstTurn ? "" : "<s>") + "[INST] ");
+                        if (system != null) {
+                            layout.markup("<<SYS>>\n").text(system).markup("\n<</SYS>>\n\n");
+                            system = null;
+                        }
+                        layout.text(message.getText()).markup(" [/INST]");
+                        firstTurn = false;
+                    }
+                }
+            }
+            return layout.segments();
+        }
+    };
+
+    /**
+     * Lays the conversation out as the model expects it, ending where the assistant's reply begins.
+     * The beginning-of-sequence token is added by the tokenizer and is not part of the result. The
+     * template's markup is kept apart from the text of the messages, so that the tokenizer only
+     * recognizes control tokens in the markup.
+     */
+    abstract List<Segment> render(List<Message> messages);
+
+    private static String role(Message message) {
+        return message.getMessageType() == MessageType.ASSISTANT
+                ? "assistant"
+                : message.getMessageType() == MessageType.SYSTEM ? "system" : "user";
+    }
+
+    /**
+     * A part of a rendered conversation, either markup of the template or text of a message.
+     */
+    record Segment(String text, boolean markup) {
+    }
+
+    private static final class Layout {
+
+        private final List<Segment> segments = new ArrayList<>();
+
+        Layout markup(String markup) {
+            segments.add(new Segment(markup, true));
+            return this;
+        }
+
+        Layout text(String text) {
+            if (text != null && !text.isEmpty()) {
+                segments.add(new Segment(text, false));
+            }
+            return this;
+        }
+
+        List<Segment> segments() {
+            return segments;
+        }
+    }
+}
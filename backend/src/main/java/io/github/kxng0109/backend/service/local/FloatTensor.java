@@ -0,0 +1,259 @@
+package io.github.kxng0109.backend.service.local;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+
+/**
+ * The FloatTensor class gives read access to a tensor stored in a memory-mapped model file, in one of
+ * the GGML encodings that are common for small models.
+ * <p>
+ * The hot operation is {@link #dot}, the dot product of a row of a weight matrix with an activation
+ * vector. Quantized encodings implement it block by block, so weights are dequantized on the fly and
+ * never materialized as floats. The loops are written so that the JIT can unroll and auto-vectorize
+ * them.
+ */
+abstract sealed class FloatTensor {
+
+    static final int F32 = 0;
+    static final int F16 = 1;
+    static final int Q4_0 = 2;
+    static final int Q8_0 = 8;
+    static final int BF16 = 30;
+
+    static final String SUPPORTED_TYPES = "F32, F16, BF16, Q8_0 and Q4_0";
+
+    private static final int QUANTIZATION_BLOCK = 32;
+    private static final String[] TYPE_NAMES = {
+            "F32", "F16", "Q4_0", "Q4_1", null, null, "Q5_0", "Q5_1", "Q8_0", "Q8_1", "Q2_K", "Q3_K", "Q4_K",
+            "Q5_K", "Q6_K", "Q8_K", "IQ2_XXS", "IQ2_XS", "IQ3_XXS", "IQ1_S", "IQ4_NL", "IQ3_S", "IQ2_S",
+            "IQ4_XS", "I8", "I16", "I32", "I64", "F64", "IQ1_M", "BF16"
+    };
+
+    static final ValueLayout.OfFloat FLOAT = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    static final ValueLayout.OfShort SHORT = ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    final MemorySegment data;
+    final long size;
+
+    private FloatTensor(MemorySegment data, long size) {
+        this.data = data;
+        this.size = size;
+    }
+
+    static FloatTensor of(String name, int type, MemorySegment file, long offset, long size) {
+        return switch (type) {
+            case F32 -> new F32Tensor(file.asSlice(offset, size * 4), size);
+            case F16 -> new F16Tensor(file.asSlice(offset, size * 2), size);
+            case BF16 -> new BF16Tensor(file.asSlice(offset, size * 2), size);
+            case Q8_0 -> new Q8Tensor(file.asSlice(offset, size / QUANTIZATION_BLOCK * Q8Tensor.BLOCK_BYTES), size);
+            case Q4_0 -> new Q4Tensor(file.asSlice(offset, size / QUANTIZATION_BLOCK * Q4Tensor.BLOCK_BYTES), size);
+            default -> new UnsupportedTensor(name, type);
+        };
+    }
+
+    /**
+     * @param index the element index
+     * @return the element, dequantized
+     */
+    abstract float get(long index);
+
+    /**
+     * Computes the dot product of `length` elements starting at `offset` with the start of `x`.
+     * For a row-major weight matrix, `offset` is the row index times the row length.
+     */
+    abstract float dot(long offset, float[] x, int length);
+
+    /**
+     * Copies `length` elements starting at `offset` into `destination`.
+     */
+    void copyTo(long offset, float[] destination, int length) {
+        for (int i = 0; i < length; i++) {
+            destination[i] = get(offset + i);
+        }
+    }
+
+    float[] toArray() {
+        float[] values = new float[Math.toIntExact(size)];
+        copyTo(0, values, values.length);
+        return values;
+    }
+
+    private static float half(MemorySegment data, long byteOffset) {
+        return Float.float16ToFloat(data.get(SHORT, byteOffset));
+    }
+
+    static final class F32Tensor extends FloatTensor {
+
+        F32Tensor(MemorySegment data, long size) {
+            super(data, size);
+        }
+
+        @Override
+        float get(long index) {
+            return data.getAtIndex(FLOAT, index);
+        }
+
+        @Override
+        float dot(long offset, float[] x, int length) {
+            float sum = 0;
+            for (int i = 0; i < length; i++) {
+                sum += data.getAtIndex(FLOAT, offset + i) * x[i];
+            }
+            return sum;
+        }
+    }
+
+    static final class F16Tensor extends FloatTensor {
+
+        F16Tensor(MemorySegment data, long size) {
+            super(data, size);
+        }
+
+        @Override
+        float get(long index) {
+            return Float.float16ToFloat(data.getAtIndex(SHORT, index));
+        }
+
+        @Override
+        float dot(long offset, float[] x, int length) {
+            float sum = 0;
+            for (int i = 0; i < length; i++) {
+                sum += Float.float16ToFloat(data.getAtIndex(SHORT, offset + i)) * x[i];
+            }
+            return sum;
+        }
+    }
+
+    static final class BF16Tensor extends FloatTensor {
+
+        BF16Tensor(MemorySegment data, long size) {
+            super(data, size);
+        }
+
+        @Override
+        float get(long index) {
+            return Float.intBitsToFloat(data.getAtIndex(SHORT, index) << 16);
+        }
+
+        @Override
+        float dot(long offset, float[] x, int length) {
+            float sum = 0;
+            for (int i = 0; i < length; i++) {
+                sum += Float.intBitsToFloat(data.getAtIndex(SHORT, offset + i) << 16) * x[i];
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * Blocks of 32 weights sharing one float16 scale, each weight stored as a signed byte.
+     */
+    static final class Q8Tensor extends FloatTensor {
+
+        static final int BLOCK_BYTES = 2 + QUANTIZATION_BLOCK;
+
+        Q8Tensor(MemorySegment data, long size) {
+            super(data, size);
+        }
+
+        @Override
+        float get(long index) {
+            long block = (index / QUANTIZATION_BLOCK) * BLOCK_BYTES;
+            byte quant = data.get(ValueLayout.JAVA_BYTE, block + 2 + index % QUANTIZATION_BLOCK);
+            return quant * half(data, block);
+        }
+
+        @Override
+        float dot(long offset, float[] x, int length) {
+            // Rows always start on a block boundary because row lengths are multiples of the block size.
+            float sum = 0;
+            long block = offset / QUANTIZATION_BLOCK * BLOCK_BYTES;
+            for (int j = 0; j < length; j += QUANTIZATION_BLOCK, block += BLOCK_BYTES) {
+                float blockSum = 0;
+                for (int i = 0; i < QUANTIZATION_BLOCK; i++) {
+                    blockSum += data.get(ValueLayout.JAVA_BYTE, block + 2 + i) * x[j + i];
+                }
+                sum += blockSum * half(data, block);
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * Blocks of 32 weights sharing one float16 scale, each weight stored as an unsigned nibble offset
+     * by 8. The low nibbles hold the first half of the block and the high nibbles the second half.
+     */
+    static final class Q4Tensor extends FloatTensor {
+
+        static final int BLOCK_BYTES = 2 + QUANTIZATION_BLOCK / 2;
+
+        Q4Tensor(MemorySegment data, long size) {
+            super(data, size);
+        }
+
+        @Override
+        float get(long index) {
+            long block = (index / QUANTIZATION_BLOCK) * BLOCK_BYTES;
+            int within = (int) (index % QUANTIZATION_BLOCK);
+            byte packed = data.get(ValueLayout.JAVA_BYTE, block + 2 + within % (QUANTIZATION_BLOCK / 2));
+            int quant = within < QUANTIZATION_BLOCK / 2 ? packed & 0x0F : (packed >> 4) & 0x0F;
+            return (quant - 8) * half(data, block);
+        }
+
+        @Override
+        float dot(long offset, float[] x, int length) {
+            float sum = 0;
+            long block = offset / QUANTIZATION_BLOCK * BLOCK_BYTES;
+            for (int j = 0; j < length; j += QUANTIZATION_BLOCK, block += BLOCK_BYTES) {
+                float blockSum = 0;
+                for (int i = 0; i < QUANTIZATION_BLOCK / 2; i++) {
+                    byte packed = data.get(ValueLayout.JAVA_BYTE, block + 2 + i);
+                    blockSum += ((packed & 0x0F) - 8) * x[j + i];
+                    blockSum += (((packed >> 4) & 0x0F) - 8) * x[j + i + QUANTIZATION_BLOCK / 2];
+                }
+                sum += blockSum * half(data, block);
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * Placeholder for tensors in encodings the engine cannot compute with, such as the K-quants. It
+     * fails only when the tensor is looked up, see {@link GgufFile#tensor}, so files whose unused
+     * tensors have exotic types can still be loaded, while a model that needs such a tensor fails
+     * when it is loaded rather than on its first request.
+     */
+    static final class UnsupportedTensor extends FloatTensor {
+
+        private final String name;
+        private final int type;
+
+        UnsupportedTensor(String name, int type) {
+            super(MemorySegment.NULL, 0);
+            this.name = name;
+            this.type = type;
+        }
+
+        @Override
+        float get(long index) {
+            throw unsupported();
+        }
+
+        @Override
+        float dot(long offset, float[] x, int length) {
+            throw unsupported();
+        }
+
+        String message() {
+            String typeName = type >= 0 && type < TYPE_NAMES.length && TYPE_NAMES[type] != null
+                    ? TYPE_NAMES[type] : "type " + type;
+            return "Tensor " + name + " uses the unsupported GGML encoding " + typeName + "; only "
+                    + SUPPORTED_TYPES + " are supported, so re-quantize the model into one of them";
+        }
+
+        private UnsupportedOperationException unsupported() {
+            return new UnsupportedOperationException(message());
+        }
+    }
+}
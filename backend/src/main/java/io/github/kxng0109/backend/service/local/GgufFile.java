@@ -0,0 +1,231 @@
+package io.github.kxng0109.backend.service.local;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The GgufFile class reads a model in the GGUF format (version 2 and 3) as written by llama.cpp.
+ * <p>
+ * The whole file is memory-mapped. The metadata and tensor directory are parsed eagerly, while the
+ * tensor data is only ever accessed through the mapping, so loading a model takes milliseconds and
+ * its weights are paged in by the operating system on first use and shared with the page cache.
+ */
+final class GgufFile implements AutoCloseable {
+
+    private static final int MAGIC = 0x46554747;
+    private static final int DEFAULT_ALIGNMENT = 32;
+
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfShort SHORT = ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfFloat FLOAT = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final Map<String, Object> metadata = new HashMap<>();
+    private final Map<String, FloatTensor> tensors = new HashMap<>();
+    private long position;
+
+    private GgufFile(Arena arena, MemorySegment segment) {
+        this.arena = arena;
+        this.segment = segment;
+    }
+
+    /**
+     * Maps and parses a GGUF file.
+     *
+     * @param path the model file
+     * @return the opened file; closing it unmaps the weights
+     * @throws IOException if the file cannot be mapped or is not a supported GGUF file
+     */
+    static GgufFile open(Path path) throws IOException {
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            GgufFile file = new GgufFile(arena, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena));
+            file.parse(path);
+            return file;
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    private void parse(Path path) throws IOException {
+        if (readInt() != MAGIC) {
+            throw new IOException(path + " is not a GGUF file");
+        }
+        int version = readInt();
+        if (version < 2 || version > 3) {
+            throw new IOException("Unsupported GGUF version " + version + " in " + path);
+        }
+
+        long tensorCount = readLong();
+        long metadataCount = readLong();
+        for (long i = 0; i < metadataCount; i++) {
+            String key = readString();
+            metadata.put(key, readValue(readInt()));
+        }
+
+        Map<String, long[]> shapes = new HashMap<>();
+        Map<String, Integer> types = new HashMap<>();
+        Map<String, Long> offsets = new HashMap<>();
+        for (long i = 0; i < tensorCount; i++) {
+            String name = readString();
+            long[] shape = new long[readInt()];
+            for (int d = 0; d < shape.length; d++) {
+                shape[d] = readLong();
+            }
+            shapes.put(name, shape);
+            types.put(name, readInt());
+            offsets.put(name, readLong());
+        }
+
+        long alignment = getInt("general.alignment", DEFAULT_ALIGNMENT);
+        long dataStart = (position + alignment - 1) / alignment * alignment;
+        for (Map.Entry<String, long[]> entry : shapes.entrySet()) {
+            long elements = 1;
+            for (long dimension : entry.getValue()) {
+                elements *= dimension;
+            }
+            String name = entry.getKey();
+            tensors.put(name, FloatTensor.of(name, types.get(name), segment, dataStart + offsets.get(name), elements));
+        }
+    }
+
+    private Object readValue(int type) {
+        return switch (type) {
+            case 0 -> Byte.toUnsignedInt(segment.get(ValueLayout.JAVA_BYTE, position++));
+            case 1 -> (int) segment.get(ValueLayout.JAVA_BYTE, position++);
+            case 2, 3 -> {
+                short value = segment.get(SHORT, position);
+                position += 2;
+                yield type == 2 ? Short.toUnsignedInt(value) : (int) value;
+            }
+            case 4, 5 -> readInt();
+            case 6 -> {
+                float value = segment.get(FLOAT, position);
+                position += 4;
+                yield value;
+            }
+            case 7 -> segment.get(ValueLayout.JAVA_BYTE, position++) != 0;
+            case 8 -> readString();
+            case 9 -> readArray();
+            case 10, 11 -> readLong();
+            case 12 -> {
+                double value = segment.get(DOUBLE, position);
+                position += 8;
+                yield value;
+            }
+            default -> throw new IllegalStateException("Unknown GGUF metadata type " + type);
+        };
+    }
+
+    private Object readArray() {
+        int type = readInt();
+        int length = Math.toIntExact(readLong());
+        return switch (type) {
+            case 4, 5 -> {
+                int[] values = new int[length];
+                for (int i = 0; i < length; i++) {
+                    values[i] = readInt();
+                }
+                yield values;
+            }
+            case 6 -> {
+                float[] values = new float[length];
+                for (int i = 0; i < length; i++) {
+                    values[i] = segment.get(FLOAT, position);
+                    position += 4;
+                }
+                yield values;
+            }
+            case 8 -> {
+                String[] values = new String[length];
+                for (int i = 0; i < length; i++) {
+                    values[i] = readString();
+                }
+                yield values;
+            }
+            default -> {
+                Object[] values = new Object[length];
+                for (int i = 0; i < length; i++) {
+                    values[i] = readValue(type);
+                }
+                yield values;
+            }
+        };
+    }
+
+    private int readInt() {
+        int value = segment.get(INT, position);
+        position += 4;
+        return value;
+    }
+
+    private long readLong() {
+        long value = segment.get(LONG, position);
+        position += 8;
+        return value;
+    }
+
+    private String readString() {
+        int length = Math.toIntExact(readLong());
+        byte[] bytes = segment.asSlice(position, length).toArray(ValueLayout.JAVA_BYTE);
+        position += length;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    Object get(String key) {
+        return metadata.get(key);
+    }
+
+    String getString(String key) {
+        return (String) metadata.get(key);
+    }
+
+    int getInt(String key, int defaultValue) {
+        Object value = metadata.get(key);
+        return value instanceof Number number ? number.intValue() : defaultValue;
+    }
+
+    float getFloat(String key, float defaultValue) {
+        Object value = metadata.get(key);
+        return value instanceof Number number ? number.floatValue() : defaultValue;
+    }
+
+    /**
+     * @param name the tensor name, e.g. `blk.0.attn_q.weight`
+     * @return the tensor, or null if the file does not contain it
+     * @throws IllegalStateException if the tensor is stored in an encoding the engine cannot compute with
+     */
+    FloatTensor tensor(String name) {
+        FloatTensor tensor = tensors.get(name);
+        if (tensor instanceof FloatTensor.UnsupportedTensor unsupported) {
+            throw new IllegalStateException(unsupported.message());
+        }
+        return tensor;
+    }
+
+    FloatTensor requireTensor(String name) {
+        FloatTensor tensor = tensor(name);
+        if (tensor == null) {
+            throw new IllegalStateException("Model file has no tensor " + name);
+        }
+        return tensor;
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
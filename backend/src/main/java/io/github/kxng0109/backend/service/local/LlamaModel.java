@@ -0,0 +1,256 @@
+package io.github.kxng0109.backend.service.local;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * The LlamaModel class runs the forward pass of a Llama architecture transformer (Llama 2, TinyLlama,
+ * Mistral and similar GGUF models) on the CPU.
+ * <p>
+ * The weights stay in the memory-mapped {@link GgufFile}; only the norm vectors are copied to the
+ * heap. Matrix-vector products, which dominate the runtime, are split by output row across a
+ * dedicated {@link ForkJoinPool}, and attention is split by head. Keys and values of every processed
+ * position are kept in a {@link State}, so each new token only costs one pass over the weights.
+ */
+final class LlamaModel {
+
+    final int dim;
+    final int hiddenDim;
+    final int layers;
+    final int heads;
+    final int kvHeads;
+    final int headSize;
+    final int kvDim;
+    final int vocabularySize;
+    final int contextLength;
+    final float ropeBase;
+    final float epsilon;
+
+    private final FloatTensor tokenEmbedding;
+    private final float[][] attentionNorm;
+    private final FloatTensor[] wq;
+    private final FloatTensor[] wk;
+    private final FloatTensor[] wv;
+    private final FloatTensor[] wo;
+    private final float[][] ffnNorm;
+    private final FloatTensor[] w1;
+    private final FloatTensor[] w2;
+    private final FloatTensor[] w3;
+    private final float[] outputNorm;
+    private final FloatTensor classifier;
+    private final ForkJoinPool pool;
+
+    LlamaModel(GgufFile file, int maxContextLength, ForkJoinPool pool) {
+        String architecture = file.getString("general.architecture");
+        if (!"llama".equals(architecture)) {
+            throw new IllegalStateException("Unsupported model architecture '" + architecture + "'; only llama is supported");
+        }
+
+        this.pool = pool;
+        this.dim = file.getInt("llama.embedding_length", 0);
+        this.hiddenDim = file.getInt("llama.feed_forward_length", 0);
+        this.layers = file.getInt("llama.block_count", 0);
+        this.heads = file.getInt("llama.attention.head_count", 0);
+        this.kvHeads = file.getInt("llama.attention.head_count_kv", heads);
+        this.headSize = dim / heads;
+        this.kvDim = kvHeads * headSize;
+        this.contextLength = maxContextLength > 0
+                ? Math.min(maxContextLength, file.getInt("llama.context_length", maxContextLength))
+                : file.getInt("llama.context_length", 2048);
+        this.ropeBase = file.getFloat("llama.rope.freq_base", 10000f);
+        this.epsilon = file.getFloat("llama.attention.layer_norm_rms_epsilon", 1e-5f);
+
+        this.tokenEmbedding = file.requireTensor("token_embd.weight");
+        this.vocabularySize = Math.toIntExact(tokenEmbedding.size / dim);
+
+        this.attentionNorm = new float[layers][];
+        this.wq = new FloatTensor[layers];
+        this.wk = new FloatTensor[layers];
+        this.wv = new FloatTensor[layers];
+        this.wo = new FloatTensor[layers];
+        this.ffnNorm = new float[layers][];
+        this.w1 = new FloatTensor[layers];
+        this.w2 = new FloatTensor[layers];
+        this.w3 = new FloatTensor[layers];
+        for (int l = 0; l < layers; l++) {
+            String block = "blk." + l + ".";
+            attentionNorm[l] = file.requireTensor(block + "attn_norm.weight").toArray();
+            wq[l] = file.requireTensor(block + "attn_q.weight");
+            wk[l] = file.requireTensor(block + "attn_k.weight");
+            wv[l] = file.requireTensor(block + "attn_v.weight");
+            wo[l] = file.requireTensor(block + "attn_output.weight");
+            ffnNorm[l] = file.requireTensor(block + "ffn_norm.weight").toArray();
+            w1[l] = file.requireTensor(block + "ffn_gate.weight");
+            w2[l] = file.requireTensor(block + "ffn_down.weight");
+            w3[l] = file.requireTensor(block + "ffn_up.weight");
+        }
+        this.outputNorm = file.requireTensor("output_norm.weight").toArray();
+        FloatTensor output = file.tensor("output.weight");
+        this.classifier = output != null ? output : tokenEmbedding;
+    }
+
+    State newState() {
+        return new State(this);
+    }
+
+    /**
+     * Runs the token at position `position` through the model, appending its keys and values to the
+     * state. The logits for the next token are computed into {@link State#logits} only if requested,
+     * which saves the largest matrix product for all but the last prompt token.
+     */
+    void forward(State state, int token, int position, boolean computeLogits) {
+        float[] x = state.x;
+        tokenEmbedding.copyTo((long) token * dim, x, dim);
+
+        for (int l = 0; l < layers; l++) {
+            rmsNorm(state.xb, x, attentionNorm[l]);
+
+            matmul(wq[l], state.xb, state.q, dim, dim);
+            matmul(wk[l], state.xb, state.k, kvDim, dim);
+            matmul(wv[l], state.xb, state.v, kvDim, dim);
+            rotate(state.q, dim, position);
+            rotate(state.k, kvDim, position);
+
+            int cacheOffset = position * kvDim;
+            System.arraycopy(state.k, 0, state.keyCache[l], cacheOffset, kvDim);
+            System.arraycopy(state.v, 0, state.valueCache[l], cacheOffset, kvDim);
+
+            attention(state, l, position);
+
+            matmul(wo[l], state.xb, state.xb2, dim, dim);
+            for (int i = 0; i < dim; i++) {
+                x[i] += state.xb2[i];
+            }
+
+            rmsNorm(state.xb, x, ffnNorm[l]);
+            matmul(w1[l], state.xb, state.hb, hiddenDim, dim);
+            matmul(w3[l], state.xb, state.hb2, hiddenDim, dim);
+            for (int i = 0; i < hiddenDim; i++) {
+                float gate = state.hb[i];
+                state.hb[i] = gate / (1f + (float) Math.exp(-gate)) * state.hb2[i];
+            }
+            matmul(w2[l], state.hb, state.xb, dim, hiddenDim);
+            for (int i = 0; i < dim; i++) {
+                x[i] += state.xb[i];
+            }
+        }
+
+        if (computeLogits) {
+            rmsNorm(x, x, outputNorm);
+            matmul(classifier, x, state.logits, vocabularySize, dim);
+        }
+    }
+
+    private void attention(State state, int layer, int position) {
+        int groupSize = heads / kvHeads;
+        float scale = (float) (1.0 / Math.sqrt(headSize));
+        float[] keys = state.keyCache[layer];
+        float[] values = state.valueCache[layer];
+
+        parallel(heads, h -> {
+            int queryOffset = h * headSize;
+            int kvOffset = (h / groupSize) * headSize;
+            float[] scores = state.attention[h];
+
+            float max = Float.NEGATIVE_INFINITY;
+            for (int t = 0; t <= position; t++) {
+                int keyOffset = t * kvDim + kvOffset;
+                float score = 0;
+                for (int i = 0; i < headSize; i++) {
+                    score += state.q[queryOffset + i] * keys[keyOffset + i];
+                }
+                score *= scale;
+                scores[t] = score;
+                max = Math.max(max, score);
+            }
+
+            float sum = 0;
+            for (int t = 0; t <= position; t++) {
+                scores[t] = (float) Math.exp(scores[t] - max);
+                sum += scores[t];
+            }
+
+            for (int i = 0; i < headSize; i++) {
+                state.xb[queryOffset + i] = 0;
+            }
+            for (int t = 0; t <= position; t++) {
+                float weight = scores[t] / sum;
+                int valueOffset = t * kvDim + kvOffset;
+                for (int i = 0; i < headSize; i++) {
+                    state.xb[queryOffset + i] += weight * values[valueOffset + i];
+                }
+            }
+        });
+    }
+
+    /**
+     * Applies rotary position embeddings to consecutive pairs, the layout used by GGUF Llama files.
+     */
+    private void rotate(float[] vector, int length, int position) {
+        for (int i = 0; i < length; i += 2) {
+            int headDimension = i % headSize;
+            double frequency = 1.0 / Math.pow(ropeBase, headDimension / (double) headSize);
+            double angle = position * frequency;
+            float cos = (float) Math.cos(angle);
+            float sin = (float) Math.sin(angle);
+            float v0 = vector[i];
+            float v1 = vector[i + 1];
+            vector[i] = v0 * cos - v1 * sin;
+            vector[i + 1] = v0 * sin + v1 * cos;
+        }
+    }
+
+    private void rmsNorm(float[] out, float[] x, float[] weight) {
+        float sum = 0;
+        for (int i = 0; i < dim; i++) {
+            sum += x[i] * x[i];
+        }
+        float scale = (float) (1.0 / Math.sqrt(sum / dim + epsilon));
+        for (int i = 0; i < dim; i++) {
+            out[i] = weight[i] * x[i] * scale;
+        }
+    }
+
+    private void matmul(FloatTensor weights, float[] x, float[] out, int rows, int columns) {
+        parallel(rows, row -> out[row] = weights.dot((long) row * columns, x, columns));
+    }
+
+    private void parallel(int count, IntConsumer task) {
+        pool.submit(() -> IntStream.range(0, count).parallel().forEach(task)).join();
+    }
+
+    /**
+     * The activations and key/value cache of one generation sequence.
+     */
+    static final class State {
+
+        final float[] x;
+        final float[] xb;
+        final float[] xb2;
+        final float[] hb;
+        final float[] hb2;
+        final float[] q;
+        final float[] k;
+        final float[] v;
+        final float[][] attention;
+        final float[] logits;
+        final float[][] keyCache;
+        final float[][] valueCache;
+
+        private State(LlamaModel model) {
+            this.x = new float[model.dim];
+            this.xb = new float[model.dim];
+            this.xb2 = new float[model.dim];
+            this.hb = new float[model.hiddenDim];
+            this.hb2 = new float[model.hiddenDim];
+            this.q = new float[model.dim];
+            this.k = new float[model.kvDim];
+            this.v = new float[model.kvDim];
+            this.attention = new float[model.heads][model.contextLength];
+            this.logits = new float[model.vocabularySize];
+            this.keyCache = new float[model.layers][model.contextLength * model.kvDim];
+            this.valueCache = new float[model.layers][model.contextLength * model.kvDim];
+        }
+    }
+}
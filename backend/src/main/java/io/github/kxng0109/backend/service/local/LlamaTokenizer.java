@@ -0,0 +1,232 @@
+package io.github.kxng0109.backend.service.local;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * The LlamaTokenizer class implements the SentencePiece-style tokenizer of Llama family models, read
+ * from the `tokenizer.ggml.*` metadata of a GGUF file.
+ * <p>
+ * Text is split into characters (with spaces written as `▁`), characters missing from the vocabulary
+ * fall back to their UTF-8 bytes, and adjacent pieces are then merged greedily, always merging the
+ * pair whose result has the highest score. The candidate pairs are kept in a priority queue, so
+ * encoding takes O(n log n) for a text of n characters.
+ * <p>
+ * Control tokens such as `</s>` are only mapped to their ids where they appear in the markup of the
+ * chat template. The same strings in message text are spelled out like any other text, so a prompt
+ * cannot end a turn or inject one.
+ */
+final class LlamaTokenizer {
+
+    private static final String SPACE = "▁";
+    private static final int CONTROL_TOKEN = 3;
+
+    private final String[] tokens;
+    private final float[] scores;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final Set<String> controlTokens = new HashSet<>();
+    private final int[] byteTokens = new int[256];
+    private final int bos;
+    private final int eos;
+
+    LlamaTokenizer(String[] tokens, float[] scores, int[] types, int bos, int eos) {
+        this.tokens = tokens;
+        this.scores = scores;
+        this.bos = bos;
+        this.eos = eos;
+        for (int id = 0; id < tokens.length; id++) {
+            ids.putIfAbsent(tokens[id], id);
+            if (types != null && types[id] == CONTROL_TOKEN && !tokens[id].isEmpty()) {
+                controlTokens.add(tokens[id]);
+            }
+        }
+        for (int b = 0; b < 256; b++) {
+            byteTokens[b] = ids.getOrDefault(String.format("<0x%02X>", b), -1);
+        }
+    }
+
+    static LlamaTokenizer from(GgufFile file) {
+        String model = file.getString("tokenizer.ggml.model");
+        if (!"llama".equals(model)) {
+            throw new IllegalStateException("Unsupported tokenizer '" + model + "'; only SentencePiece (llama) vocabularies are supported");
+        }
+        return new LlamaTokenizer(
+                (String[]) file.get("tokenizer.ggml.tokens"),
+                (float[]) file.get("tokenizer.ggml.scores"),
+                (int[]) file.get("tokenizer.ggml.token_type"),
+                file.getInt("tokenizer.ggml.bos_token_id", 1),
+                file.getInt("tokenizer.ggml.eos_token_id", 2)
+        );
+    }
+
+    int vocabularySize() {
+        return tokens.length;
+    }
+
+    int eos() {
+        return eos;
+    }
+
+    /**
+     * Encodes plain text into token ids, starting with the beginning-of-sequence token. Control
+     * tokens in the text are spelled out.
+     */
+    List<Integer> encode(String text) {
+        return encode(List.of(new ChatFormat.Segment(text, false)));
+    }
+
+    /**
+     * Encodes a conversation laid out by a {@link ChatFormat} into token ids, starting with the
+     * beginning-of-sequence token. Control tokens are only recognized in the template's markup.
+     */
+    List<Integer> encode(List<ChatFormat.Segment> segments) {
+        List<Integer> result = new ArrayList<>();
+        result.add(bos);
+
+        // Text between control tokens is encoded in one piece, wherever it comes from, so that
+        // pieces can be merged across the boundaries of markup and messages.
+        StringBuilder text = new StringBuilder();
+        boolean first = true;
+        for (ChatFormat.Segment segment : segments) {
+            if (!segment.markup()) {
+                text.append(segment.text());
+                continue;
+            }
+
+            String markup = segment.text();
+            int start = 0;
+            while (start < markup.length()) {
+                int controlStart = markup.length();
+                String control = null;
+                for (String candidate : controlTokens) {
+                    int index = markup.indexOf(candidate, start);
+                    if (index >= 0 && index < controlStart) {
+                        controlStart = index;
+                        control = candidate;
+                    }
+                }
+
+                text.append(markup, start, controlStart);
+                if (control == null) {
+                    break;
+                }
+                if (!text.isEmpty()) {
+                    encodeText(text.toString(), first, result);
+                    text.setLength(0);
+                    first = false;
+                }
+                result.add(ids.get(control));
+                start = controlStart + control.length();
+            }
+        }
+        if (!text.isEmpty()) {
+            encodeText(text.toString(), first, result);
+        }
+        return result;
+    }
+
+    private void encodeText(String text, boolean prefixSpace, List<Integer> result) {
+        String normalized = (prefixSpace ? SPACE : "") + text.replace(" ", SPACE);
+
+        List<Integer> pieces = new ArrayList<>();
+        normalized.codePoints().forEach(codePoint -> {
+            String character = new String(Character.toChars(codePoint));
+            Integer id = ids.get(character);
+            if (id != null) {
+                pieces.add(id);
+                return;
+            }
+            for (byte b : character.getBytes(StandardCharsets.UTF_8)) {
+                int byteToken = byteTokens[b & 0xFF];
+                if (byteToken >= 0) {
+                    pieces.add(byteToken);
+                }
+            }
+        });
+
+        // The pieces form a linked list over their original positions. Merging replaces the left
+        // piece and unlinks the right one, so queued pairs that involve either of them become stale
+        // and are skipped when they come up.
+        int count = pieces.size();
+        int[] symbols = new int[count];
+        int[] next = new int[count];
+        int[] previous = new int[count];
+        for (int i = 0; i < count; i++) {
+            symbols[i] = pieces.get(i);
+            next[i] = i + 1 < count ? i + 1 : -1;
+            previous[i] = i - 1;
+        }
+
+        PriorityQueue<Merge> merges = new PriorityQueue<>();
+        for (int i = 0; i + 1 < count; i++) {
+            offerMerge(merges, symbols, i, i + 1);
+        }
+        while (!merges.isEmpty()) {
+            Merge merge = merges.poll();
+            if (next[merge.left()] != merge.right()
+                    || symbols[merge.left()] != merge.leftToken()
+                    || symbols[merge.right()] != merge.rightToken()) {
+                continue;
+            }
+
+            symbols[merge.left()] = merge.token();
+            symbols[merge.right()] = -1;
+            next[merge.left()] = next[merge.right()];
+            if (next[merge.left()] >= 0) {
+                previous[next[merge.left()]] = merge.left();
+                offerMerge(merges, symbols, merge.left(), next[merge.left()]);
+            }
+            if (previous[merge.left()] >= 0) {
+                offerMerge(merges, symbols, previous[merge.left()], merge.left());
+            }
+        }
+
+        for (int i = count > 0 ? 0 : -1; i >= 0; i = next[i]) {
+            result.add(symbols[i]);
+        }
+    }
+
+    private void offerMerge(PriorityQueue<Merge> merges, int[] symbols, int left, int right) {
+        Integer merged = ids.get(tokens[symbols[left]] + tokens[symbols[right]]);
+        if (merged != null) {
+            merges.add(new Merge(left, right, symbols[left], symbols[right], merged, scores[merged]));
+        }
+    }
+
+    /**
+     * Appends the bytes of a generated token to `output`. Byte tokens contribute a single raw byte,
+     * so a character split over several tokens only becomes decodable once all of them are appended.
+     */
+    void decode(int token, ByteArrayOutputStream output) {
+        String piece = tokens[token];
+        if (piece.length() == 6 && piece.startsWith("<0x") && piece.endsWith(">")) {
+            output.write(Integer.parseInt(piece.substring(3, 5), 16));
+            return;
+        }
+        if (controlTokens.contains(piece)) {
+            return;
+        }
+        output.writeBytes(piece.replace(SPACE, " ").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A candidate merge of two adjacent pieces. The highest score comes first, and among equal scores
+     * the leftmost pair.
+     */
+    private record Merge(int left, int right, int leftToken, int rightToken, int token, float score)
+            implements Comparable<Merge> {
+
+        @Override
+        public int compareTo(Merge other) {
+            int byScore = Float.compare(other.score, score);
+            return byScore != 0 ? byScore : Integer.compare(left, other.left);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package io.github.kxng0109.backend.service.local;
+
+import io.github.kxng0109.backend.config.LocalModelProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * The LocalChatModel class is a Spring AI {@link ChatModel} that runs a small GGUF model inside the
+ * backend process, so models can be compared on machines without network access or an Ollama
+ * installation.
+ * <p>
+ * Generation is serialized: the model keeps a single key/value cache and all cores are already
+ * busy with one sequence. Before a prompt is processed, it is compared with the tokens whose keys and
+ * values are still in the cache, and only the part after the common prefix is run through the model.
+ * Since every request starts with the same system message, this usually skips most of the prompt.
+ * <p>
+ * Tokens are streamed as they are generated through {@link #stream(Prompt)}, and the generation stops
+ * as soon as the subscriber cancels the stream, releasing the model. The decoding speed is
+ * reported under {@value #TOKENS_PER_SECOND} and the time until the first token under
+ * {@value #TIME_TO_FIRST_TOKEN} in the response metadata.
+ */
+@Slf4j
+public class LocalChatModel implements ChatModel, AutoCloseable {
+
+    /**
+     * The response metadata key of the generation speed in tokens per second.
+     */
+    public static final String TOKENS_PER_SECOND = "tokens-per-second";
+
+    /**
+     * The response metadata key of the time in milliseconds until the first token was generated,
+     * including waiting for the model and processing the prompt. Only this model reports it; remote
+     * providers are called without streaming and have no equivalent.
+     */
+    public static final String TIME_TO_FIRST_TOKEN = "time-to-first-token";
+
+    private final LocalModelProperties properties;
+    private final GgufFile file;
+    private final ForkJoinPool pool;
+    private final LlamaModel model;
+    private final LlamaTokenizer tokenizer;
+    private final String modelName;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LlamaModel.State state;
+    private final int[] cachedTokens;
+    private int cachedLength;
+
+    public LocalChatModel(LocalModelProperties properties) throws IOException {
+        this.properties = properties;
+        this.file = GgufFile.open(properties.modelPath());
+        try {
+            int threads = properties.threads() > 0 ? properties.threads() : Runtime.getRuntime().availableProcessors();
+            this.pool = new ForkJoinPool(threads);
+            this.model = new LlamaModel(file, properties.contextLength(), pool);
+            this.tokenizer = LlamaTokenizer.from(file);
+            this.state = model.newState();
+            this.cachedTokens = new int[model.contextLength];
+        } catch (RuntimeException e) {
+            file.close();
+            throw e;
+        }
+
+        String name = file.getString("general.name");
+        this.modelName = name != null ? name : properties.modelPath().getFileName().toString();
+        log.info("Loaded local model {} ({} layers, dim {}, context {}, {} threads)",
+                 modelName, model.layers, model.dim, model.contextLength, pool.getParallelism());
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        StringBuilder text = new StringBuilder();
+        GenerationResult result = generate(prompt, text::append, () -> false);
+        return response(text.toString(), result);
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return Flux.<ChatResponse>create(sink -> {
+            try {
+                GenerationResult result = generate(
+                        prompt,
+                        delta -> sink.next(new ChatResponse(List.of(new Generation(new AssistantMessage(delta))))),
+                        sink::isCancelled
+                );
+                sink.next(response("", result));
+                sink.complete();
+            } catch (RuntimeException e) {
+                if (!sink.isCancelled()) {
+                    sink.error(e);
+                }
+            }
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private GenerationResult generate(Prompt prompt, Consumer<String> onText, BooleanSupplier cancelled) {
+        long startTime = System.nanoTime();
+        ChatOptions options = prompt.getOptions();
+        double temperature = options != null && options.getTemperature() != null
+                ? options.getTemperature() : properties.temperature();
+        double topP = options != null && options.getTopP() != null ? options.getTopP() : properties.topP();
+        int maxTokens = options != null && options.getMaxTokens() != null
+                ? options.getMaxTokens() : properties.maxTokens();
+
+        List<Integer> promptTokens = tokenizer.encode(properties.format().render(prompt.getInstructions()));
+        if (promptTokens.size() >= model.contextLength) {
+            throw new IllegalArgumentException("The prompt has " + promptTokens.size()
+                                                       + " tokens but the local context window only holds " + model.contextLength);
+        }
+
+        lock.lock();
+        try {
+            // Reuse the cached keys and values of the common prefix, but always recompute the last
+            // prompt token because its logits are needed to sample the first generated token.
+            int reused = 0;
+            int limit = Math.min(cachedLength, promptTokens.size() - 1);
+            while (reused < limit && cachedTokens[reused] == promptTokens.get(reused)) {
+                reused++;
+            }
+            cachedLength = reused;
+
+            for (int position = reused; position < promptTokens.size(); position++) {
+                checkCancelled(cancelled);
+                int token = promptTokens.get(position);
+                model.forward(state, token, position, position == promptTokens.size() - 1);
+                cachedTokens[position] = token;
+                cachedLength = position + 1;
+            }
+
+            long decodeStart = System.nanoTime();
+            ByteArrayOutputStream pending = new ByteArrayOutputStream();
+            boolean started = false;
+            int generated = 0;
+            String finishReason = "LENGTH";
+            int position = promptTokens.size();
+            while (generated < maxTokens && position < model.contextLength) {
+                checkCancelled(cancelled);
+                int next = sample(state.logits, temperature, topP);
+                if (next == tokenizer.eos()) {
+                    finishReason = "STOP";
+                    break;
+                }
+                generated++;
+
+                tokenizer.decode(next, pending);
+                String delta = takeComplete(pending);
+                if (!started && !delta.isEmpty()) {
+                    // SentencePiece encodes the leading space of the first word, which is not part of the reply.
+                    delta = delta.startsWith(" ") ? delta.substring(1) : delta;
+                    started = true;
+                }
+                if (!delta.isEmpty()) {
+                    onText.accept(delta);
+                }
+
+                model.forward(state, next, position, true);
+                cachedTokens[position] = next;
+                cachedLength = ++position;
+            }
+            if (pending.size() > 0) {
+                onText.accept(pending.toString(StandardCharsets.UTF_8));
+            }
+
+            double seconds = (System.nanoTime() - decodeStart) / 1e9;
+            double tokensPerSecond = seconds > 0 ? generated / seconds : 0;
+            log.debug("Local generation: {} prompt tokens ({} reused), {} generated at {} tokens/s",
+                      promptTokens.size(), reused, generated, String.format("%.1f", tokensPerSecond));
+            return new GenerationResult(promptTokens.size(), generated, finishReason, tokensPerSecond,
+                                        (decodeStart - startTime) / 1_000_000);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the generation once the calling thread is interrupted, which happens when the comparison it
+     * belongs to is cancelled, or once the subscriber of a stream has cancelled it. The cache stays
+     * consistent since it only ever covers computed positions.
+     */
+    private static void checkCancelled(BooleanSupplier cancelled) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Local generation was interrupted");
+        }
+        if (cancelled.getAsBoolean()) {
+            throw new CancellationException("Local generation was cancelled by its subscriber");
+        }
+    }
+
+    private int sample(float[] logits, double temperature, double topP) {
+        int vocabularySize = Math.min(logits.length, tokenizer.vocabularySize());
+        if (temperature <= 0) {
+            int best = 0;
+            for (int i = 1; i < vocabularySize; i++) {
+                if (logits[i] > logits[best]) {
+                    best = i;
+                }
+            }
+            return best;
+        }
+
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < vocabularySize; i++) {
+            max = Math.max(max, logits[i]);
+        }
+        double[] probabilities = new double[vocabularySize];
+        double sum = 0;
+        for (int i = 0; i < vocabularySize; i++) {
+            probabilities[i] = Math.exp((logits[i] - max) / temperature);
+            sum += probabilities[i];
+        }
+
+        // Nucleus sampling: draw from the smallest set of most likely tokens whose mass reaches topP.
+        // Tokens below the cutoff can never be part of that set and are not sorted at all.
+        double cutoff = (1 - topP) / Math.max(1, vocabularySize - 1) * sum;
+        Integer[] candidates = new Integer[vocabularySize];
+        int count = 0;
+        for (int i = 0; i < vocabularySize; i++) {
+            if (probabilities[i] >= cutoff) {
+                candidates[count++] = i;
+            }
+        }
+        Arrays.sort(candidates, 0, count, (a, b) -> Double.compare(probabilities[b], probabilities[a]));
+
+        double mass = 0;
+        int last = count - 1;
+        for (int i = 0; i < count; i++) {
+            mass += probabilities[candidates[i]];
+            if (mass >= topP * sum) {
+                last = i;
+                break;
+            }
+        }
+
+        double target = ThreadLocalRandom.current().nextDouble() * Math.min(mass, sum);
+        double cumulative = 0;
+        for (int i = 0; i <= last; i++) {
+            cumulative += probabilities[candidates[i]];
+            if (cumulative >= target) {
+                return candidates[i];
+            }
+        }
+        return candidates[last];
+    }
+
+    /**
+     * Removes and decodes the longest prefix of `pending` that ends on a UTF-8 character boundary.
+     */
+    private static String takeComplete(ByteArrayOutputStream pending) {
+        byte[] bytes = pending.toByteArray();
+        int complete = bytes.length;
+        for (int i = bytes.length - 1; i >= Math.max(0, bytes.length - 4); i--) {
+            int b = bytes[i] & 0xFF;
+            if ((b & 0xC0) != 0x80) {
+                int needed = b < 0x80 ? 1 : b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : 2;
+                complete = i + needed <= bytes.length ? bytes.length : i;
+                break;
+            }
+        }
+
+        pending.reset();
+        pending.write(bytes, complete, bytes.length - complete);
+        return new String(bytes, 0, complete, StandardCharsets.UTF_8);
+    }
+
+    private ChatResponse response(String text, GenerationResult result) {
+        Generation generation = new Generation(
+                new AssistantMessage(text),
+                ChatGenerationMetadata.builder().finishReason(result.finishReason()).build()
+        );
+        ChatResponseMetadata metadata = ChatResponseMetadata.builder()
+                                                            .model(modelName)
+                                                            .usage(new DefaultUsage(result.promptTokens(), result.generationTokens()))
+                                                            .keyValue(TOKENS_PER_SECOND, result.tokensPerSecond())
+                                                            .keyValue(TIME_TO_FIRST_TOKEN, result.timeToFirstToken())
+                                                            .build();
+        return new ChatResponse(List.of(generation), metadata);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+        file.close();
+    }
+
+    private record GenerationResult(int promptTokens, int generationTokens, String finishReason,
+                                    double tokensPerSecond, long timeToFirstToken) {
+    }
+}
@@ -0,0 +1,109 @@
+package io.github.kxng0109.backend.service.prompt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A named system prompt that has been parsed once into literal text and `{variable}` placeholders.
+ * <p>
+ * Templates without placeholders are fully rendered at load time, so every request receives the very
+ * same string. This keeps the system prefix byte-identical between requests, which is what provider
+ * side prompt caches key on. Templates with placeholders are rendered by concatenating the
+ * precompiled segments, without re-parsing the template text.
+ * <p>
+ * Placeholder names may contain letters, digits, underscores, dots and dashes. Any other use of
+ * braces is treated as literal text.
+ */
+public final class PromptTemplate {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{([A-Za-z0-9_.-]+)}");
+
+    private final String name;
+    private final List<Segment> segments;
+    private final String staticText;
+    private final int literalLength;
+
+    private PromptTemplate(String name, List<Segment> segments) {
+        this.name = name;
+        this.segments = segments;
+        this.literalLength = segments.stream()
+                                     .filter(segment -> !segment.variable())
+                                     .mapToInt(segment -> segment.text().length())
+                                     .sum();
+        this.staticText = segments.stream().anyMatch(Segment::variable) ? null : render(Map.of());
+    }
+
+    /**
+     * Parses the given template text into a precompiled template.
+     *
+     * @param name the name the template is registered under
+     * @param text the template text, optionally containing `{variable}` placeholders
+     * @return the compiled template
+     */
+    public static PromptTemplate compile(String name, String text) {
+        List<Segment> segments = new ArrayList<>();
+        Matcher matcher = PLACEHOLDER.matcher(text);
+        int position = 0;
+        while (matcher.find()) {
+            if (matcher.start() > position) {
+                segments.add(new Segment(text.substring(position, matcher.start()), false));
+            }
+            segments.add(new Segment(matcher.group(1), true));
+            position = matcher.end();
+        }
+        if (position < text.length()) {
+            segments.add(new Segment(text.substring(position), false));
+        }
+        return new PromptTemplate(name, List.copyOf(segments));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Indicates whether this template contains no placeholders and therefore always renders to the
+     * same text.
+     *
+     * @return true if the template has no placeholders
+     */
+    public boolean isStatic() {
+        return staticText != null;
+    }
+
+    /**
+     * Renders the template with the given variables.
+     *
+     * @param variables the values for the template's placeholders; may be null for static templates
+     * @return the rendered system prompt
+     * @throws IllegalArgumentException if a placeholder has no value in the given variables
+     */
+    public String render(Map<String, String> variables) {
+        if (staticText != null) {
+            return staticText;
+        }
+
+        StringBuilder builder = new StringBuilder(literalLength + 64);
+        for (Segment segment : segments) {
+            if (!segment.variable()) {
+                builder.append(segment.text());
+                continue;
+            }
+
+            String value = variables == null ? null : variables.get(segment.text());
+            if (value == null) {
+                throw new IllegalArgumentException(
+                        "Missing value for variable '" + segment.text() + "' of system prompt '" + name + "'"
+                );
+            }
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+
+    private record Segment(String text, boolean variable) {
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.kxng0109.backend.service.prompt;
+
+import io.github.kxng0109.backend.config.PromptProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The PromptTemplateRegistry class holds every named system prompt available to the application.
+ * <p>
+ * Templates are loaded and compiled once at startup from the location configured in
+ * {@link PromptProperties}, so handling a request only involves a map lookup and, for templates with
+ * placeholders, a single concatenation. The system prompt for a model is selected in this order:
+ * the name given in the request, the per-model default from `llm.prompts.models`, and finally the
+ * global default prompt.
+ */
+@Service
+@Slf4j
+public class PromptTemplateRegistry {
+
+    private final Map<String, PromptTemplate> templates;
+    private final PromptProperties properties;
+
+    public PromptTemplateRegistry(PromptProperties properties, ResourcePatternResolver resourcePatternResolver) {
+        this.properties = properties;
+        this.templates = loadTemplates(properties.location(), resourcePatternResolver);
+
+        if (!templates.containsKey(properties.defaultPrompt())) {
+            throw new IllegalStateException(
+                    "Default system prompt '" + properties.defaultPrompt() + "' was not found in " + properties.location()
+            );
+        }
+        properties.models().forEach((llm, name) -> validate(name));
+        log.info("Loaded {} system prompt(s): {}", templates.size(), templates.keySet());
+    }
+
+    /**
+     * Retrieves the names of all registered system prompts.
+     *
+     * @return a set of the registered prompt names
+     */
+    public Set<String> getPromptNames() {
+        return templates.keySet();
+    }
+
+    /**
+     * Verifies that the given prompt name refers to a registered template.
+     *
+     * @param name the prompt name to check; null is accepted and means "use the default"
+     * @throws IllegalArgumentException if no template is registered under the given name
+     */
+    public void validate(String name) {
+        if (name != null && !templates.containsKey(name)) {
+            throw new IllegalArgumentException("Unknown system prompt: " + name);
+        }
+    }
+
+    /**
+     * Renders the system prompt to send to the given model.
+     *
+     * @param llm           the identifier of the language model the prompt is for
+     * @param requestedName the prompt name selected in the request, or null to use the model's default
+     * @param variables     the values for the template's placeholders, may be null
+     * @return the rendered system prompt
+     * @throws IllegalArgumentException if the requested prompt does not exist or a placeholder has no value
+     */
+    public String render(String llm, String requestedName, Map<String, String> variables) {
+        String name = requestedName != null
+                ? requestedName
+                : properties.models().getOrDefault(llm, properties.defaultPrompt());
+        validate(name);
+        return templates.get(name).render(variables);
+    }
+
+    /**
+     * Renders the global default system prompt.
+     *
+     * @return the rendered default system prompt
+     */
+    public String renderDefault() {
+        return templates.get(properties.defaultPrompt()).render(Map.of());
+    }
+
+    private Map<String, PromptTemplate> loadTemplates(String location, ResourcePatternResolver resolver) {
+        Map<String, PromptTemplate> loaded = new HashMap<>();
+        try {
+            for (Resource resource : resolver.getResources(location)) {
+                String filename = resource.getFilename();
+                if (filename == null || !resource.isReadable()) {
+                    continue;
+                }
+
+                int extension = filename.lastIndexOf('.');
+                String name = extension > 0 ? filename.substring(0, extension) : filename;
+                String text = resource.getContentAsString(StandardCharsets.UTF_8).strip();
+                loaded.put(name, PromptTemplate.compile(name, text));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load system prompts from " + location, e);
+        }
+        return Map.copyOf(loaded);
+    }
+}
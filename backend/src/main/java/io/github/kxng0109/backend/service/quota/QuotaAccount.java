@@ -0,0 +1,56 @@
+package io.github.kxng0109.backend.service.quota;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The requests and tokens one API key has used with one model in the current quota window.
+ * <p>
+ * The counters are {@link LongAdder}s, which spread concurrent updates over several cells instead of
+ * contending on a single value, so recording usage never blocks. When a new window starts, the first
+ * thread to notice replaces the window with a compare-and-set; counts that race with the switch may
+ * land in the old window, which only makes the limit slightly lenient at window boundaries.
+ */
+final class QuotaAccount {
+
+    private final AtomicReference<Window> current;
+
+    QuotaAccount(long windowIndex) {
+        this.current = new AtomicReference<>(new Window(windowIndex));
+    }
+
+    /**
+     * Returns the window with the given index, starting it if the current window is older.
+     *
+     * @param windowIndex the index of the window, i.e. the epoch time divided by the window length
+     * @return the window to count in
+     */
+    Window window(long windowIndex) {
+        Window window = current.get();
+        while (window.index < windowIndex) {
+            Window next = new Window(windowIndex);
+            if (current.compareAndSet(window, next)) {
+                return next;
+            }
+            window = current.get();
+        }
+        return window;
+    }
+
+    /**
+     * Returns whether nothing was counted since the window before the given one.
+     */
+    boolean isIdle(long windowIndex) {
+        return current.get().index < windowIndex - 1;
+    }
+
+    static final class Window {
+        final long index;
+        final LongAdder requests = new LongAdder();
+        final LongAdder tokens = new LongAdder();
+
+        private Window(long index) {
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package io.github.kxng0109.backend.service.quota;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The quota of the client a comparison runs for, handed out by {@link QuotaManager} once the
+ * comparison's requests have been counted against it.
+ * <p>
+ * The lease is bound to the thread handling the comparison with {@link #open()}, like an observation
+ * scope, so that the model calls can reserve and reconcile tokens without every caller having to
+ * pass the client along. Code that fans out to other threads reads {@link #current()} before it does
+ * so and passes the lease on explicitly.
+ * <p>
+ * If the comparison is rejected before any model is called, for example by admission control, the
+ * counted requests are given back with {@link #refund()}, so that clients do not use up their quota on
+ * comparisons that never ran.
+ */
+public final class QuotaLease {
+
+    /**
+     * The lease of callers without a quota, for which nothing is counted.
+     */
+    public static final QuotaLease UNLIMITED = new QuotaLease(null, null, List.of());
+
+    private static final ThreadLocal<QuotaLease> CURRENT = new ThreadLocal<>();
+
+    private final QuotaManager quotaManager;
+    private final String apiKey;
+    private final List<QuotaAccount.Window> windows;
+    private final AtomicBoolean refunded = new AtomicBoolean();
+
+    QuotaLease(QuotaManager quotaManager, String apiKey, List<QuotaAccount.Window> windows) {
+        this.quotaManager = quotaManager;
+        this.apiKey = apiKey;
+        this.windows = windows;
+    }
+
+    /**
+     * Returns the lease bound to the current thread.
+     *
+     * @return the current lease, or {@link #UNLIMITED} if none is bound
+     */
+    public static QuotaLease current() {
+        QuotaLease lease = CURRENT.get();
+        return lease != null ? lease : UNLIMITED;
+    }
+
+    /**
+     * Binds this lease to the current thread until the returned scope is closed.
+     *
+     * @return the scope restoring the previously bound lease when closed
+     */
+    public Scope open() {
+        QuotaLease previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    /**
+     * Reserves the estimated tokens of a model call in the client's token quota for that model.
+     *
+     * @param llm    the identifier of the language model about to be called
+     * @param tokens the locally estimated prompt tokens
+     * @return the reservation to settle or release once the call has completed
+     * @throws io.github.kxng0109.backend.error.QuotaExceededException if the tokens do not fit into
+     *                                                                  what is left of the quota
+     */
+    public TokenReservation reserveTokens(String llm, int tokens) {
+        if (quotaManager == null) {
+            return TokenReservation.NONE;
+        }
+        return quotaManager.reserveTokens(apiKey, llm, tokens);
+    }
+
+    /**
+     * Gives back the requests that were counted for the comparison. Only the first call has an effect.
+     * Must only be called if none of the comparison's models was called.
+     */
+    public void refund() {
+        if (refunded.compareAndSet(false, true)) {
+            windows.forEach(window -> window.requests.decrement());
+        }
+    }
+
+    /**
+     * A binding of a lease to a thread.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
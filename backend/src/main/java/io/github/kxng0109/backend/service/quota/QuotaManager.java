@@ -0,0 +1,158 @@
+package io.github.kxng0109.backend.service.quota;
+
+import io.github.kxng0109.backend.config.QuotaProperties;
+import io.github.kxng0109.backend.error.QuotaExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The QuotaManager class enforces per-client quotas, so that one team's batch jobs cannot use up the
+ * provider budget shared by everyone.
+ * <p>
+ * Clients are identified by their `X-API-Key` header. Every API key configured under `llm.quotas.keys`
+ * has its own limits per model on the number of requests and on the number of tokens within a fixed
+ * window. Requests without a key or with a key that is not configured all share the account of
+ * {@link #ANONYMOUS}, so that sending a fresh key with every request cannot bypass the quota.
+ * Quotas are applied in two steps:
+ * - Before a comparison is started, {@link #reserve(String, List)} rejects it if the client has no
+ *   requests or tokens left for any of the requested models, and otherwise counts one request per model.
+ * - Before each model call, the estimated prompt tokens are reserved through the returned
+ *   {@link QuotaLease}, and after the call the reservation is reconciled with the usage the provider
+ *   reported in the response metadata.
+ * <p>
+ * The counters are striped {@link java.util.concurrent.atomic.LongAdder}s and are never locked, so the
+ * accounting does not become a point of contention under load. The price is that the checks are not
+ * atomic with the updates: concurrent requests of the same client may overshoot a limit by at most
+ * their own usage. Quotas are counted per backend instance.
+ * <p>
+ * Rejections are counted by the `llm.quota.rejected` metric, tagged by model and by the exhausted
+ * limit. API keys are never used as tags.
+ */
+@Service
+public class QuotaManager {
+
+    /**
+     * The API key whose account is shared by requests without an `X-API-Key` header or with a key that
+     * is not configured.
+     */
+    public static final String ANONYMOUS = "anonymous";
+
+    private final QuotaProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Clock clock;
+    private final Map<String, QuotaAccount> accounts = new ConcurrentHashMap<>();
+
+    @Autowired
+    public QuotaManager(QuotaProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, Clock.systemUTC());
+    }
+
+    QuotaManager(QuotaProperties properties, MeterRegistry meterRegistry, Clock clock) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+    }
+
+    /**
+     * Checks the client's quota for each of the given models and counts one request against each.
+     *
+     * @param apiKey the API key of the client, or null for anonymous requests
+     * @param llms   the identifiers of the language models the comparison will call
+     * @return the lease to bind to the comparison, or {@link QuotaLease#UNLIMITED} if quotas are disabled
+     * @throws QuotaExceededException if the client has no requests or tokens left for one of the models
+     */
+    public QuotaLease reserve(String apiKey, List<String> llms) {
+        if (!properties.enabled()) {
+            return QuotaLease.UNLIMITED;
+        }
+
+        String key = apiKey != null && properties.keys().containsKey(apiKey) ? apiKey : ANONYMOUS;
+        long windowIndex = windowIndex();
+        List<QuotaAccount.Window> windows = new ArrayList<>();
+        for (String llm : new LinkedHashSet<>(llms)) {
+            QuotaProperties.Limit limit = properties.limit(key, llm);
+            if (limit == null) {
+                continue;
+            }
+
+            QuotaAccount.Window window = account(key, llm).window(windowIndex);
+            if (limit.requests() > 0 && window.requests.sum() >= limit.requests()) {
+                throw reject(llm, "requests", "Request quota of " + limit.requests() + " per "
+                        + properties.window() + " exhausted for " + llm);
+            }
+            if (limit.tokens() > 0 && window.tokens.sum() >= limit.tokens()) {
+                throw reject(llm, "tokens", "Token quota of " + limit.tokens() + " per "
+                        + properties.window() + " exhausted for " + llm);
+            }
+            windows.add(window);
+        }
+
+        windows.forEach(window -> window.requests.increment());
+        return new QuotaLease(this, key, List.copyOf(windows));
+    }
+
+    /**
+     * Reserves tokens of a single model call in the client's token quota for that model.
+     *
+     * @param apiKey the API key of the client
+     * @param llm    the identifier of the language model about to be called
+     * @param tokens the locally estimated prompt tokens
+     * @return the reservation to settle or release once the call has completed
+     * @throws QuotaExceededException if the tokens do not fit into what is left of the quota
+     */
+    TokenReservation reserveTokens(String apiKey, String llm, int tokens) {
+        QuotaProperties.Limit limit = properties.limit(apiKey, llm);
+        if (limit == null || limit.tokens() <= 0) {
+            return TokenReservation.NONE;
+        }
+
+        QuotaAccount.Window window = account(apiKey, llm).window(windowIndex());
+        long used = window.tokens.sum();
+        if (used + tokens > limit.tokens()) {
+            throw reject(llm, "tokens", "Prompt of " + tokens + " tokens exceeds the remaining token quota of "
+                    + Math.max(limit.tokens() - used, 0) + " for " + llm);
+        }
+        window.tokens.add(tokens);
+        return new TokenReservation(window, tokens);
+    }
+
+    /**
+     * Removes the counters of clients that have not used a model for a whole window, so that the
+     * accounts of configured keys and models that are no longer used do not accumulate.
+     */
+    @Scheduled(fixedDelayString = "${llm.quotas.window:PT1M}")
+    public void sweep() {
+        long windowIndex = windowIndex();
+        accounts.values().removeIf(account -> account.isIdle(windowIndex));
+    }
+
+    private QuotaAccount account(String apiKey, String llm) {
+        return accounts.computeIfAbsent(apiKey + '\0' + llm, key -> new QuotaAccount(windowIndex()));
+    }
+
+    private long windowIndex() {
+        return clock.millis() / properties.window().toMillis();
+    }
+
+    private QuotaExceededException reject(String llm, String limit, String message) {
+        Counter.builder("llm.quota.rejected")
+               .tag("llm", llm)
+               .tag("limit", limit)
+               .register(meterRegistry)
+               .increment();
+
+        long windowMillis = properties.window().toMillis();
+        long remainingMillis = windowMillis - clock.millis() % windowMillis;
+        return new QuotaExceededException(message, Math.max((remainingMillis + 999) / 1000, 1));
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.kxng0109.backend.service.quota;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tokens set aside in a client's quota for a single model call before it is dispatched.
+ * <p>
+ * The reservation holds the locally estimated prompt tokens. Once the provider has reported the
+ * actual usage, {@link #settle(int)} replaces the estimate with it; if the call failed,
+ * {@link #release()} gives the tokens back. The correction is applied to the window the tokens were
+ * reserved in, even if a new window has started since. Only the first of these calls has an effect,
+ * so a reservation can be released unconditionally once the call is over.
+ */
+public final class TokenReservation {
+
+    static final TokenReservation NONE = new TokenReservation(null, 0);
+
+    private final QuotaAccount.Window window;
+    private final int reservedTokens;
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    TokenReservation(QuotaAccount.Window window, int reservedTokens) {
+        this.window = window;
+        this.reservedTokens = reservedTokens;
+    }
+
+    /**
+     * Replaces the reserved estimate with the tokens the provider reported. The estimate is kept if
+     * the provider did not report any usage.
+     *
+     * @param usedTokens the prompt and generation tokens reported by the provider
+     */
+    public void settle(int usedTokens) {
+        if (window != null && completed.compareAndSet(false, true) && usedTokens > 0) {
+            window.tokens.add(usedTokens - reservedTokens);
+        }
+    }
+
+    /**
+     * Gives the reserved tokens back, for calls that did not reach the provider or failed.
+     */
+    public void release() {
+        if (window != null && completed.compareAndSet(false, true)) {
+            window.tokens.add(-reservedTokens);
+        }
+    }
+}
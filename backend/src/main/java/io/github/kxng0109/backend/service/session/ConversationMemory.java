@@ -0,0 +1,187 @@
+package io.github.kxng0109.backend.service.session;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.backend.config.SessionProperties;
+import io.github.kxng0109.backend.service.token.TokenEstimator;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The ConversationMemory class keeps the server-side history of multi-turn comparison sessions, so
+ * that clients only send the newest prompt and each model still sees the whole conversation.
+ * <p>
+ * Every session holds one history branch per model. Branches are bounded by `llm.sessions.max-history-tokens`
+ * (counted with the model's own tokenizer) and `llm.sessions.max-turns`; the oldest turns are dropped
+ * first. Memory use is bounded as well: sessions idle for longer than `llm.sessions.idle-timeout`, or
+ * the least recently used ones once more than `llm.sessions.max-active-sessions` are active, are written
+ * to `llm.sessions.directory` and transparently read back on their next use. Sessions unused for longer
+ * than `llm.sessions.ttl` are deleted. Active sessions are also written to disk on shutdown, so they
+ * survive restarts.
+ */
+@Service
+@Slf4j
+public class ConversationMemory {
+
+    private static final String SUFFIX = ".json";
+
+    private final SessionProperties properties;
+    private final TokenEstimator tokenEstimator;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final Map<String, ConversationSession> active = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ConversationMemory(SessionProperties properties, TokenEstimator tokenEstimator, ObjectMapper objectMapper) {
+        this(properties, tokenEstimator, objectMapper, Clock.systemUTC());
+    }
+
+    ConversationMemory(SessionProperties properties, TokenEstimator tokenEstimator, ObjectMapper objectMapper,
+                       Clock clock) {
+        this.properties = properties;
+        this.tokenEstimator = tokenEstimator;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the earlier turns of a session with the given model, oldest first. Unknown sessions
+     * are created.
+     *
+     * @param sessionId the session identifier
+     * @param llm       the identifier of the language model
+     * @return the model's history in the session, empty for a new session
+     */
+    public List<ConversationTurn> history(String sessionId, String llm) {
+        return session(sessionId).branch(llm);
+    }
+
+    /**
+     * Records a completed exchange in the model's branch of the session.
+     *
+     * @param sessionId the session identifier
+     * @param llm       the identifier of the language model
+     * @param prompt    the user prompt that was sent
+     * @param response  the model's reply
+     */
+    public void append(String sessionId, String llm, String prompt, String response) {
+        int tokens = tokenEstimator.countTokens(llm, prompt) + tokenEstimator.countTokens(llm, response);
+        session(sessionId).append(
+                llm,
+                new ConversationTurn(prompt, response, tokens),
+                properties.maxHistoryTokens(),
+                properties.maxTurns()
+        );
+    }
+
+    private ConversationSession session(String sessionId) {
+        ConversationSession session = active.computeIfAbsent(sessionId, this::load);
+        session.touch(clock.instant());
+        if (active.size() > properties.maxActiveSessions()) {
+            spillLeastRecentlyUsed();
+        }
+        return session;
+    }
+
+    private ConversationSession load(String sessionId) {
+        Path file = file(sessionId);
+        if (Files.exists(file)) {
+            try {
+                SessionSnapshot snapshot = objectMapper.readValue(file.toFile(), SessionSnapshot.class);
+                Files.delete(file);
+                if (!isExpired(snapshot.lastAccess())) {
+                    return ConversationSession.restore(snapshot);
+                }
+            } catch (IOException e) {
+                log.warn("Discarding unreadable session {}: {}", sessionId, e.getMessage());
+            }
+        }
+        return new ConversationSession(sessionId, clock.instant());
+    }
+
+    /**
+     * Moves idle sessions from memory to disk and deletes expired sessions from disk.
+     */
+    @Scheduled(fixedDelayString = "${llm.sessions.sweep-interval:PT1M}")
+    public void sweep() {
+        Instant idleBefore = clock.instant().minus(properties.idleTimeout());
+        for (ConversationSession session : active.values()) {
+            if (session.lastAccess().isBefore(idleBefore)) {
+                spill(session.id(), idleBefore);
+            }
+        }
+
+        if (!Files.isDirectory(properties.directory())) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(properties.directory(), "*" + SUFFIX)) {
+            for (Path file : files) {
+                if (isExpired(Files.getLastModifiedTime(file).toInstant())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to clean up expired sessions: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void spillAll() {
+        active.keySet().forEach(sessionId -> spill(sessionId, Instant.MAX));
+    }
+
+    int activeSessions() {
+        return active.size();
+    }
+
+    private void spillLeastRecentlyUsed() {
+        int excess = active.size() - properties.maxActiveSessions();
+        active.values().stream()
+              .sorted(Comparator.comparing(ConversationSession::lastAccess))
+              .limit(Math.max(excess, 0))
+              .map(ConversationSession::id)
+              .toList()
+              .forEach(sessionId -> spill(sessionId, Instant.MAX));
+    }
+
+    /**
+     * Writes a session to disk and removes it from memory, unless it was used after `usedBefore`.
+     * Doing this inside `computeIfPresent` keeps a concurrent lookup from loading a stale copy.
+     */
+    private void spill(String sessionId, Instant usedBefore) {
+        active.computeIfPresent(sessionId, (id, session) -> {
+            if (!session.lastAccess().isBefore(usedBefore)) {
+                return session;
+            }
+            try {
+                Files.createDirectories(properties.directory());
+                objectMapper.writeValue(file(id).toFile(), session.snapshot());
+                return null;
+            } catch (IOException e) {
+                log.warn("Keeping session {} in memory, writing it failed: {}", id, e.getMessage());
+                return session;
+            }
+        });
+    }
+
+    private boolean isExpired(Instant lastAccess) {
+        return lastAccess.isBefore(clock.instant().minus(properties.ttl()));
+    }
+
+    private Path file(String sessionId) {
+        return properties.directory().resolve(sessionId + SUFFIX);
+    }
+}
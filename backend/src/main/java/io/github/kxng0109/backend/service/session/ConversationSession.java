@@ -0,0 +1,73 @@
+package io.github.kxng0109.backend.service.session;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The conversation state of one session: a separate history per model, so each model only ever
+ * sees its own earlier replies.
+ * <p>
+ * A session is shared by the parallel model calls of a comparison, which all touch different
+ * branches; its monitor guards all state.
+ */
+final class ConversationSession {
+
+    private final String id;
+    private final Map<String, Deque<ConversationTurn>> branches = new HashMap<>();
+    private final Map<String, Integer> branchTokens = new HashMap<>();
+    private volatile Instant lastAccess;
+
+    ConversationSession(String id, Instant lastAccess) {
+        this.id = id;
+        this.lastAccess = lastAccess;
+    }
+
+    static ConversationSession restore(SessionSnapshot snapshot) {
+        ConversationSession session = new ConversationSession(snapshot.id(), snapshot.lastAccess());
+        snapshot.branches().forEach((llm, turns) -> turns.forEach(turn -> session.append(llm, turn, Integer.MAX_VALUE, Integer.MAX_VALUE)));
+        return session;
+    }
+
+    String id() {
+        return id;
+    }
+
+    Instant lastAccess() {
+        return lastAccess;
+    }
+
+    void touch(Instant now) {
+        lastAccess = now;
+    }
+
+    synchronized List<ConversationTurn> branch(String llm) {
+        Deque<ConversationTurn> turns = branches.get(llm);
+        return turns == null ? List.of() : List.copyOf(turns);
+    }
+
+    /**
+     * Appends a turn to a model's branch and drops the oldest turns until the branch fits the limits
+     * again. The newest turn is always kept.
+     */
+    synchronized void append(String llm, ConversationTurn turn, int maxTokens, int maxTurns) {
+        Deque<ConversationTurn> turns = branches.computeIfAbsent(llm, key -> new ArrayDeque<>());
+        turns.addLast(turn);
+        int tokens = branchTokens.merge(llm, turn.tokens(), Integer::sum);
+
+        while (turns.size() > 1 && (tokens > maxTokens || turns.size() > maxTurns)) {
+            tokens -= turns.removeFirst().tokens();
+        }
+        branchTokens.put(llm, tokens);
+    }
+
+    synchronized SessionSnapshot snapshot() {
+        Map<String, List<ConversationTurn>> copy = new HashMap<>();
+        branches.forEach((llm, turns) -> copy.put(llm, new ArrayList<>(turns)));
+        return new SessionSnapshot(id, lastAccess, copy);
+    }
+}
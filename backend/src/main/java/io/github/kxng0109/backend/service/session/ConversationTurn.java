@@ -0,0 +1,16 @@
+package io.github.kxng0109.backend.service.session;
+
+/**
+ * One exchange of a conversation with a single model.
+ *
+ * Fields:
+ * - `prompt`: The user prompt as it was sent to the model.
+ * - `response`: The model's reply.
+ * - `tokens`: The number of tokens the turn adds to the context, counted for that model.
+ */
+public record ConversationTurn(
+        String prompt,
+        String response,
+        int tokens
+) {
+}
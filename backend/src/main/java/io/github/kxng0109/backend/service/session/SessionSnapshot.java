@@ -0,0 +1,23 @@
+package io.github.kxng0109.backend.service.session;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The on-disk form of a {@link ConversationSession}.
+ *
+ * Fields:
+ * - `id`: The session identifier.
+ * - `lastAccess`: When the session was last used.
+ * - `branches`: The conversation history per model identifier, oldest turn first.
+ */
+record SessionSnapshot(
+        String id,
+        Instant lastAccess,
+        Map<String, List<ConversationTurn>> branches
+) {
+    SessionSnapshot {
+        branches = branches == null ? Map.of() : branches;
+    }
+}
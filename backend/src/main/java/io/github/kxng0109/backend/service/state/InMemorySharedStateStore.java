@@ -0,0 +1,93 @@
+package io.github.kxng0109.backend.service.state;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The InMemorySharedStateStore class is the default {@link SharedStateStore} implementation.
+ * It keeps all entries in a process-local map, so it is only "shared" between the threads of
+ * a single backend instance. It is intended for single-instance deployments and tests.
+ * <p>
+ * Expired entries are removed lazily when they are read, and a sweep over the whole map is
+ * performed periodically on writes so that keys which are never read again do not accumulate.
+ */
+public class InMemorySharedStateStore implements SharedStateStore {
+
+    private static final int SWEEP_INTERVAL = 1024;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger writesSinceSweep = new AtomicInteger();
+
+    @Override
+    public Optional<String> get(String key) {
+        return entry(key).map(entry -> entry.value() instanceof byte[] bytes
+                ? new String(bytes, StandardCharsets.UTF_8)
+                : (String) entry.value());
+    }
+
+    @Override
+    public void put(String key, String value, Duration ttl) {
+        entries.put(key, new Entry(value, System.nanoTime() + ttl.toNanos()));
+        sweepIfNeeded();
+    }
+
+    @Override
+    public Optional<byte[]> getBytes(String key) {
+        return entry(key).map(entry -> entry.value() instanceof byte[] bytes
+                ? bytes
+                : ((String) entry.value()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void putBytes(String key, byte[] value, Duration ttl) {
+        entries.put(key, new Entry(value, System.nanoTime() + ttl.toNanos()));
+        sweepIfNeeded();
+    }
+
+    @Override
+    public long increment(String key, Duration ttl) {
+        long now = System.nanoTime();
+        Entry updated = entries.compute(key, (k, current) -> {
+            if (current == null || current.isExpired(now)) {
+                return new Entry("1", now + ttl.toNanos());
+            }
+            return new Entry(Long.toString(Long.parseLong((String) current.value()) + 1), current.expiresAt());
+        });
+        sweepIfNeeded();
+        return Long.parseLong((String) updated.value());
+    }
+
+    private Optional<Entry> entry(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            entries.remove(key, entry);
+            return Optional.empty();
+        }
+        return Optional.of(entry);
+    }
+
+    private void sweepIfNeeded() {
+        if (writesSinceSweep.incrementAndGet() < SWEEP_INTERVAL) {
+            return;
+        }
+        writesSinceSweep.set(0);
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> entry.isExpired(now));
+    }
+
+    /**
+     * A stored value, either a String or a byte[] as it was put.
+     */
+    private record Entry(Object value, long expiresAt) {
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.kxng0109.backend.service.state;
+
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The RedisSharedStateStore class is a {@link SharedStateStore} implementation backed by any
+ * Redis-compatible server (Redis, Valkey, KeyDB, Dragonfly, ...). Every backend instance that points
+ * at the same server sees the same cached responses and rate limit counters.
+ * <p>
+ * All keys are namespaced with a configurable prefix so that the store can share a server with
+ * other applications. Counter creation and expiry are performed in a single script so that a
+ * counter can never be left without an expiry. Byte values are read and written through the raw
+ * connection, bypassing the template's string serializer.
+ */
+public class RedisSharedStateStore implements SharedStateStore {
+
+    private static final RedisScript<Long> INCREMENT_SCRIPT = RedisScript.of(
+            """
+                    local value = redis.call('INCR', KEYS[1])
+                    if value == 1 then
+                        redis.call('PEXPIRE', KEYS[1], ARGV[1])
+                    end
+                    return value
+                    """,
+            Long.class
+    );
+
+    private final StringRedisTemplate redisTemplate;
+    private final String keyPrefix;
+
+    public RedisSharedStateStore(StringRedisTemplate redisTemplate, String keyPrefix) {
+        this.redisTemplate = redisTemplate;
+        this.keyPrefix = keyPrefix;
+    }
+
+    @Override
+    public Optional<String> get(String key) {
+        return Optional.ofNullable(redisTemplate.opsForValue().get(keyPrefix + key));
+    }
+
+    @Override
+    public void put(String key, String value, Duration ttl) {
+        redisTemplate.opsForValue().set(keyPrefix + key, value, ttl);
+    }
+
+    @Override
+    public Optional<byte[]> getBytes(String key) {
+        byte[] rawKey = rawKey(key);
+        return Optional.ofNullable(redisTemplate.execute(
+                (RedisCallback<byte[]>) connection -> connection.stringCommands().get(rawKey)
+        ));
+    }
+
+    @Override
+    public void putBytes(String key, byte[] value, Duration ttl) {
+        byte[] rawKey = rawKey(key);
+        redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.stringCommands().set(
+                rawKey, value, Expiration.from(ttl), RedisStringCommands.SetOption.upsert()
+        ));
+    }
+
+    @Override
+    public long increment(String key, Duration ttl) {
+        Long value = redisTemplate.execute(
+                INCREMENT_SCRIPT,
+                List.of(keyPrefix + key),
+                Long.toString(ttl.toMillis())
+        );
+        return value == null ? 0 : value;
+    }
+
+    private byte[] rawKey(String key) {
+        return (keyPrefix + key).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.kxng0109.backend.service.state;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * The SharedStateStore interface is the service provider interface for state that must be
+ * shared between every backend instance behind a load balancer, such as cached model responses
+ * and provider rate limit budgets.
+ * <p>
+ * Implementations only deal with string keys and with string or raw byte values so that they can be
+ * backed by a plain in-process map or by any Redis-compatible network store. Serialization of richer
+ * objects is left to the callers. A value stored as a string can be read as its UTF-8 bytes and the
+ * other way around.
+ */
+public interface SharedStateStore {
+
+    /**
+     * Retrieves the value stored under the given key.
+     *
+     * @param key the key to look up
+     * @return an Optional containing the stored value, or an empty Optional if the key
+     * does not exist or has expired
+     */
+    Optional<String> get(String key);
+
+    /**
+     * Stores a value under the given key, replacing any previous value.
+     *
+     * @param key   the key to store the value under
+     * @param value the value to store
+     * @param ttl   how long the value should be kept before it expires
+     */
+    void put(String key, String value, Duration ttl);
+
+    /**
+     * Retrieves the raw bytes stored under the given key, without decoding them into a string.
+     * <p>
+     * The returned array may be shared with the store and with other callers and must not be modified.
+     *
+     * @param key the key to look up
+     * @return an Optional containing the stored bytes, or an empty Optional if the key does not exist
+     * or has expired
+     */
+    Optional<byte[]> getBytes(String key);
+
+    /**
+     * Stores raw bytes under the given key, replacing any previous value.
+     * <p>
+     * The store may keep the given array instead of a copy, so it must not be modified afterwards.
+     *
+     * @param key   the key to store the value under
+     * @param value the bytes to store
+     * @param ttl   how long the value should be kept before it expires
+     */
+    void putBytes(String key, byte[] value, Duration ttl);
+
+    /**
+     * Atomically increments the counter stored under the given key and returns the new value.
+     * <p>
+     * If the counter does not exist yet it is created with a value of 1 and the given time to live,
+     * which makes this method suitable for fixed-window counters. Subsequent increments do not
+     * extend the expiry.
+     *
+     * @param key the key of the counter
+     * @param ttl how long a newly created counter should be kept before it expires
+     * @return the value of the counter after the increment
+     */
+    long increment(String key, Duration ttl);
+}
@@ -0,0 +1,281 @@
+package io.github.kxng0109.backend.service.token;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The BpeTokenizer class counts tokens with a byte-pair encoding vocabulary in the tiktoken file
+ * format, where every line holds a base64 encoded token followed by its merge rank.
+ * <p>
+ * Text is first split into pieces with the vocabulary's pre-tokenization pattern, and each piece is
+ * then merged pair by pair, always merging the adjacent pair with the lowest rank, exactly like the
+ * reference implementation. Only the resulting number of tokens is computed; token ids are never
+ * materialized.
+ * <p>
+ * Since this runs for every model on every request, the hot path avoids allocation: the vocabulary
+ * lives in a single byte arena with an open-addressing index that is probed with slices of a
+ * reusable buffer, and the UTF-8 encoding, merge state and regex matcher are kept in per-thread
+ * scratch space.
+ */
+public class BpeTokenizer implements TokenCounter {
+
+    /**
+     * The pre-tokenization pattern of the cl100k_base vocabulary.
+     */
+    public static final String CL100K_PATTERN =
+            "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}"
+                    + "| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+";
+
+    private static final int NO_RANK = Integer.MAX_VALUE;
+
+    private final Pattern pattern;
+    private final RankTable ranks;
+    private final ThreadLocal<Scratch> scratch;
+
+    private BpeTokenizer(Pattern pattern, RankTable ranks) {
+        this.pattern = pattern;
+        this.ranks = ranks;
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(pattern));
+    }
+
+    /**
+     * Loads a tokenizer from a tiktoken vocabulary file.
+     *
+     * @param vocabulary the path of the `.tiktoken` file
+     * @param pattern    the pre-tokenization regular expression of the vocabulary
+     * @return the loaded tokenizer
+     * @throws IOException if the file cannot be read
+     */
+    public static BpeTokenizer load(Path vocabulary, String pattern) throws IOException {
+        RankTable.Builder builder = new RankTable.Builder();
+        Base64.Decoder decoder = Base64.getDecoder();
+        try (BufferedReader reader = Files.newBufferedReader(vocabulary, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(' ');
+                if (separator <= 0) {
+                    continue;
+                }
+                byte[] token = decoder.decode(line.substring(0, separator));
+                int rank = Integer.parseInt(line.substring(separator + 1).trim());
+                builder.add(token, rank);
+            }
+        }
+        return new BpeTokenizer(Pattern.compile(pattern), builder.build());
+    }
+
+    @Override
+    public int countTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+
+        Scratch state = scratch.get();
+        Matcher matcher = state.matcher.reset(text);
+        int tokens = 0;
+        while (matcher.find()) {
+            int length = state.encode(text, matcher.start(), matcher.end());
+            tokens += countPiece(state, length);
+        }
+        matcher.reset("");
+        return tokens;
+    }
+
+    private int countPiece(Scratch state, int length) {
+        byte[] bytes = state.bytes;
+        if (length <= 1 || ranks.rank(bytes, 0, length) >= 0) {
+            return length == 0 ? 0 : 1;
+        }
+
+        state.ensureMergeCapacity(length + 1);
+        int[] boundaries = state.boundaries;
+        int[] pairRanks = state.pairRanks;
+        int count = length + 1;
+        for (int i = 0; i < count; i++) {
+            boundaries[i] = i;
+        }
+        for (int i = 0; i < count - 2; i++) {
+            pairRanks[i] = rankOf(bytes, boundaries[i], boundaries[i + 2]);
+        }
+        pairRanks[count - 2] = NO_RANK;
+
+        while (count > 2) {
+            int best = -1;
+            int bestRank = NO_RANK;
+            for (int i = 0; i < count - 1; i++) {
+                if (pairRanks[i] < bestRank) {
+                    bestRank = pairRanks[i];
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+
+            // Merge the parts on either side of boundary best + 1 by removing that boundary.
+            System.arraycopy(boundaries, best + 2, boundaries, best + 1, count - best - 2);
+            System.arraycopy(pairRanks, best + 2, pairRanks, best + 1, count - best - 3);
+            count--;
+            pairRanks[best] = best + 2 < count ? rankOf(bytes, boundaries[best], boundaries[best + 2]) : NO_RANK;
+            if (best > 0) {
+                pairRanks[best - 1] = rankOf(bytes, boundaries[best - 1], boundaries[best + 1]);
+            }
+        }
+        return count - 1;
+    }
+
+    private int rankOf(byte[] bytes, int start, int end) {
+        int rank = ranks.rank(bytes, start, end - start);
+        return rank < 0 ? NO_RANK : rank;
+    }
+
+    /**
+     * Per-thread buffers reused between calls.
+     */
+    private static final class Scratch {
+        private final Matcher matcher;
+        private byte[] bytes = new byte[256];
+        private int[] boundaries = new int[64];
+        private int[] pairRanks = new int[64];
+
+        private Scratch(Pattern pattern) {
+            this.matcher = pattern.matcher("");
+        }
+
+        /**
+         * Encodes the given range of the text as UTF-8 into {@link #bytes}.
+         *
+         * @return the number of bytes written
+         */
+        private int encode(String text, int start, int end) {
+            int maxLength = (end - start) * 3;
+            if (bytes.length < maxLength) {
+                bytes = new byte[Math.max(maxLength, bytes.length * 2)];
+            }
+
+            int position = 0;
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    bytes[position++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[position++] = (byte) (0xC0 | (c >> 6));
+                    bytes[position++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    bytes[position++] = (byte) '?';
+                } else {
+                    bytes[position++] = (byte) (0xE0 | (c >> 12));
+                    bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[position++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            return position;
+        }
+
+        private void ensureMergeCapacity(int size) {
+            if (boundaries.length < size) {
+                int capacity = Math.max(size, boundaries.length * 2);
+                boundaries = new int[capacity];
+                pairRanks = new int[capacity];
+            }
+        }
+    }
+
+    /**
+     * An immutable open-addressing hash table from byte sequences to ranks. All token bytes are
+     * stored back to back in one arena so that lookups can compare against slices of any buffer.
+     */
+    private static final class RankTable {
+        private final byte[] arena;
+        private final int[] offsets;
+        private final int[] lengths;
+        private final int[] ranks;
+        private final int mask;
+
+        private RankTable(byte[] arena, int[] offsets, int[] lengths, int[] ranks) {
+            this.arena = arena;
+            this.offsets = offsets;
+            this.lengths = lengths;
+            this.ranks = ranks;
+            this.mask = offsets.length - 1;
+        }
+
+        private int rank(byte[] bytes, int start, int length) {
+            int slot = hash(bytes, start, length) & mask;
+            while (lengths[slot] != 0) {
+                if (lengths[slot] == length
+                        && Arrays.equals(arena, offsets[slot], offsets[slot] + length, bytes, start, start + length)) {
+                    return ranks[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private static int hash(byte[] bytes, int start, int length) {
+            int hash = 0x811C9DC5;
+            for (int i = start; i < start + length; i++) {
+                hash = (hash ^ (bytes[i] & 0xFF)) * 0x01000193;
+            }
+            return hash ^ (hash >>> 16);
+        }
+
+        private static final class Builder {
+            private byte[][] tokens = new byte[1024][];
+            private int[] tokenRanks = new int[1024];
+            private int size;
+            private int arenaSize;
+
+            private void add(byte[] token, int rank) {
+                if (token.length == 0) {
+                    return;
+                }
+                if (size == tokens.length) {
+                    tokens = Arrays.copyOf(tokens, size * 2);
+                    tokenRanks = Arrays.copyOf(tokenRanks, size * 2);
+                }
+                tokens[size] = token;
+                tokenRanks[size] = rank;
+                arenaSize += token.length;
+                size++;
+            }
+
+            private RankTable build() {
+                int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+                byte[] arena = new byte[arenaSize];
+                int[] offsets = new int[capacity];
+                int[] lengths = new int[capacity];
+                int[] ranks = new int[capacity];
+                int mask = capacity - 1;
+
+                int position = 0;
+                for (int i = 0; i < size; i++) {
+                    byte[] token = tokens[i];
+                    System.arraycopy(token, 0, arena, position, token.length);
+                    int slot = hash(token, 0, token.length) & mask;
+                    while (lengths[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    offsets[slot] = position;
+                    lengths[slot] = token.length;
+                    ranks[slot] = tokenRanks[i];
+                    position += token.length;
+                }
+                return new RankTable(arena, offsets, lengths, ranks);
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package io.github.kxng0109.backend.service.token;
+
+/**
+ * A {@link TokenCounter} used for models without a configured vocabulary. It approximates the
+ * token count as one token per four characters, which is close to the average for English text
+ * with the common BPE vocabularies.
+ */
+public class HeuristicTokenCounter implements TokenCounter {
+
+    private static final int CHARACTERS_PER_TOKEN = 4;
+
+    @Override
+    public int countTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        return (text.length() + CHARACTERS_PER_TOKEN - 1) / CHARACTERS_PER_TOKEN;
+    }
+}
@@ -0,0 +1,18 @@
+package io.github.kxng0109.backend.service.token;
+
+/**
+ * A user prompt that has been checked against a model's context window before dispatch.
+ *
+ * Fields:
+ * - `prompt`: The prompt to send, possibly truncated to fit the context window.
+ * - `promptTokens`: The locally counted tokens of the system and user prompt.
+ * - `estimatedCost`: The estimated price of the prompt tokens, or null if no price is configured.
+ * - `truncated`: Whether the prompt had to be shortened to fit.
+ */
+public record PreparedPrompt(
+        String prompt,
+        int promptTokens,
+        Double estimatedCost,
+        boolean truncated
+) {
+}
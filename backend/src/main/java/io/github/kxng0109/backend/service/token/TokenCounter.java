@@ -0,0 +1,15 @@
+package io.github.kxng0109.backend.service.token;
+
+/**
+ * Counts the tokens a model's tokenizer would produce for a piece of text.
+ */
+public interface TokenCounter {
+
+    /**
+     * Counts the tokens in the given text.
+     *
+     * @param text the text to count; null or empty text has no tokens
+     * @return the number of tokens in the text
+     */
+    int countTokens(String text);
+}
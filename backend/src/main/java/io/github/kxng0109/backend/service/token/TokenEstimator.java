@@ -0,0 +1,142 @@
+package io.github.kxng0109.backend.service.token;
+
+import io.github.kxng0109.backend.config.TokenizerProperties;
+import io.github.kxng0109.backend.error.PromptTooLargeException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The TokenEstimator class counts prompt tokens locally for each target model before the prompt is
+ * dispatched, so that prompts exceeding a model's context window are caught without paying for or
+ * waiting on a provider round trip.
+ * <p>
+ * Models with a configured vocabulary are counted exactly with a {@link BpeTokenizer}; all other
+ * models fall back to a {@link HeuristicTokenCounter}. Vocabularies are loaded once at startup and
+ * shared between models that use the same file.
+ */
+@Service
+@Slf4j
+public class TokenEstimator {
+
+    private final Map<String, TokenizerProperties.Model> models;
+    private final Map<String, TokenCounter> counters = new HashMap<>();
+    private final TokenCounter fallback = new HeuristicTokenCounter();
+
+    public TokenEstimator(TokenizerProperties properties) {
+        this.models = properties.models();
+
+        Map<String, TokenCounter> loaded = new HashMap<>();
+        models.forEach((llm, model) -> {
+            if (model.vocabulary() == null) {
+                return;
+            }
+            String key = model.vocabulary() + '\n' + model.pattern();
+            counters.put(llm, loaded.computeIfAbsent(key, k -> loadTokenizer(model)));
+        });
+    }
+
+    /**
+     * Counts the tokens of a text with the tokenizer configured for the given model.
+     *
+     * @param llm  the identifier of the language model
+     * @param text the text to count
+     * @return the number of tokens, or an estimate if the model has no vocabulary configured
+     */
+    public int countTokens(String llm, String text) {
+        return counters.getOrDefault(llm, fallback).countTokens(text);
+    }
+
+    /**
+     * Counts the tokens of the system and user prompt for the given model and fits the prompt into the
+     * model's context window.
+     *
+     * @param llm           the identifier of the target language model
+     * @param systemMessage the system prompt that will be sent with the prompt
+     * @param prompt        the user prompt
+     * @return the prompt to send together with its token count and estimated cost
+     * @throws PromptTooLargeException if the prompt does not fit the context window and the model is
+     *                                 configured to reject such prompts
+     */
+    public PreparedPrompt prepare(String llm, String systemMessage, String prompt) {
+        return prepare(llm, systemMessage, 0, prompt);
+    }
+
+    /**
+     * Counts the tokens of a prompt that is sent after earlier conversation turns and fits it into the
+     * space the system prompt and the history leave in the model's context window.
+     *
+     * @param llm           the identifier of the target language model
+     * @param systemMessage the system prompt that will be sent with the prompt
+     * @param historyTokens the number of tokens of the earlier turns sent ahead of the prompt
+     * @param prompt        the user prompt
+     * @return the prompt to send together with its token count and estimated cost, both including
+     * the system prompt and the history
+     * @throws PromptTooLargeException if the prompt does not fit the context window and the model is
+     *                                 configured to reject such prompts
+     */
+    public PreparedPrompt prepare(String llm, String systemMessage, int historyTokens, String prompt) {
+        TokenCounter counter = counters.getOrDefault(llm, fallback);
+        TokenizerProperties.Model model = models.get(llm);
+
+        int systemTokens = counter.countTokens(systemMessage) + historyTokens;
+        int promptTokens = counter.countTokens(prompt);
+        if (model == null || model.contextWindow() == null) {
+            return new PreparedPrompt(prompt, systemTokens + promptTokens, null, false);
+        }
+
+        int budget = model.contextWindow() - model.reservedOutputTokens() - systemTokens;
+        if (promptTokens <= budget) {
+            return new PreparedPrompt(prompt, systemTokens + promptTokens, cost(model, systemTokens + promptTokens), false);
+        }
+
+        if (model.overflow() == TokenizerProperties.Overflow.REJECT || budget <= 0) {
+            throw new PromptTooLargeException(
+                    "Prompt has " + promptTokens + " tokens but only " + Math.max(budget, 0)
+                            + " fit into the context window of " + llm
+            );
+        }
+
+        String truncated = truncate(counter, prompt, promptTokens, budget);
+        int truncatedTokens = counter.countTokens(truncated);
+        log.info("Truncated prompt for {} from {} to {} tokens", llm, promptTokens, truncatedTokens);
+        return new PreparedPrompt(truncated, systemTokens + truncatedTokens, cost(model, systemTokens + truncatedTokens), true);
+    }
+
+    private String truncate(TokenCounter counter, String prompt, int promptTokens, int budget) {
+        // Start from a length proportional to the budget and shrink until the prefix fits.
+        int length = (int) ((long) prompt.length() * budget / promptTokens);
+        while (length > 0) {
+            if (Character.isLowSurrogate(prompt.charAt(length))) {
+                length--;
+            }
+            String candidate = prompt.substring(0, length);
+            int tokens = counter.countTokens(candidate);
+            if (tokens <= budget) {
+                return candidate;
+            }
+            length -= Math.max(1, (int) ((long) length * (tokens - budget) / tokens));
+        }
+        return "";
+    }
+
+    private Double cost(TokenizerProperties.Model model, int tokens) {
+        return model.inputCostPerMillion() == null ? null : tokens * model.inputCostPerMillion() / 1_000_000;
+    }
+
+    private TokenCounter loadTokenizer(TokenizerProperties.Model model) {
+        try {
+            long startTime = System.nanoTime();
+            BpeTokenizer tokenizer = BpeTokenizer.load(Path.of(model.vocabulary()), model.pattern());
+            log.info("Loaded tokenizer vocabulary {} in {}ms", model.vocabulary(), (System.nanoTime() - startTime) / 1_000_000);
+            return tokenizer;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load tokenizer vocabulary " + model.vocabulary(), e);
+        }
+    }
+}
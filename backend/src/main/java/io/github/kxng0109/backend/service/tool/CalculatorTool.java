@@ -0,0 +1,157 @@
+package io.github.kxng0109.backend.service.tool;
+
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+/**
+ * A tool evaluating arithmetic expressions, so that models can hand off calculations instead of
+ * working them out token by token.
+ * <p>
+ * Expressions may use `+`, `-`, `*`, `/`, `%`, `^` (exponentiation, binding tighter than unary signs
+ * and associating to the right), parentheses and decimal numbers. Invalid expressions are rejected
+ * with a message the model can act on.
+ */
+@Component
+public class CalculatorTool {
+
+    private static final int MAX_EXPRESSION_LENGTH = 1000;
+
+    @Tool(description = "Evaluates an arithmetic expression and returns the result. "
+            + "Supports + - * / % ^ and parentheses, for example (3.5 + 2) * 4 ^ 2.")
+    public String calculate(@ToolParam(description = "The arithmetic expression to evaluate") String expression) {
+        if (expression == null || expression.isBlank()) {
+            throw new IllegalArgumentException("The expression is empty");
+        }
+        if (expression.length() > MAX_EXPRESSION_LENGTH) {
+            throw new IllegalArgumentException("The expression is longer than " + MAX_EXPRESSION_LENGTH + " characters");
+        }
+
+        double result = new Parser(expression).parse();
+        if (Double.isNaN(result) || Double.isInfinite(result)) {
+            throw new IllegalArgumentException("The result is not a finite number");
+        }
+        return BigDecimal.valueOf(result).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * A recursive descent parser evaluating the expression while it is parsed.
+     */
+    private static final class Parser {
+        private final String input;
+        private int position;
+
+        private Parser(String input) {
+            this.input = input;
+        }
+
+        private double parse() {
+            double value = expression();
+            skipWhitespace();
+            if (position < input.length()) {
+                throw error("Unexpected '" + input.charAt(position) + "'");
+            }
+            return value;
+        }
+
+        private double expression() {
+            double value = term();
+            while (true) {
+                if (accept('+')) {
+                    value += term();
+                } else if (accept('-')) {
+                    value -= term();
+                } else {
+                    return value;
+                }
+            }
+        }
+
+        private double term() {
+            double value = unary();
+            while (true) {
+                if (accept('*')) {
+                    value *= unary();
+                } else if (accept('/')) {
+                    double divisor = unary();
+                    if (divisor == 0) {
+                        throw error("Division by zero");
+                    }
+                    value /= divisor;
+                } else if (accept('%')) {
+                    double divisor = unary();
+                    if (divisor == 0) {
+                        throw error("Division by zero");
+                    }
+                    value %= divisor;
+                } else {
+                    return value;
+                }
+            }
+        }
+
+        private double unary() {
+            if (accept('-')) {
+                return -unary();
+            }
+            if (accept('+')) {
+                return unary();
+            }
+            return power();
+        }
+
+        private double power() {
+            double base = primary();
+            if (accept('^')) {
+                return Math.pow(base, unary());
+            }
+            return base;
+        }
+
+        private double primary() {
+            if (accept('(')) {
+                double value = expression();
+                if (!accept(')')) {
+                    throw error("Missing ')'");
+                }
+                return value;
+            }
+
+            skipWhitespace();
+            int start = position;
+            while (position < input.length()
+                    && (Character.isDigit(input.charAt(position)) || input.charAt(position) == '.')) {
+                position++;
+            }
+            if (start == position) {
+                throw error(position < input.length() ? "Unexpected '" + input.charAt(position) + "'" : "Unexpected end");
+            }
+            try {
+                return Double.parseDouble(input.substring(start, position));
+            } catch (NumberFormatException e) {
+                throw error("Invalid number '" + input.substring(start, position) + "'");
+            }
+        }
+
+        private boolean accept(char expected) {
+            skipWhitespace();
+            if (position < input.length() && input.charAt(position) == expected) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position + " of the expression");
+        }
+    }
+}
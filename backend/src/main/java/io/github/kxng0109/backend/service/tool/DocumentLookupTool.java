@@ -0,0 +1,135 @@
+package io.github.kxng0109.backend.service.tool;
+
+import io.github.kxng0109.backend.config.ToolProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * A tool looking up passages in a local index of documents, so that models can answer from the
+ * project's own material instead of what they remember.
+ * <p>
+ * The documents are loaded from the location configured in {@link ToolProperties} once at startup and
+ * split into passages at blank lines. The passages are indexed in memory and ranked by BM25, so a lookup
+ * only touches the postings of the query's terms.
+ */
+@Component
+@Slf4j
+public class DocumentLookupTool {
+
+    private static final Pattern PASSAGE_SEPARATOR = Pattern.compile("\\R\\s*\\R");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final int maxResults;
+    private final List<Passage> passages = new ArrayList<>();
+    private final Map<String, List<Posting>> postings = new HashMap<>();
+    private final double averageLength;
+
+    public DocumentLookupTool(ToolProperties properties, ResourcePatternResolver resourcePatternResolver) {
+        this.maxResults = properties.maxResults();
+
+        long totalLength = 0;
+        for (Passage passage : loadPassages(properties.documents(), resourcePatternResolver)) {
+            int id = passages.size();
+            passages.add(passage);
+
+            Map<String, Integer> frequencies = new HashMap<>();
+            List<String> terms = terms(passage.text());
+            terms.forEach(term -> frequencies.merge(term, 1, Integer::sum));
+            frequencies.forEach((term, frequency) -> postings.computeIfAbsent(term, key -> new ArrayList<>())
+                                                             .add(new Posting(id, frequency, terms.size())));
+            totalLength += terms.size();
+        }
+        this.averageLength = passages.isEmpty() ? 0 : (double) totalLength / passages.size();
+        log.info("Indexed {} passage(s) from {} for document lookup", passages.size(), properties.documents());
+    }
+
+    @Tool(description = "Searches the local document index and returns the passages most relevant to the query, "
+            + "each prefixed with the document it comes from.")
+    public String searchDocuments(@ToolParam(description = "Keywords or a question describing what to look up") String query) {
+        double[] scores = new double[passages.size()];
+        for (String term : terms(query == null ? "" : query)) {
+            List<Posting> termPostings = postings.get(term);
+            if (termPostings == null) {
+                continue;
+            }
+
+            double idf = Math.log(1 + (passages.size() - termPostings.size() + 0.5) / (termPostings.size() + 0.5));
+            for (Posting posting : termPostings) {
+                double normalization = K1 * (1 - B + B * posting.length() / averageLength);
+                scores[posting.passage()] += idf * posting.frequency() * (K1 + 1) / (posting.frequency() + normalization);
+            }
+        }
+
+        List<Integer> ranked = IntStream.range(0, scores.length)
+                                        .filter(i -> scores[i] > 0)
+                                        .boxed()
+                                        .sorted((a, b) -> Double.compare(scores[b], scores[a]))
+                                        .limit(maxResults)
+                                        .toList();
+        if (ranked.isEmpty()) {
+            return "No matching passages found.";
+        }
+
+        StringBuilder result = new StringBuilder();
+        for (int id : ranked) {
+            Passage passage = passages.get(id);
+            result.append('[').append(passage.source()).append("]\n").append(passage.text()).append("\n\n");
+        }
+        return result.toString().strip();
+    }
+
+    private static List<Passage> loadPassages(String location, ResourcePatternResolver resolver) {
+        List<Passage> loaded = new ArrayList<>();
+        try {
+            for (Resource resource : resolver.getResources(location)) {
+                String filename = resource.getFilename();
+                if (filename == null || !resource.isReadable()) {
+                    continue;
+                }
+
+                String text = resource.getContentAsString(StandardCharsets.UTF_8);
+                for (String passage : PASSAGE_SEPARATOR.split(text)) {
+                    if (!passage.isBlank()) {
+                        loaded.add(new Passage(filename, passage.strip()));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load documents from " + location, e);
+        }
+        return loaded;
+    }
+
+    private static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        for (String term : NON_WORD.split(text.toLowerCase(Locale.ROOT))) {
+            if (term.length() > 1) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    private record Passage(String source, String text) {
+    }
+
+    private record Posting(int passage, int frequency, int length) {
+    }
+}
@@ -0,0 +1,37 @@
+package io.github.kxng0109.backend.service.tool;
+
+import io.github.kxng0109.backend.config.ToolProperties;
+import org.springframework.ai.support.ToolCallbacks;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Decides which local tools are offered to which model.
+ * <p>
+ * Only the models listed in {@link ToolProperties#models()} are offered the tools, since models
+ * without function calling support reject requests that declare them. All other models are called
+ * exactly as before.
+ */
+@Component
+public class ModelTools {
+
+    private final ToolProperties properties;
+    private final List<ToolCallback> toolCallbacks;
+
+    public ModelTools(ToolProperties properties, CalculatorTool calculatorTool, DocumentLookupTool documentLookupTool) {
+        this.properties = properties;
+        this.toolCallbacks = List.of(ToolCallbacks.from(calculatorTool, documentLookupTool));
+    }
+
+    /**
+     * Returns the tools to offer to the given model.
+     *
+     * @param llm the identifier of the model
+     * @return the callbacks of the tools, or an empty list if the model is not offered any tools
+     */
+    public List<ToolCallback> forModel(String llm) {
+        return properties.models().contains(llm) ? toolCallbacks : List.of();
+    }
+}
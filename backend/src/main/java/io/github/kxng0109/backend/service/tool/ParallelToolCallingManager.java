@@ -0,0 +1,274 @@
+package io.github.kxng0109.backend.service.tool;
+
+import io.github.kxng0109.backend.config.ToolProperties;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.DefaultToolCallingManager;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.ToolExecutionException;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.resolution.ToolCallbackResolver;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Executes the tool calls a model requests in one turn concurrently instead of one after another.
+ * <p>
+ * Spring AI's default manager runs the calls of a turn sequentially on the thread that called the
+ * model, so a turn takes as long as all of its calls together. This manager replaces it for every
+ * provider and runs the calls on a shared executor bounded by {@link ToolProperties#maxConcurrency()},
+ * so a turn takes as long as its slowest call. The responses are still handed back to the model in the
+ * order the calls were requested.
+ * <p>
+ * The calls of a turn must complete within {@link ToolProperties#timeout()}. Calls that do not are
+ * interrupted and answered with an error, so that the model can carry on without their results.
+ * Identical calls made during the same comparison are executed once, see {@link ToolResultCache}, and
+ * every call is recorded in the {@link ToolCallSession} of the model call and as an `llm.tool.call`
+ * observation nested under the observation current when the model requested the tools.
+ */
+@Component
+@Slf4j
+public class ParallelToolCallingManager implements ToolCallingManager {
+
+    private static final String TOOL_CALL_OBSERVATION = "llm.tool.call";
+    private static final String TOOL_KEY = "tool";
+    private static final String CACHED_KEY = "cached";
+
+    private final ToolCallingManager definitionResolver;
+    private final ToolCallbackResolver toolCallbackResolver;
+    private final ToolExecutionExceptionProcessor toolExecutionExceptionProcessor;
+    private final ObservationRegistry observationRegistry;
+    private final Duration timeout;
+    private final ExecutorService executor;
+
+    public ParallelToolCallingManager(
+            ToolCallbackResolver toolCallbackResolver,
+            ToolExecutionExceptionProcessor toolExecutionExceptionProcessor,
+            ObservationRegistry observationRegistry,
+            ToolProperties properties
+    ) {
+        this.definitionResolver = DefaultToolCallingManager.builder()
+                                                           .observationRegistry(observationRegistry)
+                                                           .toolCallbackResolver(toolCallbackResolver)
+                                                           .toolExecutionExceptionProcessor(toolExecutionExceptionProcessor)
+                                                           .build();
+        this.toolCallbackResolver = toolCallbackResolver;
+        this.toolExecutionExceptionProcessor = toolExecutionExceptionProcessor;
+        this.observationRegistry = observationRegistry;
+        this.timeout = properties.timeout();
+        this.executor = Executors.newFixedThreadPool(
+                properties.maxConcurrency(),
+                Thread.ofVirtual().name("tool-", 0).factory()
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+        return definitionResolver.resolveToolDefinitions(chatOptions);
+    }
+
+    @Override
+    public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+        AssistantMessage assistantMessage = chatResponse.getResults()
+                                                        .stream()
+                                                        .map(Generation::getOutput)
+                                                        .filter(output -> output != null && output.hasToolCalls())
+                                                        .findFirst()
+                                                        .orElseThrow(() -> new IllegalStateException(
+                                                                "No tool call requested by the chat model"
+                                                        ));
+
+        ToolContext toolContext = buildToolContext(prompt, assistantMessage);
+        ToolCallSession session = ToolCallSession.current();
+        if (session == null) {
+            session = new ToolCallSession(new ToolResultCache());
+        }
+        Observation parent = observationRegistry.getCurrentObservation();
+
+        List<AssistantMessage.ToolCall> toolCalls = assistantMessage.getToolCalls();
+        List<Future<String>> futures = new ArrayList<>(toolCalls.size());
+        boolean returnDirect = true;
+        for (AssistantMessage.ToolCall toolCall : toolCalls) {
+            ToolCallback toolCallback = resolve(prompt, toolCall.name());
+            returnDirect &= toolCallback.getToolMetadata().returnDirect();
+
+            ToolCallSession callSession = session;
+            futures.add(executor.submit(() -> call(toolCall, toolCallback, toolContext, callSession, parent)));
+        }
+
+        List<ToolResponseMessage.ToolResponse> responses = awaitResponses(toolCalls, futures);
+
+        List<Message> conversationHistory = new ArrayList<>(prompt.copy().getInstructions());
+        conversationHistory.add(assistantMessage);
+        conversationHistory.add(new ToolResponseMessage(responses, Map.of()));
+
+        return ToolExecutionResult.builder()
+                                  .conversationHistory(conversationHistory)
+                                  .returnDirect(returnDirect)
+                                  .build();
+    }
+
+    /**
+     * Waits for the calls of a turn until the turn's deadline, answering the calls that miss it with
+     * an error.
+     *
+     * @throws CancellationException if the waiting thread is interrupted, which happens when the
+     *                               comparison is cancelled; all calls are interrupted as well
+     * @throws RuntimeException      the failure of a call that did not fail with a
+     *                               {@link ToolExecutionException}; the other calls of the turn are
+     *                               interrupted, since their results can no longer be used
+     */
+    private List<ToolResponseMessage.ToolResponse> awaitResponses(List<AssistantMessage.ToolCall> toolCalls,
+                                                                  List<Future<String>> futures) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>(toolCalls.size());
+        for (int i = 0; i < toolCalls.size(); i++) {
+            AssistantMessage.ToolCall toolCall = toolCalls.get(i);
+            Future<String> future = futures.get(i);
+
+            String response;
+            try {
+                response = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                log.warn("Tool call {} did not complete within {}", toolCall.name(), timeout);
+                response = "Error: the tool did not respond within " + timeout.toSeconds() + " seconds";
+            } catch (InterruptedException e) {
+                futures.forEach(pending -> pending.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Tool calls were interrupted");
+            } catch (ExecutionException e) {
+                futures.forEach(pending -> pending.cancel(true));
+                throw asRuntimeException(e.getCause());
+            }
+            responses.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), response));
+        }
+        return responses;
+    }
+
+    /**
+     * Executes a single tool call on an executor thread, unless an identical call of the comparison
+     * has already been made, in which case its result is used.
+     */
+    private String call(AssistantMessage.ToolCall toolCall, ToolCallback toolCallback, ToolContext toolContext,
+                        ToolCallSession session, Observation parent) throws InterruptedException {
+        String name = toolCall.name();
+        String arguments = toolCall.arguments();
+        ToolResultCache results = session.results();
+
+        Observation observation = Observation.createNotStarted(TOOL_CALL_OBSERVATION, observationRegistry)
+                                             .contextualName("tool " + name)
+                                             .parentObservation(parent)
+                                             .lowCardinalityKeyValue(TOOL_KEY, name)
+                                             .lowCardinalityKeyValue(CACHED_KEY, "false")
+                                             .start();
+        long startTime = System.nanoTime();
+        boolean cached = false;
+        try (Observation.Scope scope = observation.openScope()) {
+            CompletableFuture<String> result = new CompletableFuture<>();
+            CompletableFuture<String> existing = results.putIfAbsent(name, arguments, result);
+            if (existing != null) {
+                try {
+                    String response = existing.get();
+                    cached = true;
+                    observation.lowCardinalityKeyValue(CACHED_KEY, "true");
+                    return response;
+                } catch (ExecutionException e) {
+                    throw asRuntimeException(e.getCause());
+                } catch (CancellationException e) {
+                    // The identical call was abandoned by a turn that ran out of time, so this call
+                    // runs the tool itself, without sharing its result.
+                    return toolCallback.call(arguments, toolContext);
+                }
+            }
+
+            try {
+                String response = toolCallback.call(arguments, toolContext);
+                result.complete(response);
+                return response;
+            } finally {
+                if (!result.isDone()) {
+                    // Forget the failed or interrupted call so that a later identical call tries again.
+                    results.remove(name, arguments, result);
+                    result.cancel(false);
+                }
+            }
+        } catch (RuntimeException | InterruptedException e) {
+            observation.error(e);
+            if (e instanceof ToolExecutionException toolExecutionException) {
+                // Failures of the tool itself are reported to the model, as Spring AI's default manager does.
+                return toolExecutionExceptionProcessor.process(toolExecutionException);
+            }
+            throw e;
+        } finally {
+            session.record(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), cached);
+            observation.stop();
+        }
+    }
+
+    private ToolCallback resolve(Prompt prompt, String name) {
+        if (prompt.getOptions() instanceof ToolCallingChatOptions options) {
+            for (ToolCallback toolCallback : options.getToolCallbacks()) {
+                if (toolCallback.getToolDefinition().name().equals(name)) {
+                    return toolCallback;
+                }
+            }
+        }
+
+        ToolCallback toolCallback = toolCallbackResolver.resolve(name);
+        if (toolCallback == null) {
+            throw new IllegalStateException("No ToolCallback found for tool name: " + name);
+        }
+        return toolCallback;
+    }
+
+    private ToolContext buildToolContext(Prompt prompt, AssistantMessage assistantMessage) {
+        if (!(prompt.getOptions() instanceof ToolCallingChatOptions options)
+                || options.getToolContext() == null || options.getToolContext().isEmpty()) {
+            return new ToolContext(Map.of());
+        }
+
+        List<Message> history = new ArrayList<>(prompt.copy().getInstructions());
+        history.add(assistantMessage);
+        Map<String, Object> context = new HashMap<>(options.getToolContext());
+        context.put(ToolContext.TOOL_CALL_HISTORY, history);
+        return new ToolContext(context);
+    }
+
+    private static RuntimeException asRuntimeException(Throwable cause) {
+        return cause instanceof RuntimeException runtimeException
+                ? runtimeException
+                : new IllegalStateException("Tool call failed", cause);
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.kxng0109.backend.service.tool;
+
+import io.github.kxng0109.backend.model.dto.ToolCallMetadata;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The tool calls made during a single model call, reported in the response metadata.
+ * <p>
+ * Spring AI executes the tool calls a model requests deep inside the provider's chat model, on the
+ * thread that called the model. The session is therefore bound to that thread with {@link #open()},
+ * like the quota lease and cancellation token of the comparison, and {@link ParallelToolCallingManager}
+ * reads it from there before it fans the calls out to its own threads.
+ */
+public final class ToolCallSession {
+
+    private static final ThreadLocal<ToolCallSession> CURRENT = new ThreadLocal<>();
+
+    private final ToolResultCache results;
+    private final List<ToolCallMetadata> calls = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a session for one model call.
+     *
+     * @param results the tool results of the comparison the call belongs to
+     */
+    public ToolCallSession(ToolResultCache results) {
+        this.results = results;
+    }
+
+    /**
+     * Returns the session bound to the current thread.
+     *
+     * @return the current session, or null if tools are called outside a model call of a comparison
+     */
+    static ToolCallSession current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds this session to the current thread until the returned scope is closed.
+     *
+     * @return the scope restoring the previously bound session when closed
+     */
+    public Scope open() {
+        ToolCallSession previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    /**
+     * Returns the tool calls made so far, in the order they completed.
+     *
+     * @return the metadata of the tool calls
+     */
+    public List<ToolCallMetadata> calls() {
+        return List.copyOf(calls);
+    }
+
+    ToolResultCache results() {
+        return results;
+    }
+
+    void record(String name, long latency, boolean cached) {
+        calls.add(ToolCallMetadata.builder()
+                                  .name(name)
+                                  .latency(latency)
+                                  .cached(cached)
+                                  .build());
+    }
+
+    /**
+     * A binding of a session to a thread.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.kxng0109.backend.service.tool;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The results of the tool calls made while answering a single comparison.
+ * <p>
+ * The tools are deterministic for the lifetime of a request, so a call repeating the name and
+ * arguments of an earlier one, whether from the same model or from another model of the comparison,
+ * is answered with the earlier result. Calls that overlap in time share the pending result instead of
+ * executing the tool twice. Failed calls are not kept, so that they can be retried.
+ */
+public final class ToolResultCache {
+
+    private final Map<String, CompletableFuture<String>> results = new ConcurrentHashMap<>();
+
+    /**
+     * Registers the result of a tool call unless the same call was registered before.
+     *
+     * @param name      the name of the tool
+     * @param arguments the JSON arguments of the call
+     * @param result    the pending result of the call
+     * @return the result registered earlier for the same call, or null if the given one was registered
+     */
+    CompletableFuture<String> putIfAbsent(String name, String arguments, CompletableFuture<String> result) {
+        return results.putIfAbsent(key(name, arguments), result);
+    }
+
+    /**
+     * Forgets the result of a tool call, if it is still the one registered.
+     *
+     * @param name      the name of the tool
+     * @param arguments the JSON arguments of the call
+     * @param result    the result to forget
+     */
+    void remove(String name, String arguments, CompletableFuture<String> result) {
+        results.remove(key(name, arguments), result);
+    }
+
+    private static String key(String name, String arguments) {
+        return name + '\u0000' + (arguments == null ? "" : arguments.strip());
+    }
+}
@@ -0,0 +1,101 @@
+package io.github.kxng0109.backend;
+
+import com.sun.net.httpserver.HttpServer;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Exports the spans of a comparison over OTLP/HTTP to a minimal collector stand-in that only records
+ * the protobuf payloads it receives.
+ */
+@SpringBootTest(properties = {"management.tracing.sampling.probability=1.0", "llm.cache.enabled=false"})
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class TracingExportTests {
+
+    private static final List<String> exports = new CopyOnWriteArrayList<>();
+    private static final HttpServer collector = startCollector();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SdkTracerProvider tracerProvider;
+
+    @MockitoBean(name = "openai", answers = Answers.RETURNS_DEEP_STUBS)
+    private ChatClient openAiChatClient;
+
+    @DynamicPropertySource
+    static void collectorEndpoint(DynamicPropertyRegistry registry) {
+        registry.add(
+                "management.otlp.tracing.endpoint",
+                () -> "http://127.0.0.1:" + collector.getAddress().getPort() + "/v1/traces"
+        );
+    }
+
+    @AfterAll
+    static void stopCollector() {
+        collector.stop(0);
+    }
+
+    @Test
+    void testCompare_ExportsSpanPerModelCall() throws Exception {
+        when(openAiChatClient.prompt().system(anyString()).user(anyString()).call().chatResponse())
+                .thenReturn(new ChatResponse(List.of(new Generation(new AssistantMessage("AI is artificial intelligence")))));
+
+        mockMvc.perform(post("/api/llm/compare")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"prompt\": \"What is AI?\", \"llms\": [\"openai\"]}"))
+               .andExpect(status().isOk());
+
+        assertThat(tracerProvider.forceFlush().join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+        String exported = String.join("", exports);
+        assertThat(exported).contains("admission", "call openai", "send openai", "metadata openai");
+    }
+
+    private static HttpServer startCollector() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.createContext("/v1/traces", exchange -> {
+                // Span names are plain UTF-8 strings inside the protobuf payload.
+                exports.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.ISO_8859_1));
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+            });
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
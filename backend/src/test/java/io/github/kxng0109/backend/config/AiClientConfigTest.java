@@ -0,0 +1,37 @@
+package io.github.kxng0109.backend.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class AiClientConfigTest {
+
+    @Test
+    void testProvidersChangedSinceBuild_SameProviders() {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("openai", mock(ChatClient.class));
+        MockEnvironment environment = new MockEnvironment().withProperty("spring.ai.openai.api-key", "sk-test")
+                                                           .withProperty("spring.ai.ollama.chat.model", "");
+
+        assertTrue(AiClientConfig.providersChangedSinceBuild(beanFactory, environment).isEmpty());
+    }
+
+    @Test
+    void testProvidersChangedSinceBuild_ReportsAddedAndRemovedProviders() {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("anthropic", mock(ChatClient.class));
+        MockEnvironment environment = new MockEnvironment().withProperty("spring.ai.ollama.chat.model", "llama3.2:1b");
+
+        assertEquals(
+                List.of("anthropic (configured at build time only)", "ollama (configured at runtime only)"),
+                AiClientConfig.providersChangedSinceBuild(beanFactory, environment)
+        );
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.kxng0109.backend.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LazyChatModelTest {
+
+    @Mock
+    private ChatModel delegate;
+
+    @Test
+    void testCall_CreatesDelegateOnFirstCallOnly() {
+        AtomicInteger created = new AtomicInteger();
+        LazyChatModel lazyChatModel = new LazyChatModel("openai", () -> {
+            created.incrementAndGet();
+            return delegate;
+        });
+        when(delegate.call(any(Prompt.class))).thenReturn(
+                new ChatResponse(List.of(new Generation(new AssistantMessage("Hello"))))
+        );
+
+        ChatClient chatClient = ChatClient.builder(lazyChatModel).build();
+        assertEquals(0, created.get());
+
+        assertEquals("Hello", chatClient.prompt().user("Hi").call().content());
+        assertEquals("Hello", chatClient.prompt().user("Hi again").call().content());
+        assertEquals(1, created.get());
+    }
+}
@@ -2,25 +2,54 @@ package io.github.kxng0109.backend.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.kxng0109.backend.error.ModelNotFoundException;
+import io.github.kxng0109.backend.error.OverloadedException;
+import io.github.kxng0109.backend.error.PromptTooLargeException;
+import io.github.kxng0109.backend.error.ProviderRateLimitExceededException;
+import io.github.kxng0109.backend.error.QuotaExceededException;
+import io.github.kxng0109.backend.error.ServiceUnavailableException;
 import io.github.kxng0109.backend.model.dto.ChatRequest;
+import io.github.kxng0109.backend.model.dto.CompareResponse;
+import io.github.kxng0109.backend.model.dto.ComparisonAnalysis;
 import io.github.kxng0109.backend.model.dto.ModelMetadata;
 import io.github.kxng0109.backend.model.dto.ModelRateLimit;
 import io.github.kxng0109.backend.model.dto.ModelResponse;
 import io.github.kxng0109.backend.service.AiService;
+import io.github.kxng0109.backend.service.admission.CompareAdmissionControl;
+import io.github.kxng0109.backend.service.admission.Priority;
+import io.github.kxng0109.backend.service.quota.QuotaLease;
+import io.github.kxng0109.backend.service.quota.QuotaManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -37,6 +66,24 @@ class AiControllerTest {
     @MockitoBean
     private AiService aiService;
 
+    @MockitoBean
+    private CompareAdmissionControl admissionControl;
+
+    @MockitoBean
+    private QuotaManager quotaManager;
+
+    @BeforeEach
+    void setUp() {
+        when(quotaManager.reserve(any(), any())).thenReturn(QuotaLease.UNLIMITED);
+        CompareAdmissionControl admissions = new CompareAdmissionControl(
+                new SimpleMeterRegistry(), ObservationRegistry.NOOP, 16, 0, Duration.ofSeconds(1), Duration.ofSeconds(1)
+        );
+        when(admissionControl.admit(any(), any())).thenAnswer(invocation -> admissions.admit(
+                invocation.getArgument(0, String.class),
+                invocation.getArgument(1, Priority.class)
+        ));
+    }
+
     @Test
     void testHealthEndpoint() throws Exception {
         mockMvc.perform(get("/api/llm/health"))
@@ -124,6 +171,174 @@ class AiControllerTest {
                .andExpect(jsonPath("$.responses[1].metadata.model", is("claude-3-opus")));
     }
 
+    @Test
+    void testCompareModels_WithAnalysis() throws Exception {
+        ChatRequest request = new ChatRequest("What is AI?", List.of("openai", "anthropic"));
+
+        ModelResponse openAiResponse = ModelResponse.builder()
+                                                    .llm("openai")
+                                                    .response("AI is artificial intelligence")
+                                                    .build();
+
+        ModelResponse anthropicResponse = ModelResponse.builder()
+                                                       .llm("anthropic")
+                                                       .response("AI is artificial intelligence")
+                                                       .build();
+
+        ComparisonAnalysis analysis = ComparisonAnalysis.builder()
+                                                        .llms(List.of("openai", "anthropic"))
+                                                        .lexicalSimilarity(new double[][]{{1, 1}, {1, 1}})
+                                                        .agreement(new double[]{1, 1})
+                                                        .consensus(1)
+                                                        .build();
+
+        when(aiService.compareModelsWithAnalysis(any(ChatRequest.class)))
+                .thenReturn(CompareResponse.builder()
+                                           .responses(List.of(openAiResponse, anthropicResponse))
+                                           .analysis(analysis)
+                                           .build());
+
+        mockMvc.perform(post("/api/llm/compare")
+                                .param("analyze", "true")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(request)))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.responses", hasSize(2)))
+               .andExpect(jsonPath("$.analysis.llms", contains("openai", "anthropic")))
+               .andExpect(jsonPath("$.analysis.lexicalSimilarity[0][1]", is(1.0)))
+               .andExpect(jsonPath("$.analysis.consensus", is(1.0)))
+               .andExpect(jsonPath("$.analysis.semanticSimilarity").doesNotExist());
+    }
+
+    @Test
+    void testStreamCompareModels_Success() throws Exception {
+        ChatRequest request = new ChatRequest("What is AI?", List.of("openai", "anthropic"));
+
+        ModelResponse openAiResponse = ModelResponse.builder()
+                                                    .llm("openai")
+                                                    .response("AI is artificial intelligence from OpenAI")
+                                                    .build();
+
+        ModelResponse anthropicResponse = ModelResponse.builder()
+                                                       .llm("anthropic")
+                                                       .response("AI is artificial intelligence from Anthropic")
+                                                       .build();
+
+        doAnswer(invocation -> {
+            Consumer<byte[]> onResponse = invocation.getArgument(1);
+            onResponse.accept(objectMapper.writeValueAsBytes(anthropicResponse));
+            onResponse.accept(objectMapper.writeValueAsBytes(openAiResponse));
+            return null;
+        }).when(aiService).compareModelsSerialized(any(ChatRequest.class), any());
+
+        MvcResult result = mockMvc.perform(post("/api/llm/compare/stream")
+                                                   .contentType(MediaType.APPLICATION_JSON)
+                                                   .accept(MediaType.APPLICATION_NDJSON)
+                                                   .content(objectMapper.writeValueAsString(request)))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+               .andExpect(status().isOk())
+               .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+               .andExpect(content().string(
+                       objectMapper.writeValueAsString(anthropicResponse) + "\n"
+                               + objectMapper.writeValueAsString(openAiResponse) + "\n"
+               ));
+    }
+
+    @Test
+    void testStreamCompareModels_FailureMidStream_EndsWithErrorLine() throws Exception {
+        ChatRequest request = new ChatRequest("What is AI?", List.of("openai", "anthropic"));
+
+        ModelResponse openAiResponse = ModelResponse.builder()
+                                                    .llm("openai")
+                                                    .response("AI is artificial intelligence from OpenAI")
+                                                    .build();
+
+        doAnswer(invocation -> {
+            Consumer<byte[]> onResponse = invocation.getArgument(1);
+            onResponse.accept(objectMapper.writeValueAsBytes(openAiResponse));
+            throw new ProviderRateLimitExceededException("Rate limit exceeded for anthropic", 30);
+        }).when(aiService).compareModelsSerialized(any(ChatRequest.class), any());
+
+        MvcResult result = mockMvc.perform(post("/api/llm/compare/stream")
+                                                   .contentType(MediaType.APPLICATION_JSON)
+                                                   .accept(MediaType.APPLICATION_NDJSON)
+                                                   .content(objectMapper.writeValueAsString(request)))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+
+        String[] lines = mockMvc.perform(asyncDispatch(result))
+                                .andExpect(status().isOk())
+                                .andReturn()
+                                .getResponse()
+                                .getContentAsString()
+                                .split("\n");
+
+        assertEquals(2, lines.length);
+        assertEquals(objectMapper.writeValueAsString(openAiResponse), lines[0]);
+        CompareResponse last = objectMapper.readValue(lines[1], CompareResponse.class);
+        assertEquals(429, last.error().status());
+        assertEquals("Provider Rate Limit Exceeded", last.error().error());
+        assertEquals(30L, last.retryAfter());
+    }
+
+    @Test
+    void testStreamCompareModels_Timeout_ReleasesPermit() throws Exception {
+        ChatRequest request = new ChatRequest("What is AI?", List.of("openai"));
+        CompareAdmissionControl admissions = new CompareAdmissionControl(
+                new SimpleMeterRegistry(), ObservationRegistry.NOOP, 1, 0, Duration.ofSeconds(1), Duration.ofSeconds(1)
+        );
+        CountDownLatch finish = new CountDownLatch(1);
+
+        doAnswer(invocation -> admissions.admit(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(admissionControl).admit(any(), any());
+        doAnswer(invocation -> {
+            // Like a provider call that does not react to interrupts, the body keeps running after the timeout.
+            while (true) {
+                try {
+                    return finish.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    // Keep waiting.
+                }
+            }
+        }).when(aiService).compareModelsSerialized(any(ChatRequest.class), any());
+
+        MvcResult result = mockMvc.perform(post("/api/llm/compare/stream")
+                                                   .contentType(MediaType.APPLICATION_JSON)
+                                                   .accept(MediaType.APPLICATION_NDJSON)
+                                                   .content(objectMapper.writeValueAsString(request)))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        try {
+            for (AsyncListener listener : asyncContext.getListeners()) {
+                listener.onTimeout(new AsyncEvent(asyncContext));
+            }
+
+            admissions.admit("next-client", Priority.INTERACTIVE).close();
+        } finally {
+            finish.countDown();
+        }
+    }
+
+    @Test
+    void testStreamCompareModels_ModelNotFound() throws Exception {
+        ChatRequest request = new ChatRequest("What is AI?", List.of("invalid-model"));
+
+        doAnswer(invocation -> {
+            throw new ModelNotFoundException("The following models are not available: invalid-model");
+        }).when(aiService).validateModels(any());
+
+        mockMvc.perform(post("/api/llm/compare/stream")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(request)))
+               .andExpect(status().isNotFound())
+               .andExpect(jsonPath("$.error", is("Model Not Found")));
+    }
+
     @Test
     void testCompareModels_EmptyPrompt() throws Exception {
         ChatRequest request = new ChatRequest("", List.of("openai"));
@@ -161,6 +376,97 @@ class AiControllerTest {
                .andExpect(jsonPath("$.message", containsString("invalid-model")));
     }
 
+    @Test
+    void testCompareModels_Overloaded() throws Exception {
+        ChatRequest request = new ChatRequest("What is AI?", List.of("openai"));
+        QuotaLease quota = mock(QuotaLease.class);
+        when(quotaManager.reserve(any(), any())).thenReturn(quota);
+
+        doThrow(new OverloadedException("Too many comparisons are queued", 10))
+                .when(admissionControl).admit(eq("batch-client"), eq(Priority.BATCH));
+
+        mockMvc.perform(post("/api/llm/compare")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .header("X-Client-Id", "batch-client")
+                                .header("X-Priority", "batch")
+                                .content(objectMapper.writeValueAsString(request)))
+               .andExpect(status().isTooManyRequests())
+               .andExpect(header().string("Retry-After", "10"))
+               .andExpect(jsonPath("$.error", is("Too Many Requests")));
+        verify(quota).refund();
+    }
+
+    @Test
+    void testCompareModels_ShuttingDown() throws Exception {
+        ChatRequest request = new ChatRequest("What is AI?", List.of("openai"));
+
+        doThrow(new ServiceUnavailableException("The server is shutting down, please retry", 1))
+                .when(admissionControl).admit(any(), any());
+
+        mockMvc.perform(post("/api/llm/compare")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(request)))
+               .andExpect(status().isServiceUnavailable())
+               .andExpect(header().string("Retry-After", "1"))
+               .andExpect(jsonPath("$.error", is("Service Unavailable")));
+    }
+
+    @Test
+    void testCompareModels_QuotaExceeded() throws Exception {
+        ChatRequest request = new ChatRequest("What is AI?", List.of("openai"));
+
+        when(quotaManager.reserve(eq("team-key"), eq(List.of("openai"))))
+                .thenThrow(new QuotaExceededException("Token quota of 1000 per PT1M exhausted for openai", 42));
+
+        mockMvc.perform(post("/api/llm/compare")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .header("X-API-Key", "team-key")
+                                .content(objectMapper.writeValueAsString(request)))
+               .andExpect(status().isTooManyRequests())
+               .andExpect(header().string("Retry-After", "42"))
+               .andExpect(jsonPath("$.error", is("Quota Exceeded")));
+    }
+
+    @Test
+    void testCompareModels_ProviderRateLimitExceeded() throws Exception {
+        ChatRequest request = new ChatRequest("What is AI?", List.of("openai"));
+
+        when(aiService.compareModels(any(ChatRequest.class)))
+                .thenThrow(new ProviderRateLimitExceededException("Rate limit of openai exceeded", 7));
+
+        mockMvc.perform(post("/api/llm/compare")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(request)))
+               .andExpect(status().isTooManyRequests())
+               .andExpect(header().string("Retry-After", "7"))
+               .andExpect(jsonPath("$.error", is("Provider Rate Limit Exceeded")));
+    }
+
+    @Test
+    void testCompareModels_PromptTooLarge() throws Exception {
+        ChatRequest request = new ChatRequest("What is AI?", List.of("openai"));
+
+        when(aiService.compareModels(any(ChatRequest.class)))
+                .thenThrow(new PromptTooLargeException("Prompt has 9000 tokens but only 8000 fit"));
+
+        mockMvc.perform(post("/api/llm/compare")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(request)))
+               .andExpect(status().isPayloadTooLarge())
+               .andExpect(jsonPath("$.error", is("Prompt Too Large")));
+    }
+
+    @Test
+    void testCompareModels_UnknownPriority() throws Exception {
+        ChatRequest request = new ChatRequest("What is AI?", List.of("openai"));
+
+        mockMvc.perform(post("/api/llm/compare")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .header("X-Priority", "urgent")
+                                .content(objectMapper.writeValueAsString(request)))
+               .andExpect(status().isBadRequest());
+    }
+
     @Test
     void testCompareModels_InvalidJson() throws Exception {
         mockMvc.perform(post("/api/llm/compare")
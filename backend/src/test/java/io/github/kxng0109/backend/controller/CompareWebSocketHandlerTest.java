@@ -0,0 +1,260 @@
+package io.github.kxng0109.backend.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.backend.config.WebSocketProperties;
+import io.github.kxng0109.backend.error.QuotaExceededException;
+import io.github.kxng0109.backend.service.AiService;
+import io.github.kxng0109.backend.service.admission.CompareAdmissionControl;
+import io.github.kxng0109.backend.service.admission.Priority;
+import io.github.kxng0109.backend.service.quota.QuotaLease;
+import io.github.kxng0109.backend.service.quota.QuotaManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CompareWebSocketHandlerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<JsonNode> sent = new CopyOnWriteArrayList<>();
+
+    @Mock
+    private AiService aiService;
+
+    @Mock
+    private CompareAdmissionControl admissionControl;
+
+    @Mock
+    private QuotaManager quotaManager;
+
+    @Mock
+    private WebSocketSession session;
+
+    private CompareWebSocketHandler handler;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        handler = new CompareWebSocketHandler(
+                aiService,
+                admissionControl,
+                quotaManager,
+                objectMapper,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                new WebSocketProperties(2, Duration.ofSeconds(5), DataSize.ofKilobytes(64), DataSize.ofKilobytes(16))
+        );
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-API-Key", "team-a");
+        when(session.getId()).thenReturn("session-1");
+        when(session.getHandshakeHeaders()).thenReturn(headers);
+
+        handler.afterConnectionEstablished(session);
+    }
+
+    @AfterEach
+    void tearDown() {
+        handler.shutdown();
+    }
+
+    @Test
+    void testCompare_SendsEachResponseThenDone() throws Exception {
+        recordSentMessages(session);
+        admitComparisons();
+        doAnswer(invocation -> {
+            Consumer<byte[]> onResponse = invocation.getArgument(1);
+            onResponse.accept("{\"llm\":\"openai\",\"response\":\"Hi\"}".getBytes(StandardCharsets.UTF_8));
+            onResponse.accept("{\"llm\":\"ollama\",\"response\":\"Hello\"}".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(aiService).compareModelsSerialized(any(), any());
+
+        send("{\"type\":\"compare\",\"id\":\"q1\",\"request\":{\"prompt\":\"Hi\",\"llms\":[\"openai\",\"ollama\"]}}");
+
+        awaitSent(3);
+        assertEquals("response", sent.get(0).get("type").asText());
+        assertEquals("q1", sent.get(0).get("id").asText());
+        assertEquals("openai", sent.get(0).get("response").get("llm").asText());
+        assertEquals("ollama", sent.get(1).get("response").get("llm").asText());
+        assertEquals("done", sent.get(2).get("type").asText());
+        verify(quotaManager).reserve(eq("team-a"), eq(List.of("openai", "ollama")));
+        verify(admissionControl).admit(eq("session-1"), eq(Priority.INTERACTIVE));
+    }
+
+    @Test
+    void testCompare_TakesCredentialsFromQueryParametersAndPriorityFromMessage() throws Exception {
+        admitComparisons();
+        WebSocketSession browserSession = mock(WebSocketSession.class);
+        when(browserSession.getId()).thenReturn("session-2");
+        when(browserSession.getHandshakeHeaders()).thenReturn(new HttpHeaders());
+        when(browserSession.getUri()).thenReturn(URI.create("ws://localhost/api/llm/ws?apiKey=team%20b&clientId=alice"));
+        recordSentMessages(browserSession);
+        handler.afterConnectionEstablished(browserSession);
+
+        handler.handleMessage(browserSession, new TextMessage(
+                "{\"type\":\"compare\",\"id\":\"q1\",\"priority\":\"batch\",\"request\":{\"prompt\":\"Hi\",\"llms\":[\"openai\"]}}"
+        ));
+
+        awaitSent(1);
+        assertEquals("done", sent.getFirst().get("type").asText());
+        verify(quotaManager).reserve(eq("team b"), eq(List.of("openai")));
+        verify(admissionControl).admit(eq("alice"), eq(Priority.BATCH));
+    }
+
+    @Test
+    void testCancel_StopsFurtherMessagesForComparison() throws Exception {
+        recordSentMessages(session);
+        admitComparisons();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch refused = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            Consumer<byte[]> onResponse = invocation.getArgument(1);
+            started.countDown();
+            // Like a provider call that does not react to interrupts, the response arrives after the cancellation.
+            while (true) {
+                try {
+                    release.await();
+                    break;
+                } catch (InterruptedException e) {
+                    // Keep waiting.
+                }
+            }
+            try {
+                onResponse.accept("{\"llm\":\"openai\",\"response\":\"Hi\"}".getBytes(StandardCharsets.UTF_8));
+            } catch (CancellationException e) {
+                refused.countDown();
+                throw e;
+            }
+            return null;
+        }).when(aiService).compareModelsSerialized(any(), any());
+
+        send("{\"type\":\"compare\",\"id\":\"q1\",\"request\":{\"prompt\":\"Hi\",\"llms\":[\"openai\"]}}");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        send("{\"type\":\"cancel\",\"id\":\"q1\"}");
+        release.countDown();
+
+        assertTrue(refused.await(5, TimeUnit.SECONDS));
+        assertEquals(1, sent.size());
+        assertEquals("cancelled", sent.getFirst().get("type").asText());
+        assertEquals("q1", sent.getFirst().get("id").asText());
+    }
+
+    @Test
+    void testCompare_WhenQuotaExceeded_SendsErrorWithRetryAfter() throws Exception {
+        recordSentMessages(session);
+        when(quotaManager.reserve(any(), any())).thenThrow(new QuotaExceededException("Quota exhausted", 30));
+
+        send("{\"type\":\"compare\",\"id\":\"q1\",\"request\":{\"prompt\":\"Hi\",\"llms\":[\"openai\"]}}");
+
+        awaitSent(1);
+        assertEquals("error", sent.getFirst().get("type").asText());
+        assertEquals(429, sent.getFirst().get("error").get("status").asInt());
+        assertEquals(30, sent.getFirst().get("retryAfter").asLong());
+        verify(aiService, never()).compareModelsSerialized(any(), any());
+    }
+
+    @Test
+    void testInvalidMessages_AreAnsweredWithErrors() throws Exception {
+        recordSentMessages(session);
+        send("{\"type\":\"ping\",\"id\":\"p1\"}");
+        send("{not json");
+        send("{\"type\":\"compare\",\"id\":\"q1\",\"request\":{\"prompt\":\"\",\"llms\":[\"openai\"]}}");
+        send("{\"type\":\"subscribe\",\"id\":\"q2\"}");
+        send("{\"type\":\"cancel\",\"id\":\"unknown\"}");
+
+        assertEquals(5, sent.size());
+        assertEquals("pong", sent.get(0).get("type").asText());
+        assertEquals("Malformed JSON", sent.get(1).get("error").get("error").asText());
+        assertEquals("Validation Failed", sent.get(2).get("error").get("error").asText());
+        assertTrue(sent.get(2).get("error").get("details").has("prompt"));
+        assertEquals(400, sent.get(3).get("error").get("status").asInt());
+        assertEquals(404, sent.get(4).get("error").get("status").asInt());
+        verifyNoInteractions(aiService);
+    }
+
+    @Test
+    void testConnectionClose_CancelsRunningComparisons() throws Exception {
+        admitComparisons();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            try {
+                Thread.sleep(Duration.ofSeconds(5));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return null;
+        }).when(aiService).compareModelsSerialized(any(), any());
+
+        send("{\"type\":\"compare\",\"id\":\"q1\",\"request\":{\"prompt\":\"Hi\",\"llms\":[\"openai\"]}}");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        handler.afterConnectionClosed(session, CloseStatus.GOING_AWAY);
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Lets comparisons through the quota and admission control.
+     */
+    private void admitComparisons() {
+        when(quotaManager.reserve(any(), any())).thenReturn(QuotaLease.UNLIMITED);
+        CompareAdmissionControl admissions = new CompareAdmissionControl(
+                new SimpleMeterRegistry(), ObservationRegistry.NOOP, 4, 0, Duration.ofSeconds(1), Duration.ofSeconds(1)
+        );
+        when(admissionControl.admit(any(), any())).thenAnswer(invocation -> admissions.admit(
+                invocation.getArgument(0, String.class),
+                invocation.getArgument(1, Priority.class)
+        ));
+    }
+
+    private void recordSentMessages(WebSocketSession webSocketSession) throws Exception {
+        doAnswer(invocation -> {
+            WebSocketMessage<?> message = invocation.getArgument(0);
+            sent.add(objectMapper.readTree(((TextMessage) message).getPayload()));
+            return null;
+        }).when(webSocketSession).sendMessage(any());
+    }
+
+    private void send(String payload) throws Exception {
+        handler.handleMessage(session, new TextMessage(payload));
+    }
+
+    private void awaitSent(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sent.size() < count) {
+            if (System.nanoTime() > deadline) {
+                fail("Timed out waiting for " + count + " message(s)");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
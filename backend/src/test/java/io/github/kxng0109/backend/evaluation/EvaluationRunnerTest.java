@@ -0,0 +1,149 @@
+package io.github.kxng0109.backend.evaluation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.backend.config.EvaluationProperties;
+import io.github.kxng0109.backend.model.dto.ChatRequest;
+import io.github.kxng0109.backend.model.dto.ModelMetadata;
+import io.github.kxng0109.backend.model.dto.ModelResponse;
+import io.github.kxng0109.backend.service.AiService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class EvaluationRunnerTest {
+
+    @Mock
+    private AiService aiService;
+
+    @TempDir
+    private Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private EvaluationRunner evaluationRunner;
+
+    @BeforeEach
+    void setUp() {
+        evaluationRunner = new EvaluationRunner(aiService, objectMapper);
+    }
+
+    @Test
+    void testRun_WritesResultsAndSummary() throws Exception {
+        Path input = directory.resolve("suite.jsonl");
+        Files.writeString(input, """
+                {"id": "a", "prompt": "First prompt"}
+                {"id": "b", "prompt": "Second prompt", "llms": ["openai"]}
+
+                {"id": "c"}
+                """);
+        when(aiService.compareModelsUncached(any(ChatRequest.class))).thenAnswer(invocation -> {
+            ChatRequest chatRequest = invocation.getArgument(0);
+            return List.of(response(chatRequest.llms().getFirst(), 100L));
+        });
+
+        EvaluationSummary summary = evaluationRunner.run(properties(input));
+
+        assertEquals(2, summary.prompts());
+        assertEquals(0, summary.skipped());
+        assertEquals(1, summary.failed());
+        assertEquals(List.of("ollama", "openai"),
+                     summary.models().stream().map(EvaluationSummary.ModelSummary::llm).toList());
+        assertEquals(100, summary.models().getFirst().p95LatencyMs());
+        assertEquals(10, summary.models().getFirst().generationTokens());
+
+        List<String> results = Files.readAllLines(directory.resolve("suite.results.jsonl"));
+        assertEquals(2, results.size());
+        assertTrue(Files.exists(directory.resolve("suite.results.summary.json")));
+        verify(aiService).compareModelsUncached(argThat(request -> request.llms().equals(List.of("openai"))));
+    }
+
+    @Test
+    void testRun_ResumesFromExistingOutput() throws Exception {
+        Path input = directory.resolve("suite.jsonl");
+        Files.writeString(input, """
+                {"id": "a", "prompt": "First prompt"}
+                {"id": "b", "prompt": "Second prompt"}
+                """);
+        Files.writeString(directory.resolve("suite.results.jsonl"), """
+                {"id":"a","prompt":"First prompt","responses":[]}
+                {"id":"b","prompt":"Sec""");
+        when(aiService.compareModelsUncached(any(ChatRequest.class))).thenReturn(List.of(response("ollama", 50L)));
+
+        EvaluationSummary summary = evaluationRunner.run(properties(input));
+
+        assertEquals(1, summary.prompts());
+        assertEquals(1, summary.skipped());
+        verify(aiService, times(1)).compareModelsUncached(any(ChatRequest.class));
+        verify(aiService, never()).compareModelsUncached(argThat(request -> request.prompt().equals("First prompt")));
+        assertEquals(3, Files.readAllLines(directory.resolve("suite.results.jsonl")).size());
+    }
+
+    @Test
+    void testRun_ResumeRetriesPromptsWithErrorResponses() throws Exception {
+        Path input = directory.resolve("suite.jsonl");
+        Files.writeString(input, """
+                {"id": "a", "prompt": "First prompt"}
+                {"id": "b", "prompt": "Second prompt"}
+                """);
+        Files.writeString(directory.resolve("suite.results.jsonl"), """
+                {"id":"a","prompt":"First prompt","responses":[{"llm":"ollama","response":"Answer","metadata":{"responseTime":50}}]}
+                {"id":"b","prompt":"Second prompt","responses":[{"llm":"ollama","response":"Error: Service unavailable","metadata":null}]}
+                """);
+        when(aiService.compareModelsUncached(any(ChatRequest.class))).thenReturn(List.of(response("ollama", 50L)));
+
+        EvaluationSummary summary = evaluationRunner.run(properties(input));
+
+        assertEquals(1, summary.prompts());
+        assertEquals(1, summary.skipped());
+        verify(aiService).compareModelsUncached(argThat(request -> request.prompt().equals("Second prompt")));
+        verify(aiService, never()).compareModelsUncached(argThat(request -> request.prompt().equals("First prompt")));
+    }
+
+    @Test
+    void testRun_CountsErrorResponses() throws Exception {
+        Path input = directory.resolve("suite.jsonl");
+        Files.writeString(input, "{\"id\": \"a\", \"prompt\": \"First prompt\"}\n");
+        when(aiService.compareModelsUncached(any(ChatRequest.class))).thenReturn(List.of(
+                ModelResponse.builder().llm("ollama").response("Error: Service unavailable").build()
+        ));
+
+        EvaluationSummary summary = evaluationRunner.run(properties(input));
+
+        assertEquals(1, summary.models().getFirst().errors());
+        assertEquals(0, summary.models().getFirst().responses());
+    }
+
+    private EvaluationProperties properties(Path input) {
+        return new EvaluationProperties(input, null, List.of("ollama"), 2, "id", "prompt", null);
+    }
+
+    private ModelResponse response(String llm, long responseTime) {
+        return ModelResponse.builder()
+                            .llm(llm)
+                            .response("Answer")
+                            .metadata(ModelMetadata.builder()
+                                                   .promptTokens(5)
+                                                   .generationTokens(10)
+                                                   .totalTokens(15)
+                                                   .responseTime(responseTime)
+                                                   .build())
+                            .build();
+    }
+}
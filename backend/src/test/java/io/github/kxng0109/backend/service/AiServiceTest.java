@@ -1,28 +1,59 @@
 package io.github.kxng0109.backend.service;
 
+import io.github.kxng0109.backend.config.QuotaProperties;
 import io.github.kxng0109.backend.error.ModelNotFoundException;
+import io.github.kxng0109.backend.error.PromptTooLargeException;
+import io.github.kxng0109.backend.error.ProviderRateLimitExceededException;
+import io.github.kxng0109.backend.error.QuotaExceededException;
 import io.github.kxng0109.backend.model.dto.ChatRequest;
 import io.github.kxng0109.backend.model.dto.ModelResponse;
+import io.github.kxng0109.backend.service.admission.CancellationToken;
+import io.github.kxng0109.backend.service.admission.CompareAdmissionControl;
+import io.github.kxng0109.backend.service.admission.Priority;
+import io.github.kxng0109.backend.service.analysis.SimilarityAnalyzer;
+import io.github.kxng0109.backend.service.prompt.PromptTemplateRegistry;
+import io.github.kxng0109.backend.service.quota.QuotaLease;
+import io.github.kxng0109.backend.service.quota.QuotaManager;
+import io.github.kxng0109.backend.service.session.ConversationMemory;
+import io.github.kxng0109.backend.service.session.ConversationTurn;
+import io.github.kxng0109.backend.service.token.PreparedPrompt;
+import io.github.kxng0109.backend.service.token.TokenEstimator;
+import io.github.kxng0109.backend.service.tool.ModelTools;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
 import org.springframework.ai.chat.metadata.ChatResponseMetadata;
 import org.springframework.ai.chat.metadata.DefaultUsage;
 import org.springframework.ai.chat.metadata.EmptyRateLimit;
+import org.springframework.ai.chat.metadata.Usage;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.tool.ToolCallback;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -30,6 +61,8 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class AiServiceTest {
 
+    private static final String SYSTEM_MESSAGE = "You are a helpful assistant.";
+
     @Mock
     private Map<String, ChatClient> chatClients;
 
@@ -42,6 +75,30 @@ class AiServiceTest {
     @Mock
     private ChatClient ollamaChatClient;
 
+    @Mock
+    private ResponseCache responseCache;
+
+    @Mock
+    private ProviderRateLimiter providerRateLimiter;
+
+    @Mock
+    private PromptTemplateRegistry promptTemplateRegistry;
+
+    @Mock
+    private TokenEstimator tokenEstimator;
+
+    @Mock
+    private SimilarityAnalyzer similarityAnalyzer;
+
+    @Mock
+    private ConversationMemory conversationMemory;
+
+    @Mock
+    private ModelTools modelTools;
+
+    @Spy
+    private ObservationRegistry observationRegistry = ObservationRegistry.create();
+
     @InjectMocks
     private AiService aiService;
 
@@ -75,8 +132,11 @@ class AiServiceTest {
 
         when(chatClients.containsKey("openai")).thenReturn(true);
         when(chatClients.get("openai")).thenReturn(openAiChatClient);
+        when(promptTemplateRegistry.render(eq("openai"), any(), any())).thenReturn(SYSTEM_MESSAGE);
+        when(tokenEstimator.prepare("openai", SYSTEM_MESSAGE, prompt))
+                .thenReturn(new PreparedPrompt(prompt, 12, 0.00003, false));
         when(openAiChatClient.prompt()).thenReturn(requestSpec);
-        when(requestSpec.system(anyString())).thenReturn(requestSpec);
+        when(requestSpec.system(SYSTEM_MESSAGE)).thenReturn(requestSpec);
         when(requestSpec.user(eq(prompt))).thenReturn(requestSpec);
         when(requestSpec.call()).thenReturn(callResponseSpec);
 
@@ -95,11 +155,154 @@ class AiServiceTest {
         assertEquals(1, responses.size());
         assertEquals("openai", responses.getFirst().llm());
         assertTrue(responses.getFirst().response().contains("artificial intelligence"));
+        assertEquals(12, responses.getFirst().metadata().estimatedPromptTokens());
 
         verify(chatClients).containsKey("openai");
         verify(chatClients).get("openai");
     }
 
+    @Test
+    void testCompareModelsUncached_BypassesResponseCache() {
+        String prompt = "What is AI?";
+        ChatRequest chatRequest = new ChatRequest(prompt, List.of("openai"));
+
+        ChatClient.ChatClientRequestSpec requestSpec = mock(ChatClient.ChatClientRequestSpec.class);
+        ChatClient.CallResponseSpec callResponseSpec = mock(ChatClient.CallResponseSpec.class);
+
+        when(chatClients.containsKey("openai")).thenReturn(true);
+        when(chatClients.get("openai")).thenReturn(openAiChatClient);
+        when(promptTemplateRegistry.render(eq("openai"), any(), any())).thenReturn(SYSTEM_MESSAGE);
+        when(tokenEstimator.prepare("openai", SYSTEM_MESSAGE, prompt))
+                .thenReturn(new PreparedPrompt(prompt, 12, 0.00003, false));
+        when(openAiChatClient.prompt()).thenReturn(requestSpec);
+        when(requestSpec.system(SYSTEM_MESSAGE)).thenReturn(requestSpec);
+        when(requestSpec.user(eq(prompt))).thenReturn(requestSpec);
+        when(requestSpec.call()).thenReturn(callResponseSpec);
+        when(callResponseSpec.chatResponse()).thenReturn(createMockChatResponse("AI is...", "gpt-4", 100, 200, 300));
+
+        List<ModelResponse> responses = aiService.compareModelsUncached(chatRequest);
+
+        assertEquals("AI is...", responses.getFirst().response());
+        assertNotNull(responses.getFirst().metadata().responseTime());
+        verifyNoInteractions(responseCache);
+    }
+
+    @Test
+    void testCompareModels_UsageWithoutTokenCounts_CountsZero() {
+        String prompt = "What is AI?";
+        ChatRequest chatRequest = new ChatRequest(prompt, List.of("openai"));
+
+        ChatClient.ChatClientRequestSpec requestSpec = mock(ChatClient.ChatClientRequestSpec.class);
+        ChatClient.CallResponseSpec callResponseSpec = mock(ChatClient.CallResponseSpec.class);
+        Usage usage = new Usage() {
+            @Override
+            public Integer getPromptTokens() {
+                return null;
+            }
+
+            @Override
+            public Integer getCompletionTokens() {
+                return null;
+            }
+
+            @Override
+            public Object getNativeUsage() {
+                return null;
+            }
+        };
+
+        when(chatClients.containsKey("openai")).thenReturn(true);
+        when(chatClients.get("openai")).thenReturn(openAiChatClient);
+        when(promptTemplateRegistry.render(eq("openai"), any(), any())).thenReturn(SYSTEM_MESSAGE);
+        when(tokenEstimator.prepare("openai", SYSTEM_MESSAGE, prompt))
+                .thenReturn(new PreparedPrompt(prompt, 12, 0.00003, false));
+        when(openAiChatClient.prompt()).thenReturn(requestSpec);
+        when(requestSpec.system(SYSTEM_MESSAGE)).thenReturn(requestSpec);
+        when(requestSpec.user(eq(prompt))).thenReturn(requestSpec);
+        when(requestSpec.call()).thenReturn(callResponseSpec);
+        when(callResponseSpec.chatResponse()).thenReturn(createMockChatResponse("AI is...", "gpt-4", usage));
+
+        List<ModelResponse> responses = aiService.compareModels(chatRequest);
+
+        assertEquals("AI is...", responses.getFirst().response());
+        assertEquals(0, responses.getFirst().metadata().promptTokens());
+        assertEquals(0, responses.getFirst().metadata().generationTokens());
+        assertNull(responses.getFirst().metadata().tokensPerSecond());
+    }
+
+    @Test
+    void testCompareModels_WithToolsConfigured_OffersToolsToModel() {
+        String prompt = "What is 17 * 23?";
+        ChatRequest chatRequest = new ChatRequest(prompt, List.of("openai"));
+        List<ToolCallback> tools = List.of(mock(ToolCallback.class));
+
+        ChatClient.ChatClientRequestSpec requestSpec = mock(ChatClient.ChatClientRequestSpec.class);
+        ChatClient.CallResponseSpec callResponseSpec = mock(ChatClient.CallResponseSpec.class);
+
+        when(chatClients.containsKey("openai")).thenReturn(true);
+        when(chatClients.get("openai")).thenReturn(openAiChatClient);
+        when(modelTools.forModel("openai")).thenReturn(tools);
+        when(promptTemplateRegistry.render(eq("openai"), any(), any())).thenReturn(SYSTEM_MESSAGE);
+        when(tokenEstimator.prepare("openai", SYSTEM_MESSAGE, prompt))
+                .thenReturn(new PreparedPrompt(prompt, 12, 0.00003, false));
+        when(openAiChatClient.prompt()).thenReturn(requestSpec);
+        when(requestSpec.system(SYSTEM_MESSAGE)).thenReturn(requestSpec);
+        when(requestSpec.toolCallbacks(tools)).thenReturn(requestSpec);
+        when(requestSpec.user(eq(prompt))).thenReturn(requestSpec);
+        when(requestSpec.call()).thenReturn(callResponseSpec);
+        when(callResponseSpec.chatResponse()).thenReturn(createMockChatResponse("391", "gpt-4", 100, 5, 105));
+
+        List<ModelResponse> responses = aiService.compareModels(chatRequest);
+
+        assertEquals("391", responses.getFirst().response());
+        assertNull(responses.getFirst().metadata().toolCalls());
+        verify(requestSpec).toolCallbacks(tools);
+    }
+
+    @Test
+    void testCompareModels_RecordsModelCallsUnderCurrentObservation() {
+        String prompt = "What is AI?";
+        ChatRequest chatRequest = new ChatRequest(prompt, List.of("openai", "anthropic"));
+        List<Observation.Context> stopped = new CopyOnWriteArrayList<>();
+        observationRegistry.observationConfig().observationHandler(new ObservationHandler<>() {
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return true;
+            }
+
+            @Override
+            public void onStop(Observation.Context context) {
+                stopped.add(context);
+            }
+        });
+
+        for (String llm : List.of("openai", "anthropic")) {
+            when(chatClients.containsKey(llm)).thenReturn(true);
+            when(promptTemplateRegistry.render(eq(llm), any(), any())).thenReturn(SYSTEM_MESSAGE);
+            when(tokenEstimator.prepare(llm, SYSTEM_MESSAGE, prompt))
+                    .thenReturn(new PreparedPrompt(prompt, 12, 0.00003, false));
+            when(responseCache.get(llm, SYSTEM_MESSAGE, prompt))
+                    .thenReturn(Optional.of(ModelResponse.builder().llm(llm).response("Cached").build()));
+        }
+
+        Observation request = Observation.start("http.server.requests", observationRegistry);
+        try (Observation.Scope scope = request.openScope()) {
+            aiService.compareModels(chatRequest);
+        } finally {
+            request.stop();
+        }
+
+        List<Observation.Context> modelCalls = stopped.stream()
+                                                      .filter(context -> context.getName().equals("llm.model.call"))
+                                                      .toList();
+        assertEquals(2, modelCalls.size());
+        for (Observation.Context modelCall : modelCalls) {
+            assertSame(request, modelCall.getParentObservation());
+            assertEquals("true", modelCall.getLowCardinalityKeyValue("cached").getValue());
+        }
+        verify(chatClients, never()).get(anyString());
+    }
+
     @Test
     void testCompareModels_WithInvalidModel_ThrowsException() {
         String prompt = "What is AI?";
@@ -114,6 +317,76 @@ class AiServiceTest {
         );
     }
 
+    @Test
+    void testCompareModels_WithUnknownSystemPrompt_ThrowsException() {
+        ChatRequest chatRequest = new ChatRequest("What is AI?", List.of("openai"), "missing", null);
+
+        when(chatClients.containsKey("openai")).thenReturn(true);
+        doThrow(new IllegalArgumentException("Unknown system prompt: missing"))
+                .when(promptTemplateRegistry).validate("missing");
+
+        assertThrows(IllegalArgumentException.class, () -> aiService.compareModels(chatRequest));
+        verify(chatClients, never()).get(anyString());
+    }
+
+    @Test
+    void testCompareModels_TokenQuotaExceeded_RejectsRequest() {
+        String prompt = "What is AI?";
+        ChatRequest chatRequest = new ChatRequest(prompt, List.of("openai"));
+        QuotaManager quotaManager = new QuotaManager(
+                new QuotaProperties(true, Duration.ofMinutes(1), Map.of("openai", new QuotaProperties.Limit(0, 10)), null),
+                new SimpleMeterRegistry()
+        );
+
+        when(chatClients.containsKey("openai")).thenReturn(true);
+        when(promptTemplateRegistry.render(eq("openai"), any(), any())).thenReturn(SYSTEM_MESSAGE);
+        when(tokenEstimator.prepare("openai", SYSTEM_MESSAGE, prompt))
+                .thenReturn(new PreparedPrompt(prompt, 12, 0.00003, false));
+        when(responseCache.get("openai", SYSTEM_MESSAGE, prompt)).thenReturn(Optional.empty());
+
+        try (QuotaLease.Scope scope = quotaManager.reserve("team-a", List.of("openai")).open()) {
+            assertThrows(QuotaExceededException.class, () -> aiService.compareModels(chatRequest));
+        }
+        verify(chatClients, never()).get(anyString());
+    }
+
+    @Test
+    void testCompareModels_ProviderRateLimitExceeded_RejectsRequest() {
+        String prompt = "What is AI?";
+        ChatRequest chatRequest = new ChatRequest(prompt, List.of("openai"));
+
+        when(chatClients.containsKey("openai")).thenReturn(true);
+        when(promptTemplateRegistry.render(eq("openai"), any(), any())).thenReturn(SYSTEM_MESSAGE);
+        when(tokenEstimator.prepare("openai", SYSTEM_MESSAGE, prompt))
+                .thenReturn(new PreparedPrompt(prompt, 3, 0.00003, false));
+        when(responseCache.get("openai", SYSTEM_MESSAGE, prompt)).thenReturn(Optional.empty());
+        doThrow(new ProviderRateLimitExceededException("Rate limit of openai exceeded", 12))
+                .when(providerRateLimiter).acquire("openai");
+
+        ProviderRateLimitExceededException exception = assertThrows(
+                ProviderRateLimitExceededException.class,
+                () -> aiService.compareModels(chatRequest)
+        );
+
+        assertEquals(12, exception.getRetryAfterSeconds());
+        verify(chatClients, never()).get(anyString());
+    }
+
+    @Test
+    void testCompareModels_PromptTooLarge_RejectsRequestWithoutCallingModel() {
+        String prompt = "What is AI?";
+        ChatRequest chatRequest = new ChatRequest(prompt, List.of("openai"));
+
+        when(chatClients.containsKey("openai")).thenReturn(true);
+        when(promptTemplateRegistry.render(eq("openai"), any(), any())).thenReturn(SYSTEM_MESSAGE);
+        when(tokenEstimator.prepare("openai", SYSTEM_MESSAGE, prompt))
+                .thenThrow(new PromptTooLargeException("Prompt has 9000 tokens but only 8000 fit"));
+
+        assertThrows(PromptTooLargeException.class, () -> aiService.compareModels(chatRequest));
+        verify(chatClients, never()).get(anyString());
+        verifyNoInteractions(providerRateLimiter);
+    }
+
     @Test
     void testSendMessage() {
         String llmName = "openai";
@@ -122,8 +395,9 @@ class AiServiceTest {
         ChatClient.ChatClientRequestSpec requestSpec = mock(ChatClient.ChatClientRequestSpec.class);
         ChatClient.CallResponseSpec callResponseSpec = mock(ChatClient.CallResponseSpec.class);
 
+        when(promptTemplateRegistry.renderDefault()).thenReturn(SYSTEM_MESSAGE);
         when(openAiChatClient.prompt()).thenReturn(requestSpec);
-        when(requestSpec.system(anyString())).thenReturn(requestSpec);
+        when(requestSpec.system(SYSTEM_MESSAGE)).thenReturn(requestSpec);
         when(requestSpec.user(eq(prompt))).thenReturn(requestSpec);
         when(requestSpec.call()).thenReturn(callResponseSpec);
 
@@ -142,10 +416,45 @@ class AiServiceTest {
         assertEquals("Hello! How can I help you?",
                      actualResponse.getResult().getOutput().getText()
         );
-        verify(requestSpec).system(anyString());
+        verify(requestSpec).system(SYSTEM_MESSAGE);
         verify(requestSpec).user(eq(prompt));
     }
 
+    @Test
+    void testCompareModels_WithSession_SendsHistoryAndRecordsTurn() {
+        String prompt = "And in physics?";
+        ChatRequest chatRequest = new ChatRequest(prompt, List.of("openai"), null, null, "session-1");
+
+        ChatClient.ChatClientRequestSpec requestSpec = mock(ChatClient.ChatClientRequestSpec.class);
+        ChatClient.CallResponseSpec callResponseSpec = mock(ChatClient.CallResponseSpec.class);
+        List<Message> history = List.of(
+                new UserMessage("What is entropy?"),
+                new AssistantMessage("A measure of uncertainty.")
+        );
+
+        when(chatClients.containsKey("openai")).thenReturn(true);
+        when(chatClients.get("openai")).thenReturn(openAiChatClient);
+        when(promptTemplateRegistry.render(eq("openai"), any(), any())).thenReturn(SYSTEM_MESSAGE);
+        when(conversationMemory.history("session-1", "openai"))
+                .thenReturn(List.of(new ConversationTurn("What is entropy?", "A measure of uncertainty.", 10)));
+        when(tokenEstimator.prepare("openai", SYSTEM_MESSAGE, 10, prompt))
+                .thenReturn(new PreparedPrompt(prompt, 25, null, false));
+        when(openAiChatClient.prompt()).thenReturn(requestSpec);
+        when(requestSpec.system(SYSTEM_MESSAGE)).thenReturn(requestSpec);
+        when(requestSpec.messages(history)).thenReturn(requestSpec);
+        when(requestSpec.user(eq(prompt))).thenReturn(requestSpec);
+        when(requestSpec.call()).thenReturn(callResponseSpec);
+        when(callResponseSpec.chatResponse()).thenReturn(
+                createMockChatResponse("The same idea, for microstates.", "gpt-4", 25, 8, 33)
+        );
+
+        List<ModelResponse> responses = aiService.compareModels(chatRequest);
+
+        assertEquals("The same idea, for microstates.", responses.getFirst().response());
+        verify(conversationMemory).append("session-1", "openai", prompt, "The same idea, for microstates.");
+        verifyNoInteractions(responseCache);
+    }
+
     @Test
     void testCompareModels_HandlesException() {
         String prompt = "What is AI?";
@@ -157,8 +466,11 @@ class AiServiceTest {
 
         when(chatClients.containsKey("openai")).thenReturn(true);
         when(chatClients.get("openai")).thenReturn(openAiChatClient);
+        when(promptTemplateRegistry.render(eq("openai"), any(), any())).thenReturn(SYSTEM_MESSAGE);
+        when(tokenEstimator.prepare("openai", SYSTEM_MESSAGE, prompt))
+                .thenReturn(new PreparedPrompt(prompt, 12, 0.00003, false));
         when(openAiChatClient.prompt()).thenReturn(requestSpec);
-        when(requestSpec.system(anyString())).thenReturn(requestSpec);
+        when(requestSpec.system(SYSTEM_MESSAGE)).thenReturn(requestSpec);
         when(requestSpec.user(eq(prompt))).thenReturn(requestSpec);
         when(requestSpec.call()).thenReturn(callResponseSpec);
         when(callResponseSpec.chatResponse()).thenThrow(new RuntimeException("API Error"));
@@ -170,9 +482,77 @@ class AiServiceTest {
         assertTrue(responses.getFirst().response().startsWith("Error:"));
     }
 
+    @Test
+    void testCompareModels_WhenCancelled_InterruptsCallAndReportsReason() throws Exception {
+        String prompt = "What is AI?";
+        ChatRequest chatRequest = new ChatRequest(prompt, List.of("openai"));
+        CancellationToken cancellation = new CompareAdmissionControl(
+                new SimpleMeterRegistry(), ObservationRegistry.NOOP, 1, 0, Duration.ofSeconds(1), Duration.ofSeconds(1)
+        ).admit("client", Priority.INTERACTIVE).cancellation();
+        CountDownLatch called = new CountDownLatch(1);
+
+        ChatClient.ChatClientRequestSpec requestSpec = mock(ChatClient.ChatClientRequestSpec.class);
+
+        when(chatClients.containsKey("openai")).thenReturn(true);
+        when(chatClients.get("openai")).thenReturn(openAiChatClient);
+        when(promptTemplateRegistry.render(eq("openai"), any(), any())).thenReturn(SYSTEM_MESSAGE);
+        when(tokenEstimator.prepare("openai", SYSTEM_MESSAGE, prompt))
+                .thenReturn(new PreparedPrompt(prompt, 12, 0.00003, false));
+        when(openAiChatClient.prompt()).thenReturn(requestSpec);
+        when(requestSpec.system(SYSTEM_MESSAGE)).thenReturn(requestSpec);
+        when(requestSpec.user(eq(prompt))).thenReturn(requestSpec);
+        when(requestSpec.call()).thenAnswer(invocation -> {
+            called.countDown();
+            Thread.sleep(Duration.ofSeconds(10));
+            throw new AssertionError("The call was not interrupted");
+        });
+
+        Thread.startVirtualThread(() -> {
+            try {
+                called.await(5, TimeUnit.SECONDS);
+                cancellation.cancel("The client disconnected");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        List<ModelResponse> responses;
+        try (CancellationToken.Scope scope = cancellation.open()) {
+            responses = aiService.compareModels(chatRequest);
+        }
+
+        assertEquals("Error: The client disconnected", responses.getFirst().response());
+        assertFalse(Thread.interrupted());
+        verify(responseCache, never()).put(anyString(), anyString(), anyString(), any(ModelResponse.class));
+    }
+
+    @Test
+    void testCompareModels_WhenAlreadyCancelled_SkipsModels() {
+        ChatRequest chatRequest = new ChatRequest("What is AI?", List.of("openai", "anthropic"));
+        CancellationToken cancellation = new CompareAdmissionControl(
+                new SimpleMeterRegistry(), ObservationRegistry.NOOP, 1, 0, Duration.ofSeconds(1), Duration.ofSeconds(1)
+        ).admit("client", Priority.INTERACTIVE).cancellation();
+        cancellation.cancel("The server is shutting down");
+
+        when(chatClients.containsKey(anyString())).thenReturn(true);
+
+        List<ModelResponse> responses;
+        try (CancellationToken.Scope scope = cancellation.open()) {
+            responses = aiService.compareModels(chatRequest);
+        }
+
+        assertEquals(2, responses.size());
+        responses.forEach(response -> assertEquals("Error: The server is shutting down", response.response()));
+        verify(chatClients, never()).get(anyString());
+    }
+
     private ChatResponse createMockChatResponse(String content, String model,
                                                 int promptTokens, int completionTokens,
                                                 int totalTokens) {
+        return createMockChatResponse(content, model, new DefaultUsage(promptTokens, completionTokens, totalTokens));
+    }
+
+    private ChatResponse createMockChatResponse(String content, String model, Usage usage) {
         AssistantMessage assistantMessage = new AssistantMessage(content);
 
         ChatGenerationMetadata generationMetadata = ChatGenerationMetadata.builder()
@@ -181,8 +561,6 @@ class AiServiceTest {
 
         Generation generation = new Generation(assistantMessage, generationMetadata);
 
-        DefaultUsage usage = new DefaultUsage(promptTokens, completionTokens, totalTokens);
-
         ChatResponseMetadata metadata = ChatResponseMetadata.builder()
                                                             .model(model)
                                                             .usage(usage)
@@ -0,0 +1,78 @@
+package io.github.kxng0109.backend.service;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.kxng0109.backend.model.dto.ModelResponse;
+import io.github.kxng0109.backend.service.state.InMemorySharedStateStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ResponseCacheTest {
+
+    private static final ModelResponse RESPONSE = new ModelResponse("openai", "AI is...", null);
+
+    private final InMemorySharedStateStore store = new InMemorySharedStateStore();
+
+    @Test
+    void testPutAndGet() {
+        ResponseCache cache = cache(new ObjectMapper(), true);
+
+        cache.put("openai", "system", "What is AI?", RESPONSE);
+
+        assertEquals(Optional.of(RESPONSE), cache.get("openai", "system", "What is AI?"));
+        assertTrue(cache.get("openai", "system", "What is ML?").isEmpty());
+    }
+
+    @Test
+    void testPutSerialized_ServedAsStored() {
+        ResponseCache cache = cache(new ObjectMapper(), true);
+        byte[] json = cache.serialize(RESPONSE);
+
+        cache.put("openai", "system", "What is AI?", json);
+
+        assertSame(json, cache.getSerialized("openai", "system", "What is AI?").orElseThrow());
+        assertEquals(Optional.of(RESPONSE), cache.get("openai", "system", "What is AI?"));
+    }
+
+    @Test
+    void testPut_Disabled_DoesNotSerialize() {
+        ObjectMapper objectMapper = mock(ObjectMapper.class);
+        ResponseCache cache = cache(objectMapper, false);
+
+        cache.put("openai", "system", "What is AI?", RESPONSE);
+        cache.put("openai", "system", "What is AI?", "{}".getBytes(StandardCharsets.UTF_8));
+
+        verifyNoInteractions(objectMapper);
+        assertTrue(cache.getSerialized("openai", "system", "What is AI?").isEmpty());
+    }
+
+    @Test
+    void testPut_SerializationFails_SkipsCaching() throws Exception {
+        ObjectMapper objectMapper = mock(ObjectMapper.class);
+        when(objectMapper.writeValueAsBytes(any())).thenThrow(new JsonMappingException(null, "Cannot serialize"));
+        ResponseCache cache = cache(objectMapper, true);
+
+        cache.put("openai", "system", "What is AI?", RESPONSE);
+
+        assertTrue(cache.getSerialized("openai", "system", "What is AI?").isEmpty());
+    }
+
+    private ResponseCache cache(ObjectMapper objectMapper, boolean enabled) {
+        ResponseCache cache = new ResponseCache(store, objectMapper);
+        ReflectionTestUtils.setField(cache, "enabled", enabled);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofMinutes(10));
+        return cache;
+    }
+}
@@ -0,0 +1,164 @@
+package io.github.kxng0109.backend.service.admission;
+
+import io.github.kxng0109.backend.error.OverloadedException;
+import io.github.kxng0109.backend.error.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompareAdmissionControlTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testAdmit_WithinCapacity() {
+        CompareAdmissionControl admissionControl = create(2, 0, Duration.ofSeconds(1));
+
+        AdmissionPermit first = admissionControl.admit("client", Priority.INTERACTIVE);
+        AdmissionPermit second = admissionControl.admit("client", Priority.INTERACTIVE);
+
+        assertNotNull(first);
+        assertNotNull(second);
+        assertEquals(2, meterRegistry.get("llm.compare.in.flight").gauge().value());
+    }
+
+    @Test
+    void testAdmit_QueueFull_Sheds() {
+        CompareAdmissionControl admissionControl = create(1, 0, Duration.ofSeconds(1));
+        admissionControl.admit("client", Priority.INTERACTIVE);
+
+        OverloadedException exception = assertThrows(
+                OverloadedException.class,
+                () -> admissionControl.admit("client", Priority.INTERACTIVE)
+        );
+
+        assertTrue(exception.getRetryAfterSeconds() >= 1);
+        assertEquals(1, meterRegistry.get("llm.compare.shed").tag("priority", "interactive").counter().count());
+    }
+
+    @Test
+    void testAdmit_WaitExceeded_Sheds() {
+        CompareAdmissionControl admissionControl = create(1, 10, Duration.ofMillis(50));
+        admissionControl.admit("client", Priority.INTERACTIVE);
+
+        assertThrows(OverloadedException.class, () -> admissionControl.admit("client", Priority.INTERACTIVE));
+        assertEquals(0, meterRegistry.get("llm.compare.queue.depth").tag("priority", "interactive").gauge().value());
+    }
+
+    @Test
+    void testRelease_AdmitsInteractiveBeforeBatch() throws Exception {
+        CompareAdmissionControl admissionControl = create(1, 10, Duration.ofSeconds(5));
+        AdmissionPermit running = admissionControl.admit("holder", Priority.INTERACTIVE);
+        List<String> admissionOrder = new CopyOnWriteArrayList<>();
+
+        Thread batch = startWaiter(admissionControl, "batch-client", Priority.BATCH, admissionOrder);
+        awaitQueueDepth(Priority.BATCH, 1);
+        Thread interactive = startWaiter(admissionControl, "user", Priority.INTERACTIVE, admissionOrder);
+        awaitQueueDepth(Priority.INTERACTIVE, 1);
+
+        running.close();
+        batch.join(5000);
+        interactive.join(5000);
+
+        assertEquals(List.of("user", "batch-client"), admissionOrder);
+    }
+
+    @Test
+    void testRelease_ServesClientsRoundRobin() throws Exception {
+        CompareAdmissionControl admissionControl = create(1, 10, Duration.ofSeconds(5));
+        AdmissionPermit running = admissionControl.admit("holder", Priority.BATCH);
+        List<String> admissionOrder = new CopyOnWriteArrayList<>();
+
+        Thread first = startWaiter(admissionControl, "heavy", Priority.BATCH, admissionOrder);
+        awaitQueueDepth(Priority.BATCH, 1);
+        Thread second = startWaiter(admissionControl, "heavy", Priority.BATCH, admissionOrder);
+        awaitQueueDepth(Priority.BATCH, 2);
+        Thread third = startWaiter(admissionControl, "light", Priority.BATCH, admissionOrder);
+        awaitQueueDepth(Priority.BATCH, 3);
+
+        running.close();
+        first.join(5000);
+        second.join(5000);
+        third.join(5000);
+
+        assertEquals(List.of("heavy", "light", "heavy"), admissionOrder);
+    }
+
+    @Test
+    void testDrain_WaitsForRunningComparisonsAndRejectsNewOnes() throws Exception {
+        CompareAdmissionControl admissionControl = create(2, 10, Duration.ofSeconds(5), Duration.ofSeconds(5));
+        AdmissionPermit running = admissionControl.admit("client", Priority.INTERACTIVE);
+        Thread.startVirtualThread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.close();
+        });
+
+        assertEquals(0, admissionControl.drain());
+        assertFalse(running.cancellation().isCancelled());
+        assertThrows(ServiceUnavailableException.class, () -> admissionControl.admit("client", Priority.INTERACTIVE));
+    }
+
+    @Test
+    void testDrain_RejectsQueuedAndCancelsComparisonsRunningPastDeadline() throws Exception {
+        CompareAdmissionControl admissionControl = create(1, 10, Duration.ofSeconds(5), Duration.ofMillis(50));
+        AdmissionPermit running = admissionControl.admit("holder", Priority.INTERACTIVE);
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+        Thread queued = Thread.startVirtualThread(() -> {
+            try {
+                admissionControl.admit("client", Priority.BATCH).close();
+            } catch (RuntimeException e) {
+                failures.add(e);
+            }
+        });
+        awaitQueueDepth(Priority.BATCH, 1);
+
+        assertEquals(1, admissionControl.drain());
+        queued.join(5000);
+
+        assertTrue(running.cancellation().isCancelled());
+        assertEquals(CompareAdmissionControl.SHUTDOWN_REASON, running.cancellation().reason());
+        assertEquals(1, failures.size());
+        assertInstanceOf(ServiceUnavailableException.class, failures.getFirst());
+        assertEquals(0, meterRegistry.get("llm.compare.queue.depth").tag("priority", "batch").gauge().value());
+    }
+
+    private CompareAdmissionControl create(int maxConcurrent, int maxQueued, Duration maxWait) {
+        return create(maxConcurrent, maxQueued, maxWait, Duration.ofSeconds(1));
+    }
+
+    private CompareAdmissionControl create(int maxConcurrent, int maxQueued, Duration maxWait, Duration drainTimeout) {
+        return new CompareAdmissionControl(meterRegistry, ObservationRegistry.NOOP, maxConcurrent, maxQueued, maxWait,
+                                           drainTimeout);
+    }
+
+    private Thread startWaiter(CompareAdmissionControl admissionControl, String clientId,
+                               Priority priority, List<String> admissionOrder) {
+        return Thread.startVirtualThread(() -> {
+            try (AdmissionPermit permit = admissionControl.admit(clientId, priority)) {
+                admissionOrder.add(clientId);
+            }
+        });
+    }
+
+    private void awaitQueueDepth(Priority priority, int depth) throws InterruptedException {
+        String tag = priority.name().toLowerCase();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("llm.compare.queue.depth").tag("priority", tag).gauge().value() < depth) {
+            if (System.nanoTime() > deadline) {
+                fail("Timed out waiting for queue depth " + depth);
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.kxng0109.backend.service.analysis;
+
+import io.github.kxng0109.backend.model.dto.ComparisonAnalysis;
+import io.github.kxng0109.backend.model.dto.ModelMetadata;
+import io.github.kxng0109.backend.model.dto.ModelResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimilarityAccumulatorTest {
+
+    @Test
+    void testResult_IdenticalResponses() {
+        SimilarityAccumulator accumulator = new SimilarityAccumulator(null);
+        accumulator.add(response("openai", "Artificial intelligence is the simulation of human intelligence."));
+        accumulator.add(response("anthropic", "Artificial intelligence is the simulation of human intelligence."));
+
+        ComparisonAnalysis analysis = accumulator.result();
+
+        assertEquals(List.of("openai", "anthropic"), analysis.llms());
+        assertEquals(1.0, analysis.lexicalSimilarity()[0][1], 1e-9);
+        assertEquals(1.0, analysis.consensus(), 1e-9);
+        assertNull(analysis.semanticSimilarity());
+    }
+
+    @Test
+    void testResult_UnrelatedResponses() {
+        SimilarityAccumulator accumulator = new SimilarityAccumulator(null);
+        accumulator.add(response("openai", "The mitochondria is the powerhouse of the cell."));
+        accumulator.add(response("ollama", "Paris has been the capital of France since 987."));
+
+        ComparisonAnalysis analysis = accumulator.result();
+
+        assertEquals(0.0, analysis.lexicalSimilarity()[0][1], 1e-9);
+        assertEquals(analysis.lexicalSimilarity()[0][1], analysis.lexicalSimilarity()[1][0]);
+        assertEquals(1.0, analysis.lexicalSimilarity()[1][1], 1e-9);
+    }
+
+    @Test
+    void testResult_PartialOverlapIsBetweenZeroAndOne() {
+        SimilarityAccumulator accumulator = new SimilarityAccumulator(null);
+        accumulator.add(response("openai", "AI is the simulation of human intelligence by machines."));
+        accumulator.add(response("anthropic", "AI is the simulation of human intelligence by computer systems."));
+        accumulator.add(response("ollama", "Bananas are rich in potassium."));
+
+        ComparisonAnalysis analysis = accumulator.result();
+
+        double similar = analysis.lexicalSimilarity()[0][1];
+        assertTrue(similar > 0 && similar < 1);
+        assertTrue(analysis.agreement()[0] > analysis.agreement()[2]);
+    }
+
+    @Test
+    void testAdd_IgnoresErrorResponses() {
+        SimilarityAccumulator accumulator = new SimilarityAccumulator(null);
+        accumulator.add(response("openai", "AI is artificial intelligence."));
+        accumulator.add(ModelResponse.builder().llm("anthropic").response("Error: API Error").build());
+
+        ComparisonAnalysis analysis = accumulator.result();
+
+        assertEquals(List.of("openai"), analysis.llms());
+        assertEquals(1.0, analysis.consensus(), 1e-9);
+    }
+
+    @Test
+    void testCosine() {
+        assertEquals(1.0, SimilarityAccumulator.cosine(new float[]{1, 2, 3}, new float[]{2, 4, 6}), 1e-6);
+        assertEquals(0.0, SimilarityAccumulator.cosine(new float[]{1, 0}, new float[]{0, 1}), 1e-6);
+    }
+
+    private ModelResponse response(String llm, String text) {
+        return ModelResponse.builder()
+                            .llm(llm)
+                            .response(text)
+                            .metadata(ModelMetadata.builder().model(llm).build())
+                            .build();
+    }
+}
@@ -0,0 +1,217 @@
+package io.github.kxng0109.backend.service.cassette;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestClient;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CassetteReplayServerTest {
+
+    private static final String REQUEST = "{\"model\":\"gpt-4o\",\"messages\":[]}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    private Path directory;
+
+    private CassetteReplayServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void testReplay_ExactMatch() throws Exception {
+        Path cassette = cassette(
+                entry(REQUEST, "{\"answer\":\"exact\"}"),
+                entry("{\"other\":true}", "{\"answer\":\"other\"}")
+        );
+        server = new CassetteReplayServer(objectMapper, cassette, 0);
+
+        String body = replayClient().post()
+                                    .uri("https://api.openai.com/v1/chat/completions")
+                                    .contentType(MediaType.APPLICATION_JSON)
+                                    .body(REQUEST)
+                                    .retrieve()
+                                    .body(String.class);
+
+        assertEquals("{\"answer\":\"exact\"}", body);
+    }
+
+    @Test
+    void testReplay_UnknownBodyRotatesThroughEndpoint() throws Exception {
+        Path cassette = cassette(
+                entry("{\"a\":1}", "{\"answer\":\"first\"}"),
+                entry("{\"b\":2}", "{\"answer\":\"second\"}")
+        );
+        server = new CassetteReplayServer(objectMapper, cassette, 0);
+        RestClient client = replayClient();
+
+        String first = client.post().uri("https://api.openai.com/v1/chat/completions")
+                             .body("{\"c\":3}").retrieve().body(String.class);
+        String second = client.post().uri("https://api.openai.com/v1/chat/completions")
+                              .body("{\"c\":3}").retrieve().body(String.class);
+
+        assertEquals("{\"answer\":\"first\"}", first);
+        assertEquals("{\"answer\":\"second\"}", second);
+    }
+
+    @Test
+    void testReplay_UnknownEndpoint() throws Exception {
+        server = new CassetteReplayServer(objectMapper, cassette(entry(REQUEST, "{}")), 0);
+
+        HttpStatusCode status = replayClient().post()
+                                              .uri("https://api.anthropic.com/v1/messages")
+                                              .body(REQUEST)
+                                              .exchange((request, response) -> response.getStatusCode());
+
+        assertEquals(HttpStatus.NOT_FOUND, status);
+    }
+
+    @Test
+    void testReplay_UnknownEndpoint_ExplainsMissingExchange() throws Exception {
+        server = new CassetteReplayServer(objectMapper, cassette(entry(REQUEST, "{}")), 0);
+
+        String body = replayClient().post()
+                                    .uri("https://api.anthropic.com/v1/messages")
+                                    .body(REQUEST)
+                                    .exchange((request, response) -> new String(
+                                            response.getBody().readAllBytes(), StandardCharsets.UTF_8
+                                    ));
+
+        assertEquals(
+                "No recorded exchange for api.anthropic.com POST /v1/messages",
+                objectMapper.readTree(body).get("error").asText()
+        );
+    }
+
+    @Test
+    void testReplay_AppliesTimeScale() throws Exception {
+        CassetteEntry slow = CassetteEntry.builder()
+                                          .host("api.openai.com")
+                                          .method("POST")
+                                          .path("/v1/chat/completions")
+                                          .requestHash(CassetteEntry.hash(REQUEST.getBytes(StandardCharsets.UTF_8)))
+                                          .status(200)
+                                          .body("{}")
+                                          .latencyMs(400)
+                                          .build();
+        server = new CassetteReplayServer(objectMapper, cassette(slow), 0.5);
+
+        long startTime = System.nanoTime();
+        replayClient().post().uri("https://api.openai.com/v1/chat/completions")
+                      .body(REQUEST).retrieve().toBodilessEntity();
+        long elapsedMs = (System.nanoTime() - startTime) / 1_000_000;
+
+        assertTrue(elapsedMs >= 200, "Expected at least 200ms but took " + elapsedMs + "ms");
+    }
+
+    @Test
+    void testRecordThenReplay() throws Exception {
+        server = new CassetteReplayServer(objectMapper, cassette(entry(REQUEST, "{\"answer\":\"recorded\"}")), 0);
+        Path recording = directory.resolve("recording.jsonl");
+
+        try (CassetteRecorder recorder = new CassetteRecorder(objectMapper, recording)) {
+            RestClient client = RestClient.builder()
+                                          .requestInterceptor(recorder)
+                                          .requestInterceptor(new CassetteReplayInterceptor(server.getPort()))
+                                          .build();
+            client.post().uri("https://api.openai.com/v1/chat/completions")
+                  .header("Authorization", "Bearer secret")
+                  .body(REQUEST).retrieve().body(String.class);
+        }
+
+        List<String> lines = Files.readAllLines(recording);
+        assertEquals(1, lines.size());
+        assertFalse(lines.getFirst().contains("secret"));
+        CassetteEntry recorded = objectMapper.readValue(lines.getFirst(), CassetteEntry.class);
+        assertEquals("api.openai.com", recorded.host());
+        assertEquals("/v1/chat/completions", recorded.path());
+        assertEquals("{\"answer\":\"recorded\"}", recorded.body());
+        assertEquals(CassetteEntry.hash(REQUEST.getBytes(StandardCharsets.UTF_8)), recorded.requestHash());
+    }
+
+    @Test
+    void testRecordThenReplay_NonUtf8Body_RoundTripsUnchanged() throws Exception {
+        byte[] binary = {(byte) 0x1f, (byte) 0x8b, 0x00, (byte) 0xff, (byte) 0xc3, 0x28, (byte) 0x80};
+        CassetteEntry original = CassetteEntry.builder()
+                                              .host("api.openai.com")
+                                              .method("POST")
+                                              .path("/v1/chat/completions")
+                                              .requestHash(CassetteEntry.hash(REQUEST.getBytes(StandardCharsets.UTF_8)))
+                                              .status(200)
+                                              .headers(Map.of("Content-Type", List.of("application/octet-stream")))
+                                              .rawBody(binary, null)
+                                              .latencyMs(0)
+                                              .build();
+        server = new CassetteReplayServer(objectMapper, cassette(original), 0);
+        Path recording = directory.resolve("recording.jsonl");
+
+        try (CassetteRecorder recorder = new CassetteRecorder(objectMapper, recording)) {
+            RestClient client = RestClient.builder()
+                                          .requestInterceptor(recorder)
+                                          .requestInterceptor(new CassetteReplayInterceptor(server.getPort()))
+                                          .build();
+            client.post().uri("https://api.openai.com/v1/chat/completions")
+                  .body(REQUEST).retrieve().body(byte[].class);
+        }
+        server.close();
+
+        CassetteEntry recorded = objectMapper.readValue(Files.readAllLines(recording).getFirst(), CassetteEntry.class);
+        assertNull(recorded.body());
+        assertArrayEquals(binary, recorded.bodyBytes());
+
+        server = new CassetteReplayServer(objectMapper, recording, 0);
+        byte[] replayed = replayClient().post().uri("https://api.openai.com/v1/chat/completions")
+                                        .body(REQUEST).retrieve().body(byte[].class);
+        assertArrayEquals(binary, replayed);
+    }
+
+    private RestClient replayClient() {
+        return RestClient.builder()
+                         .requestInterceptor(new CassetteReplayInterceptor(server.getPort()))
+                         .build();
+    }
+
+    private CassetteEntry entry(String request, String response) {
+        return CassetteEntry.builder()
+                            .host("api.openai.com")
+                            .method("POST")
+                            .path("/v1/chat/completions")
+                            .requestHash(CassetteEntry.hash(request.getBytes(StandardCharsets.UTF_8)))
+                            .status(200)
+                            .headers(Map.of("Content-Type", List.of("application/json")))
+                            .body(response)
+                            .latencyMs(0)
+                            .build();
+    }
+
+    private Path cassette(CassetteEntry... entries) throws Exception {
+        Path cassette = directory.resolve("cassette.jsonl");
+        StringBuilder content = new StringBuilder();
+        for (CassetteEntry entry : entries) {
+            content.append(objectMapper.writeValueAsString(entry)).append('\n');
+        }
+        Files.writeString(cassette, content);
+        return cassette;
+    }
+}
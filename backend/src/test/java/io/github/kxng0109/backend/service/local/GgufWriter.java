@@ -0,0 +1,131 @@
+package io.github.kxng0109.backend.service.local;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes minimal GGUF files with F32 tensors for tests. A tensor can be declared with another type to
+ * test how such files are handled, but its data is still written as F32.
+ */
+class GgufWriter {
+
+    private final Map<String, Object> metadata = new LinkedHashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<long[]> shapes = new ArrayList<>();
+    private final List<float[]> data = new ArrayList<>();
+    private final Map<String, Integer> types = new HashMap<>();
+
+    GgufWriter metadata(String key, Object value) {
+        metadata.put(key, value);
+        return this;
+    }
+
+    GgufWriter tensor(String name, float[] values, long... shape) {
+        names.add(name);
+        shapes.add(shape);
+        data.add(values);
+        return this;
+    }
+
+    GgufWriter type(String name, int type) {
+        types.put(name, type);
+        return this;
+    }
+
+    void write(Path path) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeInt(out, 0x46554747);
+        writeInt(out, 3);
+        writeLong(out, names.size());
+        writeLong(out, metadata.size());
+
+        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+            writeString(out, entry.getKey());
+            switch (entry.getValue()) {
+                case String value -> {
+                    writeInt(out, 8);
+                    writeString(out, value);
+                }
+                case Integer value -> {
+                    writeInt(out, 4);
+                    writeInt(out, value);
+                }
+                case Float value -> {
+                    writeInt(out, 6);
+                    writeInt(out, Float.floatToIntBits(value));
+                }
+                case String[] values -> {
+                    writeInt(out, 9);
+                    writeInt(out, 8);
+                    writeLong(out, values.length);
+                    for (String value : values) {
+                        writeString(out, value);
+                    }
+                }
+                case float[] values -> {
+                    writeInt(out, 9);
+                    writeInt(out, 6);
+                    writeLong(out, values.length);
+                    for (float value : values) {
+                        writeInt(out, Float.floatToIntBits(value));
+                    }
+                }
+                case int[] values -> {
+                    writeInt(out, 9);
+                    writeInt(out, 5);
+                    writeLong(out, values.length);
+                    for (int value : values) {
+                        writeInt(out, value);
+                    }
+                }
+                default -> throw new IllegalArgumentException("Unsupported metadata value " + entry.getValue());
+            }
+        }
+
+        long offset = 0;
+        for (int i = 0; i < names.size(); i++) {
+            writeString(out, names.get(i));
+            writeInt(out, shapes.get(i).length);
+            for (long dimension : shapes.get(i)) {
+                writeLong(out, dimension);
+            }
+            writeInt(out, types.getOrDefault(names.get(i), FloatTensor.F32));
+            writeLong(out, offset);
+            offset += data.get(i).length * 4L;
+        }
+
+        while (out.size() % 32 != 0) {
+            out.write(0);
+        }
+        for (float[] values : data) {
+            for (float value : values) {
+                writeInt(out, Float.floatToIntBits(value));
+            }
+        }
+        Files.write(path, out.toByteArray());
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.writeBytes(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array());
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+        out.writeBytes(ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(value).array());
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeLong(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+}
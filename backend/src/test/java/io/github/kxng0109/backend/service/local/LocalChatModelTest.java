@@ -0,0 +1,227 @@
+package io.github.kxng0109.backend.service.local;
+
+import io.github.kxng0109.backend.config.LocalModelProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalChatModelTest {
+
+    private static final String[] TOKENS = {
+            "<unk>", "<s>", "</s>", "▁", "a", "b", "c", "▁a", "ab", "▁ab", "<0x0A>", "<", "|", ">",
+            "u", "s", "e", "r", "y", "t", "m", "i", "n", "<0xC3>", "<0xA9>"
+    };
+    private static final int DIM = 8;
+    private static final int HIDDEN_DIM = 16;
+    private static final int LAYERS = 2;
+    private static final int KV_DIM = 4;
+
+    @TempDir
+    private Path directory;
+
+    private Path modelPath;
+    private GgufWriter writer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        float[] scores = new float[TOKENS.length];
+        int[] types = new int[TOKENS.length];
+        for (int i = 0; i < TOKENS.length; i++) {
+            types[i] = 1;
+            scores[i] = -10;
+        }
+        types[0] = 2;
+        types[1] = 3;
+        types[2] = 3;
+        scores[7] = -1;
+        scores[8] = -2;
+        scores[9] = -0.5f;
+
+        Random random = new Random(42);
+        writer = new GgufWriter()
+                .metadata("general.architecture", "llama")
+                .metadata("general.name", "tiny-test")
+                .metadata("llama.embedding_length", DIM)
+                .metadata("llama.feed_forward_length", HIDDEN_DIM)
+                .metadata("llama.block_count", LAYERS)
+                .metadata("llama.attention.head_count", 2)
+                .metadata("llama.attention.head_count_kv", 1)
+                .metadata("llama.context_length", 64)
+                .metadata("tokenizer.ggml.model", "llama")
+                .metadata("tokenizer.ggml.tokens", TOKENS)
+                .metadata("tokenizer.ggml.scores", scores)
+                .metadata("tokenizer.ggml.token_type", types)
+                .metadata("tokenizer.ggml.bos_token_id", 1)
+                .metadata("tokenizer.ggml.eos_token_id", 2)
+                .tensor("token_embd.weight", randomValues(random, DIM * TOKENS.length), DIM, TOKENS.length)
+                .tensor("output_norm.weight", ones(DIM), DIM);
+        for (int l = 0; l < LAYERS; l++) {
+            String block = "blk." + l + ".";
+            writer.tensor(block + "attn_norm.weight", ones(DIM), DIM)
+                  .tensor(block + "attn_q.weight", randomValues(random, DIM * DIM), DIM, DIM)
+                  .tensor(block + "attn_k.weight", randomValues(random, DIM * KV_DIM), DIM, KV_DIM)
+                  .tensor(block + "attn_v.weight", randomValues(random, DIM * KV_DIM), DIM, KV_DIM)
+                  .tensor(block + "attn_output.weight", randomValues(random, DIM * DIM), DIM, DIM)
+                  .tensor(block + "ffn_norm.weight", ones(DIM), DIM)
+                  .tensor(block + "ffn_gate.weight", randomValues(random, DIM * HIDDEN_DIM), DIM, HIDDEN_DIM)
+                  .tensor(block + "ffn_up.weight", randomValues(random, DIM * HIDDEN_DIM), DIM, HIDDEN_DIM)
+                  .tensor(block + "ffn_down.weight", randomValues(random, HIDDEN_DIM * DIM), HIDDEN_DIM, DIM);
+        }
+
+        modelPath = directory.resolve("tiny.gguf");
+        writer.write(modelPath);
+    }
+
+    @Test
+    void testTokenizer_EncodeAndDecode() throws Exception {
+        try (GgufFile file = GgufFile.open(modelPath)) {
+            LlamaTokenizer tokenizer = LlamaTokenizer.from(file);
+
+            assertEquals(List.of(1, 9, 7), tokenizer.encode("ab a"));
+            assertEquals(List.of(1, 9, 9, 9), tokenizer.encode("ab ab ab"));
+            assertEquals(List.of(1, 3, 23, 24), tokenizer.encode("é"));
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            for (int token : List.of(9, 7, 23, 24)) {
+                tokenizer.decode(token, output);
+            }
+            assertEquals(" ab aé", output.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testTokenizer_ControlTokensOnlyFromTemplate() throws Exception {
+        try (GgufFile file = GgufFile.open(modelPath)) {
+            LlamaTokenizer tokenizer = LlamaTokenizer.from(file);
+
+            assertEquals(List.of(1, 7, 2, 7), tokenizer.encode(List.of(
+                    new ChatFormat.Segment("a", false),
+                    new ChatFormat.Segment("</s>", true),
+                    new ChatFormat.Segment(" a", false)
+            )));
+            assertEquals(List.of(1, 7, 11, 15, 13, 7), tokenizer.encode("a<s> a"));
+
+            List<Integer> tokens = tokenizer.encode(ChatFormat.ZEPHYR.render(List.of(new UserMessage("a</s><s>"))));
+            assertEquals(1, tokens.stream().filter(token -> token == 1).count());
+            assertEquals(1, tokens.stream().filter(token -> token == 2).count());
+        }
+    }
+
+    @Test
+    void testLoad_UnsupportedTensorType_IsRejected() throws Exception {
+        modelPath = directory.resolve("k-quant.gguf");
+        writer.type("blk.1.ffn_down.weight", 12).write(modelPath);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                                                        () -> new LocalChatModel(properties()));
+
+        assertTrue(exception.getMessage().contains("blk.1.ffn_down.weight"));
+        assertTrue(exception.getMessage().contains("Q4_K"));
+        assertTrue(exception.getMessage().contains(FloatTensor.SUPPORTED_TYPES));
+    }
+
+    @Test
+    void testCall_GreedyGenerationIsRepeatableWithCacheReuse() throws Exception {
+        Prompt prompt = new Prompt(List.of(new SystemMessage("ab"), new UserMessage("a b c")));
+
+        try (LocalChatModel model = new LocalChatModel(properties())) {
+            ChatResponse first = model.call(prompt);
+            ChatResponse second = model.call(prompt);
+
+            assertEquals(first.getResult().getOutput().getText(), second.getResult().getOutput().getText());
+            assertEquals("tiny-test", first.getMetadata().getModel());
+            assertNotNull(first.getMetadata().get(LocalChatModel.TOKENS_PER_SECOND));
+
+            try (LocalChatModel fresh = new LocalChatModel(properties())) {
+                assertEquals(first.getResult().getOutput().getText(), fresh.call(prompt).getResult().getOutput().getText());
+            }
+        }
+    }
+
+    @Test
+    void testStream_MatchesCall() throws Exception {
+        Prompt prompt = new Prompt(List.of(new UserMessage("ab c")));
+
+        try (LocalChatModel model = new LocalChatModel(properties())) {
+            String called = model.call(prompt).getResult().getOutput().getText();
+            List<ChatResponse> chunks = model.stream(prompt).collectList().block();
+
+            assertNotNull(chunks);
+            String streamed = chunks.stream()
+                                    .map(chunk -> chunk.getResult().getOutput().getText())
+                                    .collect(Collectors.joining());
+            assertEquals(called, streamed);
+            assertNotNull(chunks.getLast().getMetadata().get(LocalChatModel.TOKENS_PER_SECOND));
+        }
+    }
+
+    @Test
+    void testQuantizedDot_MatchesDequantizedValues() {
+        float[] x = new float[32];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = (i % 5) - 2;
+        }
+
+        ByteBuffer q8 = ByteBuffer.allocate(34).order(ByteOrder.LITTLE_ENDIAN);
+        q8.putShort(Float.floatToFloat16(0.5f));
+        for (int i = 0; i < 32; i++) {
+            q8.put((byte) (i - 16));
+        }
+        FloatTensor q8Tensor = FloatTensor.of("q8", FloatTensor.Q8_0, MemorySegment.ofArray(q8.array()), 0, 32);
+
+        ByteBuffer q4 = ByteBuffer.allocate(18).order(ByteOrder.LITTLE_ENDIAN);
+        q4.putShort(Float.floatToFloat16(0.25f));
+        for (int i = 0; i < 16; i++) {
+            q4.put((byte) ((i & 0x0F) | ((15 - i) << 4)));
+        }
+        FloatTensor q4Tensor = FloatTensor.of("q4", FloatTensor.Q4_0, MemorySegment.ofArray(q4.array()), 0, 32);
+
+        for (FloatTensor tensor : List.of(q8Tensor, q4Tensor)) {
+            float expected = 0;
+            for (int i = 0; i < 32; i++) {
+                expected += tensor.get(i) * x[i];
+            }
+            assertEquals(expected, tensor.dot(0, x, 32), 1e-4);
+        }
+        assertEquals(-8 * 0.5f, q8Tensor.get(8));
+        assertEquals((15 - 8) * 0.25f, q4Tensor.get(16));
+    }
+
+    private LocalModelProperties properties() {
+        return new LocalModelProperties(modelPath, ChatFormat.ZEPHYR, 64, 6, 0, 0.9, 2);
+    }
+
+    private static float[] randomValues(Random random, int count) {
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (float) random.nextGaussian() * 0.5f;
+        }
+        return values;
+    }
+
+    private static float[] ones(int count) {
+        float[] values = new float[count];
+        Arrays.fill(values, 1f);
+        return values;
+    }
+}
@@ -0,0 +1,48 @@
+package io.github.kxng0109.backend.service.prompt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromptTemplateTest {
+
+    @Test
+    void testRender_StaticTemplate_ReturnsSameInstance() {
+        PromptTemplate template = PromptTemplate.compile("default", "Be accurate and concise.");
+
+        assertTrue(template.isStatic());
+        assertSame(template.render(Map.of()), template.render(null));
+        assertEquals("Be accurate and concise.", template.render(Map.of()));
+    }
+
+    @Test
+    void testRender_WithVariables() {
+        PromptTemplate template = PromptTemplate.compile("persona", "You are a {role}. Answer in {language}.");
+
+        String rendered = template.render(Map.of("role", "physics tutor", "language", "French"));
+
+        assertFalse(template.isStatic());
+        assertEquals("You are a physics tutor. Answer in French.", rendered);
+    }
+
+    @Test
+    void testRender_LiteralBracesAreKept() {
+        PromptTemplate template = PromptTemplate.compile("json", "Reply with JSON like { \"answer\": ... }.");
+
+        assertTrue(template.isStatic());
+        assertEquals("Reply with JSON like { \"answer\": ... }.", template.render(Map.of()));
+    }
+
+    @Test
+    void testRender_MissingVariable_ThrowsException() {
+        PromptTemplate template = PromptTemplate.compile("persona", "You are a {role}.");
+
+        IllegalArgumentException exception = assertThrows(
+                IllegalArgumentException.class,
+                () -> template.render(Map.of())
+        );
+        assertTrue(exception.getMessage().contains("role"));
+    }
+}
@@ -0,0 +1,199 @@
+package io.github.kxng0109.backend.service.quota;
+
+import io.github.kxng0109.backend.config.QuotaProperties;
+import io.github.kxng0109.backend.error.QuotaExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuotaManagerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private MutableClock clock;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2026-01-01T00:00:10Z"));
+    }
+
+    @Test
+    void testReserve_RejectsOnceRequestQuotaIsUsedUntilNextWindow() {
+        QuotaManager quotaManager = create(
+                Map.of("openai", new QuotaProperties.Limit(2, 0)),
+                Map.of("team-a", Map.of(), "team-b", Map.of())
+        );
+
+        quotaManager.reserve("team-a", List.of("openai"));
+        quotaManager.reserve("team-a", List.of("openai"));
+        QuotaExceededException exception = assertThrows(
+                QuotaExceededException.class,
+                () -> quotaManager.reserve("team-a", List.of("openai"))
+        );
+
+        assertEquals(50, exception.getRetryAfterSeconds());
+        assertEquals(1, meterRegistry.get("llm.quota.rejected").tag("limit", "requests").counter().count());
+
+        quotaManager.reserve("team-b", List.of("openai"));
+        clock.advance(Duration.ofMinutes(1));
+        quotaManager.reserve("team-a", List.of("openai"));
+    }
+
+    @Test
+    void testRefund_GivesBackCountedRequestsOnce() {
+        QuotaManager quotaManager = create(Map.of("openai", new QuotaProperties.Limit(1, 0)), Map.of());
+
+        QuotaLease rejected = quotaManager.reserve("team-a", List.of("openai"));
+        rejected.refund();
+        rejected.refund();
+
+        quotaManager.reserve("team-a", List.of("openai"));
+        assertThrows(QuotaExceededException.class, () -> quotaManager.reserve("team-a", List.of("openai")));
+    }
+
+    @Test
+    void testReserve_UsesKeySpecificLimitsAndAnonymousDefaults() {
+        QuotaManager quotaManager = create(
+                Map.of("openai", new QuotaProperties.Limit(1, 0)),
+                Map.of("batch-key", Map.of("openai", new QuotaProperties.Limit(3, 0)))
+        );
+
+        quotaManager.reserve(null, List.of("openai", "ollama"));
+        assertThrows(QuotaExceededException.class, () -> quotaManager.reserve("", List.of("openai")));
+        quotaManager.reserve(null, List.of("ollama"));
+
+        for (int i = 0; i < 3; i++) {
+            quotaManager.reserve("batch-key", List.of("openai"));
+        }
+        assertThrows(QuotaExceededException.class, () -> quotaManager.reserve("batch-key", List.of("openai")));
+    }
+
+    @Test
+    void testReserve_UnknownKeysShareAnonymousQuota() {
+        QuotaManager quotaManager = create(
+                Map.of("openai", new QuotaProperties.Limit(2, 0)),
+                Map.of("batch-key", Map.of())
+        );
+
+        quotaManager.reserve("unknown-1", List.of("openai"));
+        quotaManager.reserve("unknown-2", List.of("openai"));
+        assertThrows(QuotaExceededException.class, () -> quotaManager.reserve("unknown-3", List.of("openai")));
+        assertThrows(QuotaExceededException.class, () -> quotaManager.reserve(null, List.of("openai")));
+
+        quotaManager.reserve("batch-key", List.of("openai"));
+    }
+
+    @Test
+    void testReserveTokens_ReconcilesEstimateWithReportedUsage() {
+        QuotaManager quotaManager = create(Map.of("openai", new QuotaProperties.Limit(0, 1000)), Map.of());
+        QuotaLease lease = quotaManager.reserve("team-a", List.of("openai"));
+
+        lease.reserveTokens("openai", 300).settle(900);
+        lease.reserveTokens("openai", 50).release();
+
+        assertThrows(QuotaExceededException.class, () -> lease.reserveTokens("openai", 200));
+        lease.reserveTokens("openai", 100).settle(0);
+        assertThrows(QuotaExceededException.class, () -> quotaManager.reserve("team-a", List.of("openai")));
+    }
+
+    @Test
+    void testReserveTokens_ReleaseAfterSettleKeepsReportedUsage() {
+        QuotaManager quotaManager = create(Map.of("openai", new QuotaProperties.Limit(0, 1000)), Map.of());
+        QuotaLease lease = quotaManager.reserve("team-a", List.of("openai"));
+
+        TokenReservation reservation = lease.reserveTokens("openai", 100);
+        reservation.settle(900);
+        reservation.release();
+
+        assertThrows(QuotaExceededException.class, () -> lease.reserveTokens("openai", 101));
+        lease.reserveTokens("openai", 100);
+    }
+
+    @Test
+    void testReserveTokens_CountsConcurrentUsageExactly() throws InterruptedException {
+        QuotaManager quotaManager = create(Map.of("openai", new QuotaProperties.Limit(0, 1_000_000)), Map.of());
+        QuotaLease lease = quotaManager.reserve("team-a", List.of("openai"));
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.startVirtualThread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    lease.reserveTokens("openai", 1).settle(2);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        lease.reserveTokens("openai", 1_000_000 - 16_000);
+        assertThrows(QuotaExceededException.class, () -> lease.reserveTokens("openai", 1));
+    }
+
+    @Test
+    void testReserve_WhenDisabled_ReturnsUnlimitedLease() {
+        QuotaManager quotaManager = new QuotaManager(
+                new QuotaProperties(false, Duration.ofMinutes(1), Map.of("openai", new QuotaProperties.Limit(1, 1)), null),
+                meterRegistry,
+                clock
+        );
+
+        assertSame(QuotaLease.UNLIMITED, quotaManager.reserve("team-a", List.of("openai")));
+        assertSame(QuotaLease.UNLIMITED, quotaManager.reserve("team-a", List.of("openai")));
+    }
+
+    @Test
+    void testCurrent_ReturnsLeaseBoundToThread() {
+        QuotaManager quotaManager = create(Map.of(), Map.of());
+        QuotaLease lease = quotaManager.reserve("team-a", List.of("openai"));
+
+        try (QuotaLease.Scope scope = lease.open()) {
+            assertSame(lease, QuotaLease.current());
+        }
+        assertSame(QuotaLease.UNLIMITED, QuotaLease.current());
+    }
+
+    private QuotaManager create(Map<String, QuotaProperties.Limit> defaults,
+                                Map<String, Map<String, QuotaProperties.Limit>> keys) {
+        return new QuotaManager(new QuotaProperties(true, Duration.ofMinutes(1), defaults, keys), meterRegistry, clock);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package io.github.kxng0109.backend.service.session;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.github.kxng0109.backend.config.SessionProperties;
+import io.github.kxng0109.backend.service.token.TokenEstimator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ConversationMemoryTest {
+
+    @Mock
+    private TokenEstimator tokenEstimator;
+
+    @TempDir
+    private Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private MutableClock clock;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+    }
+
+    @Test
+    void testAppend_KeepsSeparateBranchPerModel() {
+        when(tokenEstimator.countTokens(anyString(), anyString())).thenReturn(5);
+        ConversationMemory memory = memory(1000, 10);
+
+        memory.append("s1", "openai", "Hi", "Hello from OpenAI");
+        memory.append("s1", "ollama", "Hi", "Hello from Ollama");
+
+        assertEquals(List.of(new ConversationTurn("Hi", "Hello from OpenAI", 10)), memory.history("s1", "openai"));
+        assertEquals(List.of(new ConversationTurn("Hi", "Hello from Ollama", 10)), memory.history("s1", "ollama"));
+        assertTrue(memory.history("s2", "openai").isEmpty());
+    }
+
+    @Test
+    void testAppend_DropsOldestTurnsBeyondTokenBudget() {
+        when(tokenEstimator.countTokens(eq("openai"), anyString())).thenReturn(10);
+        ConversationMemory memory = memory(50, 10);
+
+        for (int i = 1; i <= 4; i++) {
+            memory.append("s1", "openai", "Question " + i, "Answer " + i);
+        }
+
+        List<ConversationTurn> history = memory.history("s1", "openai");
+        assertEquals(2, history.size());
+        assertEquals("Question 3", history.getFirst().prompt());
+        assertEquals("Question 4", history.getLast().prompt());
+    }
+
+    @Test
+    void testAppend_DropsOldestTurnsBeyondTurnLimit() {
+        when(tokenEstimator.countTokens(eq("openai"), anyString())).thenReturn(1);
+        ConversationMemory memory = memory(1000, 2);
+
+        for (int i = 1; i <= 3; i++) {
+            memory.append("s1", "openai", "Question " + i, "Answer " + i);
+        }
+
+        assertEquals(List.of("Question 2", "Question 3"),
+                     memory.history("s1", "openai").stream().map(ConversationTurn::prompt).toList());
+    }
+
+    @Test
+    void testSweep_SpillsIdleSessionAndRestoresOnAccess() {
+        when(tokenEstimator.countTokens(eq("openai"), anyString())).thenReturn(3);
+        ConversationMemory memory = memory(1000, 10);
+        memory.append("s1", "openai", "Hi", "Hello");
+
+        clock.advance(Duration.ofMinutes(11));
+        memory.sweep();
+
+        assertEquals(0, memory.activeSessions());
+        assertTrue(Files.exists(directory.resolve("s1.json")));
+
+        assertEquals(List.of(new ConversationTurn("Hi", "Hello", 6)), memory.history("s1", "openai"));
+        assertEquals(1, memory.activeSessions());
+        assertFalse(Files.exists(directory.resolve("s1.json")));
+    }
+
+    @Test
+    void testHistory_ExpiredSpilledSessionStartsEmpty() {
+        when(tokenEstimator.countTokens(eq("openai"), anyString())).thenReturn(3);
+        ConversationMemory memory = memory(1000, 10);
+        memory.append("s1", "openai", "Hi", "Hello");
+        memory.spillAll();
+
+        clock.advance(Duration.ofDays(2));
+
+        assertTrue(memory.history("s1", "openai").isEmpty());
+    }
+
+    @Test
+    void testHistory_SpillsLeastRecentlyUsedBeyondActiveLimit() {
+        ConversationMemory memory = new ConversationMemory(
+                new SessionProperties(1000, 10, 2, Duration.ofMinutes(10), Duration.ofDays(1), directory),
+                tokenEstimator, objectMapper, clock
+        );
+
+        memory.history("s1", "openai");
+        clock.advance(Duration.ofSeconds(1));
+        memory.history("s2", "openai");
+        clock.advance(Duration.ofSeconds(1));
+        memory.history("s3", "openai");
+
+        assertEquals(2, memory.activeSessions());
+        assertTrue(Files.exists(directory.resolve("s1.json")));
+    }
+
+    private ConversationMemory memory(int maxHistoryTokens, int maxTurns) {
+        return new ConversationMemory(
+                new SessionProperties(maxHistoryTokens, maxTurns, 100, Duration.ofMinutes(10), Duration.ofDays(1), directory),
+                tokenEstimator, objectMapper, clock
+        );
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.kxng0109.backend.service.state;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemorySharedStateStoreTest {
+
+    private final InMemorySharedStateStore store = new InMemorySharedStateStore();
+
+    @Test
+    void testPutAndGet() {
+        store.put("key", "value", Duration.ofMinutes(1));
+
+        assertEquals(Optional.of("value"), store.get("key"));
+    }
+
+    @Test
+    void testGet_MissingKey() {
+        assertTrue(store.get("missing").isEmpty());
+    }
+
+    @Test
+    void testGet_ExpiredEntry() {
+        store.put("key", "value", Duration.ZERO);
+
+        assertTrue(store.get("key").isEmpty());
+    }
+
+    @Test
+    void testPutBytesAndGetBytes_ReturnStoredArray() {
+        byte[] value = "{\"text\":\"caf\u00e9\"}".getBytes(StandardCharsets.UTF_8);
+
+        store.putBytes("key", value, Duration.ofMinutes(1));
+
+        assertSame(value, store.getBytes("key").orElseThrow());
+        assertEquals(Optional.of("{\"text\":\"caf\u00e9\"}"), store.get("key"));
+    }
+
+    @Test
+    void testGetBytes_StringValueAndExpiredEntry() {
+        store.put("key", "value", Duration.ofMinutes(1));
+        store.putBytes("expired", new byte[]{1}, Duration.ZERO);
+
+        assertArrayEquals("value".getBytes(StandardCharsets.UTF_8), store.getBytes("key").orElseThrow());
+        assertTrue(store.getBytes("expired").isEmpty());
+    }
+
+    @Test
+    void testIncrement() {
+        assertEquals(1, store.increment("counter", Duration.ofMinutes(1)));
+        assertEquals(2, store.increment("counter", Duration.ofMinutes(1)));
+        assertEquals(Optional.of("2"), store.get("counter"));
+    }
+
+    @Test
+    void testIncrement_RestartsAfterExpiry() {
+        store.increment("counter", Duration.ZERO);
+
+        assertEquals(1, store.increment("counter", Duration.ofMinutes(1)));
+    }
+}
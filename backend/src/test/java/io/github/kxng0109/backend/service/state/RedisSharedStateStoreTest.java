@@ -0,0 +1,111 @@
+package io.github.kxng0109.backend.service.state;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks how the store talks to Redis through the template. What Redis makes of it, i.e. that the
+ * increment script counts atomically, sets the expiry once and is shared by every instance, needs a
+ * running server; the build has no Testcontainers or embedded Redis and must pass without Docker, so
+ * that is left to running the application with `LLM_STATE_STORE=redis`.
+ */
+@ExtendWith(MockitoExtension.class)
+class RedisSharedStateStoreTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private RedisConnection connection;
+
+    @Mock
+    private RedisStringCommands stringCommands;
+
+    private RedisSharedStateStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new RedisSharedStateStore(redisTemplate, "llm:");
+    }
+
+    @Test
+    void testPutAndGet_UsePrefixedKeyAndTtl() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("llm:key")).thenReturn("value");
+
+        store.put("key", "value", Duration.ofMinutes(5));
+
+        verify(valueOperations).set("llm:key", "value", Duration.ofMinutes(5));
+        assertEquals(Optional.of("value"), store.get("key"));
+    }
+
+    @Test
+    void testGet_MissingKey() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        assertTrue(store.get("missing").isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPutBytesAndGetBytes_UseRawPrefixedKey() {
+        byte[] key = "llm:key".getBytes(StandardCharsets.UTF_8);
+        byte[] value = {(byte) 0xC3, (byte) 0xA9};
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0, RedisCallback.class).doInRedis(connection));
+        when(connection.stringCommands()).thenReturn(stringCommands);
+        when(stringCommands.get(key)).thenReturn(value);
+
+        store.putBytes("key", value, Duration.ofMinutes(5));
+
+        verify(stringCommands).set(key, value, Expiration.from(Duration.ofMinutes(5)),
+                                   RedisStringCommands.SetOption.upsert());
+        assertSame(value, store.getBytes("key").orElseThrow());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testIncrement_PassesPrefixedKeyAndTtlInMillisToScript() {
+        ArgumentCaptor<RedisScript<Long>> script = ArgumentCaptor.forClass(RedisScript.class);
+        when(redisTemplate.execute(script.capture(), eq(List.of("llm:rate:openai:1")), eq("60000")))
+                .thenReturn(1L, 2L);
+
+        assertEquals(1, store.increment("rate:openai:1", Duration.ofMinutes(1)));
+        assertEquals(2, store.increment("rate:openai:1", Duration.ofMinutes(1)));
+        assertEquals(Long.class, script.getValue().getResultType());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testIncrement_WithoutReply_ReturnsZero() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), anyString())).thenReturn(null);
+
+        assertEquals(0, store.increment("rate:openai:1", Duration.ofSeconds(1)));
+    }
+}
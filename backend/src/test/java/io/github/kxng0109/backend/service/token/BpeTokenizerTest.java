@@ -0,0 +1,89 @@
+package io.github.kxng0109.backend.service.token;
+
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class BpeTokenizerTest {
+
+    private static final List<String> VOCABULARY = List.of("a", "b", "c", "d", " ", "ab", "cd", "abcd");
+
+    @TempDir
+    private Path tempDir;
+
+    private BpeTokenizer tokenizer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path vocabulary = tempDir.resolve("test.tiktoken");
+        List<String> lines = IntStream.range(0, VOCABULARY.size())
+                                      .mapToObj(rank -> Base64.getEncoder().encodeToString(
+                                              VOCABULARY.get(rank).getBytes(StandardCharsets.UTF_8)
+                                      ) + " " + rank)
+                                      .toList();
+        Files.write(vocabulary, lines);
+
+        tokenizer = BpeTokenizer.load(vocabulary, BpeTokenizer.CL100K_PATTERN);
+    }
+
+    @Test
+    void testCountTokens_WholePieceIsToken() {
+        assertEquals(1, tokenizer.countTokens("abcd"));
+    }
+
+    @Test
+    void testCountTokens_MergesLowestRankFirst() {
+        assertEquals(2, tokenizer.countTokens("abcdab"));
+    }
+
+    @Test
+    void testCountTokens_SplitsOnPattern() {
+        assertEquals(3, tokenizer.countTokens("ab cd"));
+    }
+
+    @Test
+    void testCountTokens_UnknownBytesCountIndividually() {
+        assertEquals(3, tokenizer.countTokens("xyz"));
+        assertEquals(2, tokenizer.countTokens("é"));
+    }
+
+    @Test
+    void testCountTokens_EmptyText() {
+        assertEquals(0, tokenizer.countTokens(""));
+        assertEquals(0, tokenizer.countTokens(null));
+    }
+
+    @Test
+    void testCountTokens_DoesNotAllocateOnceWarm() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        String text = "abcd ab cd, the quick brown fox jumps over 12345 lazy dogs' tails!\n é ".repeat(20);
+        int calls = 2000;
+        for (int i = 0; i < calls; i++) {
+            tokenizer.countTokens(text);
+        }
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < calls; i++) {
+            tokenizer.countTokens(text);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        // A few stray bytes are tolerated, e.g. from a recompilation, but not one object per piece or call.
+        assertTrue(allocated < calls, "Allocated " + allocated + " bytes in " + calls + " calls");
+    }
+}
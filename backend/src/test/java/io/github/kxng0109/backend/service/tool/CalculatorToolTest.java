@@ -0,0 +1,45 @@
+package io.github.kxng0109.backend.service.tool;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CalculatorToolTest {
+
+    private final CalculatorTool calculatorTool = new CalculatorTool();
+
+    @Test
+    void testCalculate_RespectsOperatorPrecedence() {
+        assertEquals("14", calculatorTool.calculate("2 + 3 * 4"));
+        assertEquals("20", calculatorTool.calculate("(2 + 3) * 4"));
+        assertEquals("1", calculatorTool.calculate("10 % 3"));
+        assertEquals("2.5", calculatorTool.calculate("5 / 2"));
+    }
+
+    @Test
+    void testCalculate_Exponentiation() {
+        assertEquals("512", calculatorTool.calculate("2 ^ 3 ^ 2"));
+        assertEquals("-4", calculatorTool.calculate("-2 ^ 2"));
+        assertEquals("0.5", calculatorTool.calculate("2 ^ -1"));
+        assertEquals("88", calculatorTool.calculate("(3.5 + 2) * 4 ^ 2"));
+    }
+
+    @Test
+    void testCalculate_DivisionByZero_Throws() {
+        IllegalArgumentException exception = assertThrows(
+                IllegalArgumentException.class,
+                () -> calculatorTool.calculate("1 / (2 - 2)")
+        );
+
+        assertTrue(exception.getMessage().startsWith("Division by zero"));
+    }
+
+    @Test
+    void testCalculate_InvalidExpression_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> calculatorTool.calculate(""));
+        assertThrows(IllegalArgumentException.class, () -> calculatorTool.calculate("2 +"));
+        assertThrows(IllegalArgumentException.class, () -> calculatorTool.calculate("(1 + 2"));
+        assertThrows(IllegalArgumentException.class, () -> calculatorTool.calculate("1.2.3"));
+        assertThrows(IllegalArgumentException.class, () -> calculatorTool.calculate("sqrt(4)"));
+    }
+}
@@ -0,0 +1,215 @@
+package io.github.kxng0109.backend.service.tool;
+
+import io.github.kxng0109.backend.config.ToolProperties;
+import io.github.kxng0109.backend.model.dto.ToolCallMetadata;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.DefaultToolExecutionExceptionProcessor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelToolCallingManagerTest {
+
+    private final SleepingTool lookup = new SleepingTool("lookup", Duration.ofMillis(300));
+
+    private ParallelToolCallingManager manager;
+
+    @AfterEach
+    void tearDown() {
+        manager.shutdown();
+    }
+
+    @Test
+    void testExecuteToolCalls_RunsCallsOfTurnConcurrently() {
+        manager = create(Duration.ofSeconds(5));
+        Prompt prompt = prompt(lookup);
+
+        long startTime = System.nanoTime();
+        ToolExecutionResult result = manager.executeToolCalls(prompt, toolCalls(
+                toolCall("1", "lookup", "{\"query\":\"a\"}"),
+                toolCall("2", "lookup", "{\"query\":\"b\"}"),
+                toolCall("3", "lookup", "{\"query\":\"c\"}")
+        ));
+        long elapsed = Duration.ofNanos(System.nanoTime() - startTime).toMillis();
+
+        List<ToolResponseMessage.ToolResponse> responses = responses(result);
+        assertEquals(List.of("1", "2", "3"), responses.stream().map(ToolResponseMessage.ToolResponse::id).toList());
+        assertEquals("result of {\"query\":\"b\"}", responses.get(1).responseData());
+        assertEquals(3, lookup.invocations.get());
+        assertTrue(elapsed < 800, "Tool calls took " + elapsed + " ms");
+        assertFalse(result.returnDirect());
+    }
+
+    @Test
+    void testExecuteToolCalls_ReusesResultsOfIdenticalCallsWithinComparison() {
+        manager = create(Duration.ofSeconds(5));
+        ToolResultCache results = new ToolResultCache();
+        ToolCallSession firstModel = new ToolCallSession(results);
+        ToolCallSession secondModel = new ToolCallSession(results);
+
+        try (ToolCallSession.Scope scope = firstModel.open()) {
+            manager.executeToolCalls(prompt(lookup), toolCalls(
+                    toolCall("1", "lookup", "{\"query\":\"a\"}"),
+                    toolCall("2", "lookup", " {\"query\":\"a\"} ")
+            ));
+        }
+        try (ToolCallSession.Scope scope = secondModel.open()) {
+            manager.executeToolCalls(prompt(lookup), toolCalls(toolCall("1", "lookup", "{\"query\":\"a\"}")));
+        }
+
+        assertEquals(1, lookup.invocations.get());
+        assertEquals(2, firstModel.calls().size());
+        assertEquals(1, firstModel.calls().stream().filter(ToolCallMetadata::cached).count());
+        ToolCallMetadata secondCall = secondModel.calls().getFirst();
+        assertEquals("lookup", secondCall.name());
+        assertTrue(secondCall.cached());
+    }
+
+    @Test
+    void testExecuteToolCalls_RecordsLatencyOfEachCall() {
+        manager = create(Duration.ofSeconds(5));
+        ToolCallSession session = new ToolCallSession(new ToolResultCache());
+
+        try (ToolCallSession.Scope scope = session.open()) {
+            manager.executeToolCalls(prompt(lookup), toolCalls(toolCall("1", "lookup", "{}")));
+        }
+
+        ToolCallMetadata call = session.calls().getFirst();
+        assertFalse(call.cached());
+        assertTrue(call.latency() >= 300, "Latency was " + call.latency() + " ms");
+    }
+
+    @Test
+    void testExecuteToolCalls_AnswersCallsPastTimeoutWithError() {
+        manager = create(Duration.ofMillis(100));
+        SleepingTool stuck = new SleepingTool("stuck", Duration.ofSeconds(5));
+        SleepingTool fast = new SleepingTool("fast", Duration.ZERO);
+
+        ToolExecutionResult result = manager.executeToolCalls(prompt(stuck, fast), toolCalls(
+                toolCall("1", "stuck", "{}"),
+                toolCall("2", "fast", "{}")
+        ));
+
+        List<ToolResponseMessage.ToolResponse> responses = responses(result);
+        assertTrue(responses.get(0).responseData().startsWith("Error:"));
+        assertEquals("result of {}", responses.get(1).responseData());
+    }
+
+    @Test
+    void testExecuteToolCalls_FailedCall_InterruptsRemainingCalls() throws InterruptedException {
+        manager = create(Duration.ofSeconds(5));
+        SleepingTool broken = new SleepingTool("broken", null);
+        SleepingTool slow = new SleepingTool("slow", Duration.ofSeconds(5));
+
+        IllegalStateException exception = assertThrows(
+                IllegalStateException.class,
+                () -> manager.executeToolCalls(prompt(broken, slow), toolCalls(
+                        toolCall("1", "broken", "{}"),
+                        toolCall("2", "slow", "{}")
+                ))
+        );
+
+        assertEquals("Broken tool", exception.getMessage());
+        assertTrue(slow.interrupted.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testExecuteToolCalls_UnknownTool_Throws() {
+        manager = create(Duration.ofSeconds(5));
+
+        assertThrows(
+                IllegalStateException.class,
+                () -> manager.executeToolCalls(prompt(lookup), toolCalls(toolCall("1", "missing", "{}")))
+        );
+    }
+
+    private ParallelToolCallingManager create(Duration timeout) {
+        return new ParallelToolCallingManager(
+                name -> null,
+                DefaultToolExecutionExceptionProcessor.builder().build(),
+                ObservationRegistry.NOOP,
+                new ToolProperties(Set.of(), 4, timeout, "classpath*:documents/*.md", 3)
+        );
+    }
+
+    private Prompt prompt(ToolCallback... toolCallbacks) {
+        return new Prompt(
+                new UserMessage("Look it up"),
+                ToolCallingChatOptions.builder()
+                                      .toolCallbacks(List.of(toolCallbacks))
+                                      .internalToolExecutionEnabled(false)
+                                      .build()
+        );
+    }
+
+    private ChatResponse toolCalls(AssistantMessage.ToolCall... toolCalls) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage("", Map.of(), List.of(toolCalls)))));
+    }
+
+    private AssistantMessage.ToolCall toolCall(String id, String name, String arguments) {
+        return new AssistantMessage.ToolCall(id, "function", name, arguments);
+    }
+
+    private List<ToolResponseMessage.ToolResponse> responses(ToolExecutionResult result) {
+        return ((ToolResponseMessage) result.conversationHistory().getLast()).getResponses();
+    }
+
+    private static final class SleepingTool implements ToolCallback {
+        private final ToolDefinition definition;
+        private final Duration delay;
+        private final AtomicInteger invocations = new AtomicInteger();
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+
+        /**
+         * @param delay how long a call takes, or null for a tool whose calls fail right away
+         */
+        private SleepingTool(String name, Duration delay) {
+            this.definition = ToolDefinition.builder()
+                                            .name(name)
+                                            .description("Test tool")
+                                            .inputSchema("{}")
+                                            .build();
+            this.delay = delay;
+        }
+
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return definition;
+        }
+
+        @Override
+        public String call(String toolInput) {
+            invocations.incrementAndGet();
+            if (delay == null) {
+                throw new IllegalStateException("Broken tool");
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted", e);
+            }
+            return "result of " + toolInput;
+        }
+    }
+}